@@ -0,0 +1,38 @@
+package io.jcervelin.ideas.offer.benchmarks;
+
+import io.jcervelin.ideas.offer.models.Offer;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offers used by the benchmarks. Half of them are valid today.
+ */
+final class BenchmarkOffers {
+
+    private BenchmarkOffers() {
+    }
+
+    static Offer offer(final int index) {
+        final LocalDate now = LocalDate.now();
+        final Offer offer = new Offer();
+        offer.setId(new ObjectId().toHexString());
+        offer.setName("Ivory Piano " + index);
+        offer.setPrice(100.0 + index);
+        offer.setOfferPrice(70.0 + index);
+        offer.setStartOffer(now.minusDays(10));
+        offer.setEndOffer(index % 2 == 0 ? now.plusDays(10) : now.minusDays(1));
+        offer.setCurrency("GBP");
+        offer.setDescription("Amazing and fancy Ivory Piano number " + index + ".");
+        return offer;
+    }
+
+    static List<Offer> offers(final int size) {
+        final List<Offer> offers = new ArrayList<>(size);
+        for (int index = 0; index < size; index++)
+            offers.add(offer(index));
+        return offers;
+    }
+}
@@ -0,0 +1,118 @@
+package io.jcervelin.ideas.offer.benchmarks;
+
+import io.jcervelin.ideas.offer.gateways.repositories.OfferRepository;
+import io.jcervelin.ideas.offer.models.ArchiveReport;
+import io.jcervelin.ideas.offer.models.DiscountAnalytics;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferDeadLetter;
+import io.jcervelin.ideas.offer.models.OfferFilter;
+import io.jcervelin.ideas.offer.models.OfferSummary;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Repository stub which keeps the offers in a list, so the benchmarks
+ * measure the application code without the database.
+ */
+class InMemoryOfferRepository implements OfferRepository {
+
+    private final List<Offer> offers;
+
+    InMemoryOfferRepository(final List<Offer> offers) {
+        this.offers = offers;
+    }
+
+    @Override
+    public List<Offer> findAll() {
+        return offers;
+    }
+
+    @Override
+    public List<Offer> findValidOffers(final LocalDate localDate) {
+        return offers.stream()
+                .filter(offer -> offer.isValidOn(localDate))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Offer> findAll(final String afterId, final int limit) {
+        return offers.stream().limit(limit).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<Offer> streamAll() {
+        return offers.stream();
+    }
+
+    @Override
+    public List<OfferSummary> findAllSummaries() {
+        return offers.stream().map(OfferSummary::of).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<OfferSummary> findValidOfferSummaries(final LocalDate localDate) {
+        return findValidOffers(localDate).stream().map(OfferSummary::of).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Offer> findValidOffersBetween(final LocalDate from, final LocalDate to, final String afterId, final int limit) {
+        return offers.stream()
+                .filter(offer -> offer.isValidBetween(from, to))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Offer> findValidOffers(final LocalDate localDate, final String afterId, final int limit) {
+        return findValidOffers(localDate).stream().limit(limit).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Offer> search(final String text, final int offset, final int limit) {
+        return offers.stream()
+                .filter(offer -> offer.getName().contains(text))
+                .skip(offset)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Optional<Offer> cancelOfferById(final String id) {
+        return offers.stream().filter(offer -> offer.getId().equals(id)).findFirst();
+    }
+
+    @Override
+    public long cancelOffers(final OfferFilter filter) {
+        return 0;
+    }
+
+    @Override
+    public Offer save(final Offer offer) {
+        return offer;
+    }
+
+    @Override
+    public Map<Integer, String> insertAll(final List<Offer> offers) {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public void park(final List<OfferDeadLetter> deadLetters) {
+    }
+
+    @Override
+    public ArchiveReport archiveExpiredOffers(final LocalDate endBefore, final int limit) {
+        return new ArchiveReport(0, 0);
+    }
+
+    @Override
+    public DiscountAnalytics findDiscountAnalytics() {
+        return new DiscountAnalytics();
+    }
+}
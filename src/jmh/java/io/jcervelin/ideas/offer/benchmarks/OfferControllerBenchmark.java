@@ -0,0 +1,87 @@
+package io.jcervelin.ideas.offer.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jcervelin.ideas.offer.configs.batch.OfferBatchProperties;
+import io.jcervelin.ideas.offer.configs.json.JacksonParser;
+import io.jcervelin.ideas.offer.configs.validation.OfferValidationProperties;
+import io.jcervelin.ideas.offer.configs.writebehind.OfferWriteBehindProperties;
+import io.jcervelin.ideas.offer.gateways.http.OfferController;
+import io.jcervelin.ideas.offer.gateways.http.advices.ExceptionControllerAdvice;
+import io.jcervelin.ideas.offer.gateways.http.streams.OfferStreamReader;
+import io.jcervelin.ideas.offer.gateways.http.streams.OfferStreamWriter;
+import io.jcervelin.ideas.offer.usecases.OfferManagement;
+import io.jcervelin.ideas.offer.usecases.OfferWriteBehind;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
+import io.jcervelin.ideas.offer.utils.OfferValidator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.validation.Validation;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standaloneSetup;
+
+/**
+ * Full request path through MockMvc: dispatching, controller, use case,
+ * in-memory repository and JSON conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OfferControllerBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private MockMvc mockMvc;
+    private byte[] offer;
+    private String etag;
+
+    @Setup
+    public void setUp() throws Exception {
+        final JacksonParser jacksonParser = new JacksonParser();
+        final ObjectMapper objectMapper = jacksonParser.jsonObjectMapper(jacksonParser.javaTimeModule());
+        final OfferCollectionVersion collectionVersion = new OfferCollectionVersion();
+        final InMemoryOfferRepository repository = new InMemoryOfferRepository(BenchmarkOffers.offers(size));
+        final OfferManagement offerManagement = new OfferManagement(
+                repository,
+                new OfferValidator(Validation.buildDefaultValidatorFactory().getValidator(), new OfferValidationProperties()),
+                new OfferBatchProperties(),
+                collectionVersion,
+                new OfferWriteBehind(repository, new OfferWriteBehindProperties(), collectionVersion));
+
+        mockMvc = standaloneSetup(new OfferController(offerManagement,
+                        new OfferStreamWriter(objectMapper), new OfferStreamReader(objectMapper), collectionVersion))
+                .setControllerAdvice(new ExceptionControllerAdvice())
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+        offer = objectMapper.writeValueAsBytes(BenchmarkOffers.offer(0));
+        etag = mockMvc.perform(get("/api/offers")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    @Benchmark
+    public MvcResult getValidOffers() throws Exception {
+        return mockMvc.perform(get("/api/offers")).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult getValidOffersNotModified() throws Exception {
+        return mockMvc.perform(get("/api/offers").header(HttpHeaders.IF_NONE_MATCH, etag)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult saveOffer() throws Exception {
+        return mockMvc.perform(post("/api/offers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(offer)).andReturn();
+    }
+}
@@ -0,0 +1,75 @@
+package io.jcervelin.ideas.offer.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jcervelin.ideas.offer.configs.json.JacksonParser;
+import io.jcervelin.ideas.offer.configs.json.SmileParser;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferSummary;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Jackson (de)serialization of offers with the mapper customised by JacksonParser,
+ * and with the Smile mapper of SmileParser sent to the clients which accept it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OfferJsonBenchmark {
+
+    private static final TypeReference<List<Offer>> OFFER_LIST = new TypeReference<List<Offer>>() {};
+
+    @Param({"1", "1000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<Offer> offers;
+    private List<OfferSummary> summaries;
+    private byte[] json;
+    private ObjectMapper smileMapper;
+    private byte[] smile;
+
+    @Setup
+    public void setUp() throws IOException {
+        final JacksonParser jacksonParser = new JacksonParser();
+        objectMapper = jacksonParser.jsonObjectMapper(jacksonParser.javaTimeModule());
+        offers = BenchmarkOffers.offers(size);
+        summaries = offers.stream().map(OfferSummary::of).collect(Collectors.toList());
+        json = objectMapper.writeValueAsBytes(offers);
+        smileMapper = SmileParser.smileObjectMapper();
+        smile = smileMapper.writeValueAsBytes(offers);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(offers);
+    }
+
+    @Benchmark
+    public byte[] serializeSummaries() throws IOException {
+        return objectMapper.writeValueAsBytes(summaries);
+    }
+
+    @Benchmark
+    public List<Offer> deserialize() throws IOException {
+        return objectMapper.readValue(json, OFFER_LIST);
+    }
+
+    @Benchmark
+    public byte[] serializeSmile() throws IOException {
+        return smileMapper.writeValueAsBytes(offers);
+    }
+
+    @Benchmark
+    public List<Offer> deserializeSmile() throws IOException {
+        return smileMapper.readValue(smile, OFFER_LIST);
+    }
+}
@@ -0,0 +1,291 @@
+package io.jcervelin.ideas.offer.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jcervelin.ideas.offer.OfferApplication;
+import io.jcervelin.ideas.offer.models.Offer;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load of the application started in this JVM against the embedded Mongo.
+ *
+ * It seeds the offers through the batch endpoint, then sends the requests of the mix at a
+ * fixed rate, whether the previous ones were answered or not. The latency of a request is
+ * measured from the time it should have been sent, so a stall of the application is counted
+ * for every request it delayed. The latencies after the warm-up are recorded in a histogram
+ * per operation.
+ *
+ * The report has one line per operation with the percentiles, it's meant to be diffed between
+ * builds run with the same arguments, and a .hgrm file per operation with its full distribution.
+ *
+ * Arguments, all optional: --offers=10000 --rate=500 --seconds=30 --warmup=10 --seed=42
+ * --mix=list:50,page:20,save:20,cancel:10 --max-in-flight=1000 --report=target/load-report
+ * The other arguments go to the application, for instance --spring.data.mongodb.uri=... to use
+ * another Mongo.
+ */
+public class OfferLoadHarness {
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final int SEED_CHUNK = 1_000;
+
+    private final Map<String, String> options = new LinkedHashMap<>();
+    private final List<String> applicationArgs = new ArrayList<>();
+
+    private final Map<Operation, Histogram> histograms = new LinkedHashMap<>();
+    private final Map<Operation, AtomicLong> errors = new LinkedHashMap<>();
+
+    private String baseUrl;
+    private ObjectMapper objectMapper;
+
+    private OfferLoadHarness(final String[] args) {
+        options.put("offers", "10000");
+        options.put("rate", "500");
+        options.put("seconds", "30");
+        options.put("warmup", "10");
+        options.put("seed", "42");
+        options.put("mix", "list:50,page:20,save:20,cancel:10");
+        options.put("max-in-flight", "1000");
+        options.put("report", "target/load-report");
+        for (final String arg : args) {
+            final String name = arg.startsWith("--") && arg.contains("=") ? arg.substring(2, arg.indexOf('=')) : null;
+            if (name != null && options.containsKey(name))
+                options.put(name, arg.substring(arg.indexOf('=') + 1));
+            else
+                applicationArgs.add(arg);
+        }
+        for (final Operation operation : Operation.values()) {
+            histograms.put(operation, new ConcurrentHistogram(HIGHEST_MICROS, 3));
+            errors.put(operation, new AtomicLong());
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new OfferLoadHarness(args).run();
+        // the embedded Mongo leaves threads behind after the context is closed
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        final List<String> args = new ArrayList<>(applicationArgs);
+        applicationDefault(args, "server.port", "0");
+        applicationDefault(args, "spring.data.mongodb.port", "0");
+        applicationDefault(args, "spring.data.mongodb.database", "load");
+        // the harness runs from the test classpath, whose application.yml is the one of the tests
+        applicationDefault(args, "spring.config.location", "file:target/classes/application.yml");
+
+        try (final ConfigurableApplicationContext context = new SpringApplicationBuilder(OfferApplication.class)
+                .run(args.toArray(new String[0]))) {
+            baseUrl = "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort() + "/api/offers";
+            objectMapper = context.getBean(ObjectMapper.class);
+            System.setProperty("http.maxConnections", options.get("max-in-flight"));
+
+            context.getBean(MongoTemplate.class).dropCollection(Offer.class);
+            final List<String> ids = seed(intOption("offers"));
+            load(ids);
+            report();
+        }
+    }
+
+    /**
+     * A property given twice in the command line would get both values.
+     */
+    private static void applicationDefault(final List<String> args, final String name, final String value) {
+        if (args.stream().noneMatch(arg -> arg.startsWith("--" + name + "=")))
+            args.add("--" + name + "=" + value);
+    }
+
+    private List<String> seed(final int size) throws IOException {
+        final long start = System.nanoTime();
+        final List<String> ids = new ArrayList<>(size);
+        for (int from = 0; from < size; from += SEED_CHUNK) {
+            final List<Offer> chunk = new ArrayList<>(SEED_CHUNK);
+            for (int index = from; index < Math.min(from + SEED_CHUNK, size); index++) {
+                final Offer offer = BenchmarkOffers.offer(index);
+                chunk.add(offer);
+                ids.add(offer.getId());
+            }
+            final int status = send("POST", "/batch", objectMapper.writeValueAsBytes(chunk));
+            if (status >= 400)
+                throw new IllegalStateException(String.format("The offers could not be seeded. [%d]", status));
+        }
+        System.out.printf("%d offers seeded in %d ms%n", size, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return ids;
+    }
+
+    /**
+     * The dispatcher only waits for the time of the next request, the requests
+     * wait for a connection in the pool and that time is part of their latency.
+     */
+    private void load(final List<String> ids) throws Exception {
+        final Mix mix = new Mix(options.get("mix"));
+        final Random random = new Random(Long.parseLong(options.get("seed")));
+        final long interval = TimeUnit.SECONDS.toNanos(1) / intOption("rate");
+        final long warmup = TimeUnit.SECONDS.toNanos(intOption("warmup"));
+        final long duration = TimeUnit.SECONDS.toNanos(intOption("seconds"));
+        final ExecutorService pool = Executors.newFixedThreadPool(intOption("max-in-flight"));
+
+        final long start = System.nanoTime();
+        for (long request = 0; ; request++) {
+            final long intended = start + request * interval;
+            final int index = (int) request;
+            if (intended - start >= warmup + duration)
+                break;
+            final Operation operation = mix.next(random);
+            final String id = ids.get(random.nextInt(ids.size()));
+            final boolean measured = intended - start >= warmup;
+            long now;
+            while ((now = System.nanoTime()) < intended)
+                LockSupport.parkNanos(intended - now);
+            pool.execute(() -> execute(operation, id, index, intended, measured));
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private void execute(final Operation operation, final String id, final int index,
+                         final long intended, final boolean measured) {
+        int status;
+        try {
+            switch (operation) {
+                case LIST:
+                    status = send("GET", "", null);
+                    break;
+                case PAGE:
+                    status = send("GET", "/all?limit=100", null);
+                    break;
+                case SAVE:
+                    final Offer offer = BenchmarkOffers.offer(index);
+                    offer.setId(null);
+                    status = send("POST", "", objectMapper.writeValueAsBytes(offer));
+                    break;
+                default:
+                    status = send("PUT", "/" + id, null);
+            }
+        } catch (IOException e) {
+            status = -1;
+        }
+        if (!measured)
+            return;
+        histograms.get(operation).recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended), HIGHEST_MICROS));
+        if (status < 200 || status >= 400)
+            errors.get(operation).incrementAndGet();
+    }
+
+    private int send(final String method, final String path, final byte[] body) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", "application/json");
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (final OutputStream output = connection.getOutputStream()) {
+                output.write(body);
+            }
+        }
+        final int status = connection.getResponseCode();
+        // the body is read to the end, so the connection can be reused
+        try (final InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (input != null) {
+                final byte[] buffer = new byte[8192];
+                while (input.read(buffer) != -1) ;
+            }
+        }
+        return status;
+    }
+
+    private void report() throws IOException {
+        final Path report = Paths.get(options.get("report") + ".txt");
+        if (report.getParent() != null)
+            Files.createDirectories(report.getParent());
+        try (final PrintStream out = new PrintStream(new FileOutputStream(report.toFile()), true, "UTF-8")) {
+            out.printf("# %s%n", options);
+            out.printf(Locale.ROOT, "%-8s %9s %7s %9s %9s %9s %9s %9s%n",
+                    "op", "count", "errors", "p50_ms", "p90_ms", "p99_ms", "p999_ms", "max_ms");
+            for (final Operation operation : Operation.values()) {
+                final Histogram histogram = histograms.get(operation);
+                out.printf(Locale.ROOT, "%-8s %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                        operation.key, histogram.getTotalCount(), errors.get(operation).get(),
+                        millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                        histogram.getMaxValue() / 1e3);
+                try (final PrintStream distribution = new PrintStream(
+                        new FileOutputStream(options.get("report") + "-" + operation.key + ".hgrm"), true, "UTF-8")) {
+                    histogram.outputPercentileDistribution(distribution, 1e3);
+                }
+            }
+        }
+        Files.readAllLines(report).forEach(System.out::println);
+    }
+
+    private static double millis(final Histogram histogram, final double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e3;
+    }
+
+    private int intOption(final String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    private enum Operation {
+        LIST("list"), PAGE("page"), SAVE("save"), CANCEL("cancel");
+
+        private final String key;
+
+        Operation(final String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Weighted choice of the operations, for instance list:50,save:50.
+     */
+    private static class Mix {
+
+        private final List<Operation> operations = new ArrayList<>();
+        private final List<Integer> weights = new ArrayList<>();
+        private int total;
+
+        Mix(final String mix) {
+            for (final String part : mix.split(",")) {
+                final String[] operationAndWeight = part.trim().split(":");
+                operations.add(Operation.valueOf(operationAndWeight[0].toUpperCase(Locale.ROOT)));
+                weights.add(Integer.parseInt(operationAndWeight[1]));
+                total += weights.get(weights.size() - 1);
+            }
+        }
+
+        Operation next(final Random random) {
+            int choice = random.nextInt(total);
+            for (int index = 0; index < operations.size(); index++) {
+                choice -= weights.get(index);
+                if (choice < 0)
+                    return operations.get(index);
+            }
+            throw new IllegalStateException();
+        }
+    }
+}
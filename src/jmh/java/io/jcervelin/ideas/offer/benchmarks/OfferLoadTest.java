@@ -0,0 +1,104 @@
+package io.jcervelin.ideas.offer.benchmarks;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop HTTP load against a running instance: each client sends its next
+ * request when the previous one is answered. It compares the platform and the
+ * virtual thread modes of the same build, the JMH benchmarks don't go through Tomcat.
+ *
+ * Arguments: url, number of clients, seconds measured. The first 5 seconds are warm-up.
+ */
+public class OfferLoadTest {
+
+    private static final long WARM_UP = TimeUnit.SECONDS.toNanos(5);
+
+    public static void main(final String[] args) throws Exception {
+        final String url = args.length > 0 ? args[0] : "http://localhost:8080/api/offers";
+        final int clients = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        final long duration = TimeUnit.SECONDS.toNanos(args.length > 2 ? Long.parseLong(args[2]) : 30);
+
+        // keeps one connection per client alive, the default is 5
+        System.setProperty("http.maxConnections", String.valueOf(clients));
+
+        final ExecutorService pool = Executors.newFixedThreadPool(clients);
+        final long start = System.nanoTime();
+        final List<Future<Client>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++)
+            futures.add(pool.submit(() -> new Client(url).run(start + WARM_UP, start + WARM_UP + duration)));
+
+        final List<Long> latencies = new ArrayList<>();
+        long errors = 0;
+        for (final Future<Client> future : futures) {
+            final Client client = future.get();
+            latencies.addAll(client.latencies);
+            errors += client.errors;
+        }
+        pool.shutdown();
+        Collections.sort(latencies);
+
+        final double seconds = duration / 1e9;
+        System.out.printf("%s clients=%d requests=%d errors=%d throughput=%.1f req/s p50=%.2f ms p99=%.2f ms max=%.2f ms%n",
+                url, clients, latencies.size(), errors, latencies.size() / seconds,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1.0));
+    }
+
+    private static double percentile(final List<Long> sorted, final double percentile) {
+        if (sorted.isEmpty())
+            return 0;
+        final int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+
+    private static class Client {
+
+        private final URL url;
+        private final byte[] buffer = new byte[8192];
+        private final List<Long> latencies = new ArrayList<>();
+        private long errors;
+
+        Client(final String url) throws Exception {
+            this.url = new URL(url);
+        }
+
+        Client run(final long measureFrom, final long measureTo) {
+            long now;
+            while ((now = System.nanoTime()) < measureTo) {
+                final boolean ok = send();
+                final long latency = System.nanoTime() - now;
+                if (now >= measureFrom) {
+                    if (ok)
+                        latencies.add(latency);
+                    else
+                        errors++;
+                }
+            }
+            return this;
+        }
+
+        private boolean send() {
+            try {
+                final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                connection.setRequestProperty("Accept", "application/json");
+                final int status = connection.getResponseCode();
+                // the body is read to the end, so the connection can be reused
+                try (final InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                    if (body != null)
+                        while (body.read(buffer) != -1) ;
+                }
+                return status < 400;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+    }
+}
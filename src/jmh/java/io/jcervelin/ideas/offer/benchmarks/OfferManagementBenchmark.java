@@ -0,0 +1,49 @@
+package io.jcervelin.ideas.offer.benchmarks;
+
+import io.jcervelin.ideas.offer.configs.batch.OfferBatchProperties;
+import io.jcervelin.ideas.offer.configs.validation.OfferValidationProperties;
+import io.jcervelin.ideas.offer.configs.writebehind.OfferWriteBehindProperties;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.usecases.OfferManagement;
+import io.jcervelin.ideas.offer.usecases.OfferWriteBehind;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
+import io.jcervelin.ideas.offer.utils.OfferValidator;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.Validation;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Use case of the valid offers over an in-memory repository, without Mongo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OfferManagementBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private OfferManagement offerManagement;
+
+    @Setup
+    public void setUp() {
+        final OfferCollectionVersion collectionVersion = new OfferCollectionVersion();
+        final InMemoryOfferRepository repository = new InMemoryOfferRepository(BenchmarkOffers.offers(size));
+        offerManagement = new OfferManagement(
+                repository,
+                new OfferValidator(Validation.buildDefaultValidatorFactory().getValidator(), new OfferValidationProperties()),
+                new OfferBatchProperties(),
+                collectionVersion,
+                new OfferWriteBehind(repository, new OfferWriteBehindProperties(), collectionVersion));
+    }
+
+    @Benchmark
+    public List<Offer> getValidOffers() {
+        return offerManagement.getValidOffers();
+    }
+}
@@ -0,0 +1,67 @@
+package io.jcervelin.ideas.offer.benchmarks;
+
+import io.jcervelin.ideas.offer.configs.search.OfferSearchIndexProperties;
+import io.jcervelin.ideas.offer.gateways.repositories.impl.OfferSearchIndex;
+import io.jcervelin.ideas.offer.models.Offer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches on the search index. Each offer is named by two of a thousand words,
+ * so a word is in around 0.2% of the offers, and all of them have "piano" in the
+ * description.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OfferSearchIndexBenchmark {
+
+    private static final int WORDS = 1000;
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    private OfferSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new OfferSearchIndex(null, new OfferSearchIndexProperties());
+        final Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            final Offer offer = BenchmarkOffers.offer(i);
+            offer.setName(word(random.nextInt(WORDS)) + " " + word(random.nextInt(WORDS)));
+            offer.setDescription("Amazing and fancy piano number " + i + ".");
+            index.put(offer);
+        }
+    }
+
+    @Benchmark
+    public List<String> searchAWord() {
+        return index.search(word(7), 0, 20);
+    }
+
+    @Benchmark
+    public List<String> searchAPrefix() {
+        return index.search("word7", 0, 20);
+    }
+
+    @Benchmark
+    public List<String> searchTwoWords() {
+        return index.search(word(7) + " piano", 0, 20);
+    }
+
+    @Benchmark
+    public List<String> searchACommonWordDeep() {
+        return index.search("piano", 1000, 20);
+    }
+
+    private static String word(final int index) {
+        return "word" + index + "x";
+    }
+}
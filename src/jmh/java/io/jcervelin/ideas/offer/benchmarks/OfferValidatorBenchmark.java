@@ -0,0 +1,58 @@
+package io.jcervelin.ideas.offer.benchmarks;
+
+import io.jcervelin.ideas.offer.configs.validation.OfferValidationProperties;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidOfferException;
+import io.jcervelin.ideas.offer.utils.OfferValidator;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OfferValidatorBenchmark {
+
+    private OfferValidator validator;
+    private OfferValidator reflectiveValidator;
+    private Offer validOffer;
+    private Offer invalidOffer;
+
+    @Setup
+    public void setUp() {
+        final Validator beanValidator = Validation.buildDefaultValidatorFactory().getValidator();
+        validator = new OfferValidator(beanValidator, new OfferValidationProperties());
+        final OfferValidationProperties reflective = new OfferValidationProperties();
+        reflective.setCompiled(false);
+        reflectiveValidator = new OfferValidator(beanValidator, reflective);
+        validOffer = BenchmarkOffers.offer(0);
+        invalidOffer = new Offer();
+    }
+
+    @Benchmark
+    public Offer validateValidOffer() {
+        validator.validate(validOffer);
+        return validOffer;
+    }
+
+    @Benchmark
+    public Offer validateValidOfferReflective() {
+        reflectiveValidator.validate(validOffer);
+        return validOffer;
+    }
+
+    @Benchmark
+    public String validateInvalidOffer() {
+        try {
+            validator.validate(invalidOffer);
+            return null;
+        } catch (InvalidOfferException e) {
+            return e.getMessage();
+        }
+    }
+}
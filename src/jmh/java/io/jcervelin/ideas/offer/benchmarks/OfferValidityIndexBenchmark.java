@@ -0,0 +1,60 @@
+package io.jcervelin.ideas.offer.benchmarks;
+
+import io.jcervelin.ideas.offer.configs.cache.OfferValidityIndexProperties;
+import io.jcervelin.ideas.offer.configs.tenant.OfferTenantProperties;
+import io.jcervelin.ideas.offer.gateways.repositories.impl.OfferValidityIndex;
+import io.jcervelin.ideas.offer.models.Offer;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time and period queries on the validity index. The offers start
+ * on any day of three years and last from 1 to 30 days, so a day has
+ * around 1.4% of them valid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class OfferValidityIndexBenchmark {
+
+    private static final int DAYS = 3 * 365;
+    private static final int PAGE = 101;
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    private OfferValidityIndex index;
+    private LocalDate first;
+    private LocalDate day;
+
+    @Setup
+    public void setUp() {
+        index = new OfferValidityIndex(null, new OfferValidityIndexProperties(), new OfferTenantProperties());
+        first = LocalDate.now().minusDays(DAYS / 2);
+        final Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            final Offer offer = BenchmarkOffers.offer(i);
+            offer.setStartOffer(first.plusDays(random.nextInt(DAYS)));
+            offer.setEndOffer(offer.getStartOffer().plusDays(1 + random.nextInt(30)));
+            index.put(offer);
+        }
+        day = first.plusDays(DAYS / 2);
+    }
+
+    @Benchmark
+    public List<String> findValidOn() {
+        return index.findValidBetween(day, day, null, PAGE);
+    }
+
+    @Benchmark
+    public List<String> findValidInAWeek() {
+        return index.findValidBetween(day, day.plusDays(6), null, PAGE);
+    }
+}
@@ -0,0 +1,17 @@
+package io.jcervelin.ideas.offer.configs.analytics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the discount analytics. The rollup keeps the topDiscounts
+ * offers with the biggest discount.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "offer.analytics")
+public class OfferAnalyticsProperties {
+
+    private int topDiscounts = 10;
+}
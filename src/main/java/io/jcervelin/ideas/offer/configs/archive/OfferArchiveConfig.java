@@ -0,0 +1,14 @@
+package io.jcervelin.ideas.offer.configs.archive;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * The scheduled archival only runs when it's enabled.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(prefix = "offer.archive", name = "enabled", havingValue = "true")
+public class OfferArchiveConfig {
+}
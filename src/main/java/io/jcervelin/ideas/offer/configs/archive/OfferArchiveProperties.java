@@ -0,0 +1,25 @@
+package io.jcervelin.ideas.offer.configs.archive;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the archival of the expired offers, run by offer.archive.cron, 3 AM by default.
+ * The offers which ended more than retentionDays ago are moved to the archive collection
+ * in batches of batchSize, up to maxBatches per run. Between two batches the job pauses
+ * the time taken by the last one, and never less than pause.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "offer.archive")
+public class OfferArchiveProperties {
+
+    private boolean enabled = false;
+    private int retentionDays = 90;
+    private int batchSize = 500;
+    private int maxBatches = 1_000;
+    private Duration pause = Duration.ofMillis(200);
+}
@@ -0,0 +1,18 @@
+package io.jcervelin.ideas.offer.configs.batch;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the bulk ingestion of offers. The offers are written
+ * to Mongo in chunks of chunkSize, and a request can't have more than maxSize offers.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "offer.batch")
+public class OfferBatchProperties {
+
+    private int chunkSize = 1_000;
+    private int maxSize = 200_000;
+}
@@ -0,0 +1,23 @@
+package io.jcervelin.ideas.offer.configs.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the in-memory snapshot of valid offers.
+ * The memory budget is expressed in number of offers held
+ * across all the date buckets.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "offer.cache")
+public class OfferCacheProperties {
+
+    private boolean enabled = true;
+    private Duration timeToLive = Duration.ofSeconds(30);
+    private int maxBuckets = 2;
+    private int maxOffers = 100_000;
+}
@@ -0,0 +1,21 @@
+package io.jcervelin.ideas.offer.configs.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the in-memory validity index. When it's disabled,
+ * the validity queries by date go to Mongo.
+ *
+ * Each tenant whose collection has more than maxOffers offers, when it's loaded
+ * or later, has its queries by date sent to Mongo until the next restart.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "offer.validity-index")
+public class OfferValidityIndexProperties {
+
+    private boolean enabled = true;
+    private int maxOffers = 1000000;
+}
@@ -20,6 +20,7 @@ import static com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS
 /**
  * Class responsible for customise the date format of the JSON responses
  * the pattern to LocalDate is dd/MM/yyyy
+ * The buffers of the mapper are shared by PooledBufferRecycler.
  */
 @Configuration
 public class JacksonParser {
@@ -36,6 +37,7 @@ public class JacksonParser {
     public ObjectMapper jsonObjectMapper(final JavaTimeModule javaTimeModule) {
         return Jackson2ObjectMapperBuilder
                 .json()
+                .factory(PooledBufferRecycler.jsonFactory())
                 .serializationInclusion(NON_NULL)
                 .featuresToDisable(WRITE_DATES_AS_TIMESTAMPS)
                 .serializerByType(ObjectId.class, new ToStringSerializer())
@@ -0,0 +1,121 @@
+package io.jcervelin.ideas.offer.configs.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Class responsible for share the buffers Jackson takes to write and read each response
+ * between all the threads. Jackson keeps them in a ThreadLocal, which a virtual thread,
+ * one per request, never reuses, so every response allocated new ones.
+ *
+ * The pool is bounded, a buffer released when it's full or bigger than the max size,
+ * like the last block of writeValueAsBytes, is left to the GC.
+ */
+public class PooledBufferRecycler extends BufferRecycler {
+
+    private static final PooledBufferRecycler SHARED = new PooledBufferRecycler(64, 64 * 1024);
+
+    private final int maxBufferSize;
+    private final List<Queue<byte[]>> byteBuffers = new ArrayList<>();
+    private final List<Queue<char[]>> charBuffers = new ArrayList<>();
+
+    PooledBufferRecycler(final int buffersPerKind, final int maxBufferSize) {
+        this.maxBufferSize = maxBufferSize;
+        for (int index = 0; index < _byteBuffers.length; index++)
+            byteBuffers.add(new ArrayBlockingQueue<>(buffersPerKind));
+        for (int index = 0; index < _charBuffers.length; index++)
+            charBuffers.add(new ArrayBlockingQueue<>(buffersPerKind));
+    }
+
+    public static JsonFactory jsonFactory() {
+        return new PooledJsonFactory();
+    }
+
+    public static SmileFactory smileFactory() {
+        return new PooledSmileFactory();
+    }
+
+    @Override
+    public byte[] allocByteBuffer(final int index, final int minSize) {
+        final int size = Math.max(minSize, byteBufferLength(index));
+        final byte[] buffer = byteBuffers.get(index).poll();
+        return buffer == null || buffer.length < size ? balloc(size) : buffer;
+    }
+
+    @Override
+    public void releaseByteBuffer(final int index, final byte[] buffer) {
+        if (buffer != null && buffer.length <= maxBufferSize)
+            byteBuffers.get(index).offer(buffer);
+    }
+
+    @Override
+    public char[] allocCharBuffer(final int index, final int minSize) {
+        final int size = Math.max(minSize, charBufferLength(index));
+        final char[] buffer = charBuffers.get(index).poll();
+        return buffer == null || buffer.length < size ? calloc(size) : buffer;
+    }
+
+    @Override
+    public void releaseCharBuffer(final int index, final char[] buffer) {
+        if (buffer != null && buffer.length <= maxBufferSize)
+            charBuffers.get(index).offer(buffer);
+    }
+
+    static class PooledJsonFactory extends JsonFactory {
+
+        private static final long serialVersionUID = -1480862380524357290L;
+
+        PooledJsonFactory() {
+        }
+
+        private PooledJsonFactory(final PooledJsonFactory source) {
+            super(source, null);
+        }
+
+        @Override
+        public BufferRecycler _getBufferRecycler() {
+            return SHARED;
+        }
+
+        @Override
+        public JsonFactory copy() {
+            return new PooledJsonFactory(this);
+        }
+
+        /**
+         * Jackson checks it before creating the non-blocking parser of the reactive profile.
+         */
+        @Override
+        public String getFormatName() {
+            return FORMAT_NAME_JSON;
+        }
+    }
+
+    static class PooledSmileFactory extends SmileFactory {
+
+        private static final long serialVersionUID = 3325874618405640853L;
+
+        PooledSmileFactory() {
+        }
+
+        private PooledSmileFactory(final PooledSmileFactory source) {
+            super(source, null);
+        }
+
+        @Override
+        public BufferRecycler _getBufferRecycler() {
+            return SHARED;
+        }
+
+        @Override
+        public SmileFactory copy() {
+            return new PooledSmileFactory(this);
+        }
+    }
+}
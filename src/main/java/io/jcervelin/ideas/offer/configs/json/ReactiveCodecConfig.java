@@ -0,0 +1,35 @@
+package io.jcervelin.ideas.offer.configs.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jcervelin.ideas.offer.gateways.http.streams.OfferStreamWriter;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Class responsible for make the JSON encoder of the reactive profile
+ * write NDJSON one offer at a time, as it does for application/stream+json.
+ * It runs after the customizer of Spring Boot, which sets the encoder
+ * without NDJSON.
+ */
+@Profile("reactive")
+@Configuration
+public class ReactiveCodecConfig {
+
+    @Bean
+    @Order(1)
+    public CodecCustomizer ndjsonCodecCustomizer(final ObjectMapper objectMapper) {
+        return configurer -> {
+            final Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper,
+                    MediaType.APPLICATION_JSON, new MediaType("application", "*+json"), OfferStreamWriter.APPLICATION_NDJSON);
+            encoder.setStreamingMediaTypes(asList(MediaType.APPLICATION_STREAM_JSON, OfferStreamWriter.APPLICATION_NDJSON));
+            configurer.defaultCodecs().jackson2JsonEncoder(encoder);
+        };
+    }
+}
@@ -0,0 +1,85 @@
+package io.jcervelin.ideas.offer.configs.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+
+/**
+ * Class responsible for the Smile format, the binary JSON of Jackson, used when the
+ * client sends or accepts application/x-jackson-smile. The field names are written
+ * once per response and the dates are written as epoch days instead of dd/MM/yyyy.
+ */
+@Configuration
+public class SmileParser {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+
+    /**
+     * Replaces the Smile converter Spring registers with its default mapper.
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter() {
+        return new MappingJackson2SmileHttpMessageConverter(smileObjectMapper());
+    }
+
+    public static ObjectMapper smileObjectMapper() {
+        return Jackson2ObjectMapperBuilder
+                .smile()
+                .factory(PooledBufferRecycler.smileFactory())
+                .serializationInclusion(NON_NULL)
+                .serializerByType(ObjectId.class, new ToStringSerializer())
+                .serializerByType(LocalDate.class, new EpochDaySerializer())
+                .deserializerByType(LocalDate.class, new EpochDayDeserializer())
+                .build();
+    }
+
+    /**
+     * Takes the place of the pattern of the @JsonFormat of the offers,
+     * it's not contextual.
+     */
+    static class EpochDaySerializer extends StdSerializer<LocalDate> {
+
+        private static final long serialVersionUID = 2376431953095232478L;
+
+        EpochDaySerializer() {
+            super(LocalDate.class);
+        }
+
+        @Override
+        public void serialize(final LocalDate value, final JsonGenerator generator,
+                              final SerializerProvider provider) throws IOException {
+            generator.writeNumber(value.toEpochDay());
+        }
+    }
+
+    static class EpochDayDeserializer extends StdDeserializer<LocalDate> {
+
+        private static final long serialVersionUID = -4461397380315529315L;
+
+        EpochDayDeserializer() {
+            super(LocalDate.class);
+        }
+
+        @Override
+        public LocalDate deserialize(final JsonParser parser, final DeserializationContext context) throws IOException {
+            return LocalDate.ofEpochDay(parser.getLongValue());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package io.jcervelin.ideas.offer.configs.json;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import springfox.documentation.builders.ApiInfoBuilder;
 import springfox.documentation.builders.ResponseMessageBuilder;
 import springfox.documentation.service.ApiInfo;
@@ -17,6 +18,7 @@ import static springfox.documentation.builders.PathSelectors.regex;
 import static springfox.documentation.builders.RequestHandlerSelectors.any;
 import static springfox.documentation.spi.DocumentationType.SWAGGER_2;
 
+@Profile("!reactive")
 @Configuration
 @EnableSwagger2
 public class SwaggerConfig {
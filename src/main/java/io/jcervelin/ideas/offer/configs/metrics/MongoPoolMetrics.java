@@ -0,0 +1,86 @@
+package io.jcervelin.ideas.offer.configs.metrics;
+
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.*;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Listener of the Mongo driver connection pools which publishes, per server,
+ * the size of the pool, the connections checked out and the threads waiting for one.
+ */
+@RequiredArgsConstructor
+@Component
+public class MongoPoolMetrics implements ConnectionPoolListener {
+
+    private final MeterRegistry registry;
+    private final ConcurrentMap<ServerId, Pool> pools = new ConcurrentHashMap<>();
+
+    @Override
+    public void connectionPoolOpened(final ConnectionPoolOpenedEvent event) {
+        final Pool pool = pool(event.getServerId());
+        final String server = event.getServerId().getAddress().toString();
+        Gauge.builder("mongodb.pool.size", pool.size, AtomicInteger::get)
+                .description("Connections in the pool").tag("server", server).register(registry);
+        Gauge.builder("mongodb.pool.checkedout", pool.checkedOut, AtomicInteger::get)
+                .description("Connections in use").tag("server", server).register(registry);
+        Gauge.builder("mongodb.pool.waitqueue", pool.waitQueue, AtomicInteger::get)
+                .description("Threads waiting for a connection").tag("server", server).register(registry);
+        Gauge.builder("mongodb.pool.max", event.getSettings(), settings -> settings.getMaxSize())
+                .description("Max connections of the pool").tag("server", server).register(registry);
+    }
+
+    @Override
+    public void connectionPoolClosed(final ConnectionPoolClosedEvent event) {
+        final Pool pool = pool(event.getServerId());
+        pool.size.set(0);
+        pool.checkedOut.set(0);
+        pool.waitQueue.set(0);
+    }
+
+    @Override
+    public void connectionCheckedOut(final ConnectionCheckedOutEvent event) {
+        pool(event.getConnectionId().getServerId()).checkedOut.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedIn(final ConnectionCheckedInEvent event) {
+        pool(event.getConnectionId().getServerId()).checkedOut.decrementAndGet();
+    }
+
+    @Override
+    public void waitQueueEntered(final ConnectionPoolWaitQueueEnteredEvent event) {
+        pool(event.getServerId()).waitQueue.incrementAndGet();
+    }
+
+    @Override
+    public void waitQueueExited(final ConnectionPoolWaitQueueExitedEvent event) {
+        pool(event.getServerId()).waitQueue.decrementAndGet();
+    }
+
+    @Override
+    public void connectionAdded(final ConnectionAddedEvent event) {
+        pool(event.getConnectionId().getServerId()).size.incrementAndGet();
+    }
+
+    @Override
+    public void connectionRemoved(final ConnectionRemovedEvent event) {
+        pool(event.getConnectionId().getServerId()).size.decrementAndGet();
+    }
+
+    private Pool pool(final ServerId serverId) {
+        return pools.computeIfAbsent(serverId, id -> new Pool());
+    }
+
+    private static class Pool {
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicInteger checkedOut = new AtomicInteger();
+        private final AtomicInteger waitQueue = new AtomicInteger();
+    }
+}
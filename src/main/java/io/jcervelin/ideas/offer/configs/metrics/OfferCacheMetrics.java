@@ -0,0 +1,35 @@
+package io.jcervelin.ideas.offer.configs.metrics;
+
+import io.jcervelin.ideas.offer.gateways.repositories.impl.CachedOfferRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the statistics of the valid offers snapshot, when the cache is enabled.
+ */
+@RequiredArgsConstructor
+@Component
+public class OfferCacheMetrics implements MeterBinder {
+
+    private final ObjectProvider<CachedOfferRepository> cachedOfferRepository;
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        cachedOfferRepository.ifAvailable(cache -> {
+            FunctionCounter.builder("offer.cache.hits", cache, c -> c.statistics().getHits())
+                    .register(registry);
+            FunctionCounter.builder("offer.cache.misses", cache, c -> c.statistics().getMisses())
+                    .register(registry);
+            FunctionCounter.builder("offer.cache.evictions", cache, c -> c.statistics().getEvictions())
+                    .register(registry);
+            Gauge.builder("offer.cache.offers", cache, c -> c.statistics().getOffers())
+                    .description("Offers held by the snapshots")
+                    .register(registry);
+        });
+    }
+}
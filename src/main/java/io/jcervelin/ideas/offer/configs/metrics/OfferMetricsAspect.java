@@ -0,0 +1,96 @@
+package io.jcervelin.ideas.offer.configs.metrics;
+
+import io.jcervelin.ideas.offer.models.OfferPage;
+import io.jcervelin.ideas.offer.models.exceptions.ErrorResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * Class responsible for the metrics of the offers:
+ * a timer around every use case and repository call, tagged by the outcome
+ * (success or the simple name of the exception thrown), the number of offers
+ * returned by the list use cases and a counter of the error responses.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class OfferMetricsAspect {
+
+    public static final String USECASE_TIMER = "offer.usecase";
+    public static final String REPOSITORY_TIMER = "offer.repository";
+    public static final String RESULT_SIZE = "offer.results";
+    public static final String ERRORS = "offer.errors";
+    public static final String SUCCESS = "success";
+
+    private final MeterRegistry registry;
+
+    @Around("execution(public * io.jcervelin.ideas.offer.usecases.OfferManagement.*(..))")
+    public Object timeUseCase(final ProceedingJoinPoint joinPoint) throws Throwable {
+        final Object result = time(USECASE_TIMER, joinPoint);
+        recordResultSize(joinPoint, result);
+        return result;
+    }
+
+    @Around("execution(public * io.jcervelin.ideas.offer.gateways.repositories.OfferRepository+.*(..))")
+    public Object timeRepository(final ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(REPOSITORY_TIMER, joinPoint);
+    }
+
+    @AfterReturning(
+            pointcut = "execution(* io.jcervelin.ideas.offer.gateways.http.advices.ExceptionControllerAdvice.*(..)) && args(exception)",
+            returning = "response")
+    public void countError(final Exception exception, final ResponseEntity<ErrorResponse> response) {
+        Counter.builder(ERRORS)
+                .description("Error responses by exception and status")
+                .tag("exception", exception.getClass().getSimpleName())
+                .tag("status", String.valueOf(response.getStatusCodeValue()))
+                .register(registry)
+                .increment();
+    }
+
+    private Object time(final String name, final ProceedingJoinPoint joinPoint) throws Throwable {
+        final Timer.Sample sample = Timer.start(registry);
+        String outcome = SUCCESS;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(name)
+                    .tag("class", joinPoint.getTarget().getClass().getSimpleName())
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("outcome", outcome)
+                    .register(registry));
+        }
+    }
+
+    private void recordResultSize(final JoinPoint joinPoint, final Object result) {
+        final int size;
+        if (result instanceof Collection)
+            size = ((Collection<?>) result).size();
+        else if (result instanceof OfferPage)
+            size = ((OfferPage) result).getOffers().size();
+        else
+            return;
+
+        DistributionSummary.builder(RESULT_SIZE)
+                .description("Offers returned by the list use cases")
+                .tag("method", joinPoint.getSignature().getName())
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(size);
+    }
+}
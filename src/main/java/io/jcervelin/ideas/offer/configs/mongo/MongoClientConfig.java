@@ -0,0 +1,74 @@
+package io.jcervelin.ideas.offer.configs.mongo;
+
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ReadPreference;
+import com.mongodb.TagSet;
+import io.jcervelin.ideas.offer.configs.metrics.MongoPoolMetrics;
+import io.jcervelin.ideas.offer.configs.threads.VirtualThreadProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Options of the Mongo client created by Spring Boot, and the templates which use it.
+ *
+ * The primary template is the one of Spring Boot, every operation reads from the primary.
+ * The list template, listMongoTemplate, serves the pages, the searches and the exports,
+ * with the read preference of offer.mongo.list-read-preference. With a max staleness it also
+ * serves the lists sent with an ETag, once the last write is older than it.
+ */
+@Configuration
+public class MongoClientConfig {
+
+    public static final String LIST_MONGO_TEMPLATE = "listMongoTemplate";
+
+    @Bean
+    public MongoClientOptions mongoClientOptions(final MongoPoolMetrics mongoPoolMetrics,
+                                                 final VirtualThreadProperties virtualThreadProperties,
+                                                 final OfferMongoProperties properties) {
+        final MongoClientOptions.Builder builder = MongoClientOptions.builder()
+                .addConnectionPoolListener(mongoPoolMetrics)
+                .minConnectionsPerHost(properties.getMinPoolSize())
+                .connectionsPerHost(properties.getMaxPoolSize())
+                .threadsAllowedToBlockForConnectionMultiplier(properties.getWaitQueueMultiplier())
+                .maxWaitTime((int) properties.getMaxWaitTime().toMillis())
+                .maxConnectionIdleTime((int) properties.getMaxConnectionIdleTime().toMillis())
+                .connectTimeout((int) properties.getConnectTimeout().toMillis())
+                .socketTimeout((int) properties.getSocketTimeout().toMillis())
+                .serverSelectionTimeout((int) properties.getServerSelectionTimeout().toMillis());
+        // on virtual threads every request may be waiting for a connection at the same time,
+        // the bigger of both multipliers is kept so neither setting shrinks the other
+        if (virtualThreadProperties.isEnabled())
+            builder.threadsAllowedToBlockForConnectionMultiplier(
+                    Math.max(properties.getWaitQueueMultiplier(), virtualThreadProperties.getConnectionWaitMultiplier()));
+        return builder.build();
+    }
+
+    @Primary
+    @Bean
+    public MongoTemplate mongoTemplate(final MongoDbFactory mongoDbFactory, final MongoConverter mongoConverter) {
+        return new MongoTemplate(mongoDbFactory, mongoConverter);
+    }
+
+    @Bean(LIST_MONGO_TEMPLATE)
+    public MongoTemplate listMongoTemplate(final MongoDbFactory mongoDbFactory, final MongoConverter mongoConverter,
+                                           final OfferMongoProperties properties) {
+        final MongoTemplate listMongoTemplate = new MongoTemplate(mongoDbFactory, mongoConverter);
+        listMongoTemplate.setReadPreference(listReadPreference(properties));
+        return listMongoTemplate;
+    }
+
+    static ReadPreference listReadPreference(final OfferMongoProperties properties) {
+        final ReadPreference readPreference = ReadPreference.valueOf(properties.getListReadPreference());
+        if (properties.getListMaxStaleness() == null || readPreference.equals(ReadPreference.primary()))
+            return readPreference;
+        return ReadPreference.valueOf(properties.getListReadPreference(), Collections.<TagSet>emptyList(),
+                properties.getListMaxStaleness().getSeconds(), TimeUnit.SECONDS);
+    }
+}
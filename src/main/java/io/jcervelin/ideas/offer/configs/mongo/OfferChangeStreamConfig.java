@@ -0,0 +1,53 @@
+package io.jcervelin.ideas.offer.configs.mongo;
+
+import com.mongodb.client.model.changestream.FullDocument;
+import io.jcervelin.ideas.offer.gateways.repositories.impl.OfferChangeStreamListener;
+import io.jcervelin.ideas.offer.models.Offer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Subscribes the OfferChangeStreamListener to the change stream of the offers collection.
+ * The updates are read with the whole document, so the listener gets the offer as it is now.
+ * The container doesn't start by itself, it's started when the bean is created
+ * and stopped when the application shuts down. The listener registers the request,
+ * and registers it again from its last resume token when the stream breaks.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "offer.change-stream", name = "enabled", havingValue = "true")
+public class OfferChangeStreamConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public MessageListenerContainer offerChangeStreamContainer(final MongoTemplate mongoTemplate,
+                                                               final OfferChangeStreamListener listener) {
+        final SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("offer-change-stream-");
+        // a failure opening the stream, on a standalone server for instance, doesn't reach the error handler
+        final DefaultMessageListenerContainer container = new DefaultMessageListenerContainer(mongoTemplate, task ->
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        listener.onError(e);
+                    }
+                }));
+
+        listener.subscribe(container, resumeToken -> {
+            final ChangeStreamRequest.ChangeStreamRequestBuilder<Offer> request = ChangeStreamRequest.builder(listener)
+                    .collection(mongoTemplate.getCollectionName(Offer.class))
+                    .filter(newAggregation(match(where("operationType").in("insert", "update", "replace", "delete"))))
+                    .fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+            return resumeToken == null ? request.build() : request.resumeToken(resumeToken).build();
+        });
+        return container;
+    }
+}
@@ -0,0 +1,30 @@
+package io.jcervelin.ideas.offer.configs.mongo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the change stream of the offers collection.
+ * Change streams need a replica set, so it's disabled by default.
+ *
+ * The changes wait in a queue of up to queueSize and are applied in batches of up to
+ * batchSize. A full batch means a burst of writes, the snapshots of the cache are then
+ * dropped instead of patched.
+ *
+ * A broken stream is opened again from the last change seen after retryDelay,
+ * doubled on each failure up to maxRetryDelay.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "offer.change-stream")
+public class OfferChangeStreamProperties {
+
+    private boolean enabled = false;
+    private int queueSize = 10_000;
+    private int batchSize = 1_000;
+    private Duration retryDelay = Duration.ofSeconds(1);
+    private Duration maxRetryDelay = Duration.ofMinutes(1);
+}
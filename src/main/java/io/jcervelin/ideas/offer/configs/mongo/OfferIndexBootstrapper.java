@@ -0,0 +1,118 @@
+package io.jcervelin.ideas.offer.configs.mongo;
+
+import io.jcervelin.ideas.offer.configs.tenant.OfferTenantProperties;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.util.ClassTypeInformation;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Class responsible for verify and create the indexes of the offers collection
+ * of every tenant when the application starts: the compound indexes declared in the
+ * Offer class plus the partial indexes, which can't be declared by annotations.
+ *
+ * After that, the plan chosen by Mongo for the validity query is logged,
+ * so the use of the index can be checked without a profiler.
+ * A failure here is only logged, the offers can still be served without the indexes.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class OfferIndexBootstrapper {
+
+    public static final String CURRENCY_NAME_INDEX = "currency_name_idx";
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoMappingContext mappingContext;
+    private final OfferTenantProperties tenantProperties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void provision() {
+        tenantProperties.all().forEach(tenant -> OfferTenant.run(tenant, () -> {
+            try {
+                ensureIndexes();
+                log.info("Validity query plan of the tenant {}: {}", tenant, explainValidityQuery(LocalDate.now()));
+            } catch (Exception e) {
+                log.warn("The indexes of the offers of the tenant {} could not be provisioned. [{}]", tenant, e.getMessage());
+            }
+        }));
+    }
+
+    public void ensureIndexes() {
+        final IndexOperations indexOperations = mongoTemplate.indexOps(Offer.class);
+        final Set<String> existing = indexOperations.getIndexInfo().stream()
+                .map(IndexInfo::getName)
+                .collect(Collectors.toSet());
+
+        for (final IndexDefinition index : indexes()) {
+            final String name = index.getIndexOptions().getString("name");
+            if (existing.contains(name)) {
+                log.info("Index {} of the offers already exists.", name);
+            } else {
+                indexOperations.ensureIndex(index);
+                log.info("Index {} of the offers created. {}", name, index.getIndexKeys().toJson());
+            }
+        }
+    }
+
+    /**
+     * Describes the winning plan of the validity query as a chain of stages,
+     * for instance FETCH > IXSCAN(validity_idx) or COLLSCAN when no index is used.
+     * @param date
+     */
+    public String explainValidityQuery(final LocalDate date) {
+        final Date day = Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        final Document find = new Document("find", mongoTemplate.getCollectionName(Offer.class))
+                .append("filter", new Document("startOffer", new Document("$lt", day))
+                        .append("endOffer", new Document("$gte", day)));
+        final Document explain = mongoTemplate.getDb()
+                .runCommand(new Document("explain", find).append("verbosity", "queryPlanner"));
+        final Document queryPlanner = explain.get("queryPlanner", Document.class);
+        return describe(queryPlanner.get("winningPlan", Document.class));
+    }
+
+    private List<IndexDefinition> indexes() {
+        final List<IndexDefinition> indexes = new ArrayList<>();
+        new MongoPersistentEntityIndexResolver(mappingContext)
+                .resolveIndexFor(ClassTypeInformation.from(Offer.class))
+                .forEach(indexes::add);
+        indexes.add(new Index()
+                .on("currency", Sort.Direction.ASC)
+                .on("name", Sort.Direction.ASC)
+                .named(CURRENCY_NAME_INDEX)
+                .partial(PartialIndexFilter.of(Criteria.where("currency").exists(true))));
+        return indexes;
+    }
+
+    private String describe(final Document stage) {
+        if (stage == null)
+            return "";
+        final String name = stage.getString("stage")
+                + (stage.containsKey("indexName") ? "(" + stage.getString("indexName") + ")" : "");
+        final Document inputStage = stage.get("inputStage", Document.class);
+        return inputStage == null ? name : name + " > " + describe(inputStage);
+    }
+}
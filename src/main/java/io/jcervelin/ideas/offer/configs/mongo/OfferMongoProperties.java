@@ -0,0 +1,35 @@
+package io.jcervelin.ideas.offer.configs.mongo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Settings of the Mongo client: its connection pool, its timeouts and the servers
+ * the lists are read from. The defaults are the ones of the driver, a timeout of 0
+ * never expires. The options given in spring.data.mongodb.uri take precedence.
+ *
+ * The pages, the searches and the exports may be read from the secondaries,
+ * secondaryPreferred for instance, while the writes and the reads they depend on stay on
+ * the primary. The max staleness, at least 90 seconds, skips the secondaries which are too
+ * far behind, it's not used with the primary read preference. Without it, the lists cached
+ * or sent with an ETag stay on the primary too.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "offer.mongo")
+public class OfferMongoProperties {
+
+    private int minPoolSize = 0;
+    private int maxPoolSize = 100;
+    private int waitQueueMultiplier = 5;
+    private Duration maxWaitTime = Duration.ofMinutes(2);
+    private Duration maxConnectionIdleTime = Duration.ZERO;
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    private Duration socketTimeout = Duration.ZERO;
+    private Duration serverSelectionTimeout = Duration.ofSeconds(30);
+    private String listReadPreference = "primary";
+    private Duration listMaxStaleness;
+}
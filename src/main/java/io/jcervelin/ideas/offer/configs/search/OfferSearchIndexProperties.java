@@ -0,0 +1,21 @@
+package io.jcervelin.ideas.offer.configs.search;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the in-memory search index of the offers. When it's disabled,
+ * the searches go to Mongo and they are not ranked.
+ *
+ * When there are more than maxOffers offers, when it's loaded or later,
+ * the searches go to Mongo until the next restart.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "offer.search-index")
+public class OfferSearchIndexProperties {
+
+    private boolean enabled = true;
+    private int maxOffers = 1000000;
+}
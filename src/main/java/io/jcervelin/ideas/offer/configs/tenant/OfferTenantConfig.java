@@ -0,0 +1,28 @@
+package io.jcervelin.ideas.offer.configs.tenant;
+
+import io.jcervelin.ideas.offer.gateways.http.OfferTenantInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Resolves the tenant of the requests to the offer endpoints.
+ * The reactive endpoints have no thread per request, they serve the default tenant.
+ * The MVC test slices don't have the properties, they get the defaults.
+ */
+@Profile("!reactive")
+@Configuration
+@RequiredArgsConstructor
+public class OfferTenantConfig implements WebMvcConfigurer {
+
+    private final ObjectProvider<OfferTenantProperties> properties;
+
+    @Override
+    public void addInterceptors(final InterceptorRegistry registry) {
+        registry.addInterceptor(new OfferTenantInterceptor(properties.getIfAvailable(OfferTenantProperties::new)))
+                .addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,33 @@
+package io.jcervelin.ideas.offer.configs.tenant;
+
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of the tenants served by the deployment. A request without the header
+ * is served as the default tenant, a request of a tenant not listed is rejected,
+ * so a header can't create collections.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "offer.tenant")
+public class OfferTenantProperties {
+
+    private String header = "X-Tenant";
+    private List<String> tenants = new ArrayList<>();
+
+    /**
+     * @return the default tenant followed by the ones listed
+     */
+    public List<String> all() {
+        final List<String> all = new ArrayList<>(tenants.size() + 1);
+        all.add(OfferTenant.DEFAULT);
+        tenants.stream().filter(tenant -> !all.contains(tenant)).forEach(all::add);
+        return all;
+    }
+}
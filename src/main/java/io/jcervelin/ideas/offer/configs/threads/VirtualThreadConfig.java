@@ -0,0 +1,75 @@
+package io.jcervelin.ideas.offer.configs.threads;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.AbstractProtocol;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the Tomcat requests and the async MVC tasks, the streamed responses for instance,
+ * on virtual threads, one per task, so the concurrent requests are not limited by the
+ * size of the Tomcat pool. The Mongo driver 3.x does its socket I/O inside synchronized
+ * blocks, a request waiting on Mongo pins its carrier until Java 24.
+ *
+ * The project is built for Java 8, the executor is looked up when the application
+ * starts. On a Java older than 21 the application doesn't start with this mode enabled.
+ */
+@Slf4j
+@Profile("!reactive")
+@Configuration
+@ConditionalOnProperty(prefix = "offer.virtual-threads", name = "enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        final ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        log.info("Requests will run on virtual threads.");
+        return executor;
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadTomcatCustomizer() {
+        final ExecutorService executor = virtualThreadExecutor();
+        return factory -> factory.addConnectorCustomizers(connector -> {
+            if (connector.getProtocolHandler() instanceof AbstractProtocol)
+                ((AbstractProtocol<?>) connector.getProtocolHandler()).setExecutor(executor);
+        });
+    }
+
+    @Bean
+    public WebMvcConfigurer virtualThreadAsyncConfigurer() {
+        final ExecutorService executor = virtualThreadExecutor();
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(new ConcurrentTaskExecutor(executor));
+            }
+        };
+    }
+
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        return newVirtualThreadPerTaskExecutor(Executors.class);
+    }
+
+    /**
+     * @param executors class of the factory, Executors from Java 21 on
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor(final Class<?> executors) {
+        try {
+            return (ExecutorService) executors.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("offer.virtual-threads.enabled needs Java 21 or later, running on "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+}
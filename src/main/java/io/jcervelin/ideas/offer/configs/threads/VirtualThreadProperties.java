@@ -0,0 +1,19 @@
+package io.jcervelin.ideas.offer.configs.threads;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the virtual thread mode, available when running on Java 21 or later.
+ * Without the limit of the Tomcat pool, the requests wait for a Mongo connection instead,
+ * so the wait queue of the pool is the max pool size times the connection wait multiplier.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "offer.virtual-threads")
+public class VirtualThreadProperties {
+
+    private boolean enabled = false;
+    private int connectionWaitMultiplier = 100;
+}
@@ -0,0 +1,17 @@
+package io.jcervelin.ideas.offer.configs.validation;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the validation of the offers. When compiled is false, the
+ * constraints of the annotations are checked by the Bean Validation validator.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "offer.validation")
+public class OfferValidationProperties {
+
+    private boolean compiled = true;
+}
@@ -0,0 +1,29 @@
+package io.jcervelin.ideas.offer.configs.writebehind;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings of the write-behind of the new offers. When it's enabled, a new offer is
+ * acknowledged once it's in the journal file, of journalSize, and a background writer
+ * inserts them in Mongo in batches of up to batchSize, at least every flushInterval.
+ * A batch which can't be written is retried after retryPause. On shutdown the writer
+ * has shutdownTimeout to empty the journal, the rest is written on the next startup.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "offer.write-behind")
+public class OfferWriteBehindProperties {
+
+    private boolean enabled = false;
+    private String journal = "offers.journal";
+    private DataSize journalSize = DataSize.ofMegabytes(64);
+    private int batchSize = 1_000;
+    private Duration flushInterval = Duration.ofMillis(20);
+    private Duration retryPause = Duration.ofSeconds(1);
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+}
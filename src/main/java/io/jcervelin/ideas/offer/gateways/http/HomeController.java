@@ -1,10 +1,12 @@
 package io.jcervelin.ideas.offer.gateways.http;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.view.RedirectView;
 
+@Profile("!reactive")
 @RestController
 @RequestMapping("/")
 public class HomeController {
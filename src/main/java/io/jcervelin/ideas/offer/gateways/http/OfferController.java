@@ -1,15 +1,37 @@
 package io.jcervelin.ideas.offer.gateways.http;
 
+import io.jcervelin.ideas.offer.configs.json.SmileParser;
 import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.gateways.http.streams.OfferStreamReader;
+import io.jcervelin.ideas.offer.gateways.http.streams.OfferStreamWriter;
+import io.jcervelin.ideas.offer.models.BatchReport;
+import io.jcervelin.ideas.offer.models.CancelReport;
+import io.jcervelin.ideas.offer.models.DiscountAnalytics;
+import io.jcervelin.ideas.offer.models.OfferFilter;
+import io.jcervelin.ideas.offer.models.OfferPage;
+import io.jcervelin.ideas.offer.models.OfferSummary;
 import io.jcervelin.ideas.offer.usecases.OfferManagement;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Controller responsible for provide the http endpoints to
@@ -19,24 +41,108 @@ import java.util.List;
  *
  * Also it's possible to access using swagger.
  */
+@Profile("!reactive")
 @RestController
 @RequestMapping("/api/offers")
 @RequiredArgsConstructor
 @Api(value = "/api/offers", description = "Offers Management")
 public class OfferController {
 
+    private static final String DATE_PATTERN = "dd/MM/yyyy";
+
     private final OfferManagement offerManagement;
+    private final OfferStreamWriter offerStreamWriter;
+    private final OfferStreamReader offerStreamReader;
+    private final OfferCollectionVersion collectionVersion;
 
     /**
      * This method is responsible for provide the list of the
      * valid offers. (Current offers and future ones)
      * @return all offers which the endOffer date is greater
-     * or equals the current date.
+     * or equals the current date, or 304 when the ETag sent is the current one.
      */
     @GetMapping
     @ApiOperation("Get list of the non expired offers")
-    public ResponseEntity<List<Offer>> getValidOffers() {
-        return new ResponseEntity<>(offerManagement.getValidOffers(), HttpStatus.OK);
+    public ResponseEntity<List<Offer>> getValidOffers(final WebRequest request) {
+        final LocalDate today = LocalDate.now();
+        return ifModified(request, "valid-" + today, collectionVersion.lastModified(today), offerManagement::getValidOffers);
+    }
+
+    /**
+     * This method is responsible for provide a page of the offers
+     * valid on a date, past or future, sorted by id.
+     * @param validOn date in the pattern dd/MM/yyyy
+     * @param limit max number of offers of the page
+     * @param after cursor returned as next by the previous page
+     * @return the offers which started before the date and end on or after it, and the cursor of the next page.
+     */
+    @GetMapping(params = {"validOn", "!view"})
+    @ApiOperation("Get a page of the offers valid on a date. Pattern for dates dd/MM/yyyy. Use the next cursor as the after parameter to get the following page")
+    public ResponseEntity<OfferPage> getValidOffersOn(@RequestParam @DateTimeFormat(pattern = DATE_PATTERN) final LocalDate validOn,
+                                                      @RequestParam(defaultValue = "100") final int limit,
+                                                      @RequestParam(required = false) final String after) {
+        return new ResponseEntity<>(offerManagement.getValidOffers(validOn, validOn, after, limit), HttpStatus.OK);
+    }
+
+    /**
+     * This method is responsible for provide a page of the offers valid
+     * on any date of a period, past or future, sorted by id.
+     * @param validFrom first date of the period in the pattern dd/MM/yyyy
+     * @param validTo last date of the period in the pattern dd/MM/yyyy
+     * @param limit max number of offers of the page
+     * @param after cursor returned as next by the previous page
+     * @return the offers which are valid on any date of the period, and the cursor of the next page.
+     */
+    @GetMapping(params = {"validFrom", "validTo", "!view"})
+    @ApiOperation("Get a page of the offers valid on any date of a period. Pattern for dates dd/MM/yyyy. Use the next cursor as the after parameter to get the following page")
+    public ResponseEntity<OfferPage> getValidOffersBetween(@RequestParam @DateTimeFormat(pattern = DATE_PATTERN) final LocalDate validFrom,
+                                                           @RequestParam @DateTimeFormat(pattern = DATE_PATTERN) final LocalDate validTo,
+                                                           @RequestParam(defaultValue = "100") final int limit,
+                                                           @RequestParam(required = false) final String after) {
+        return new ResponseEntity<>(offerManagement.getValidOffers(validFrom, validTo, after, limit), HttpStatus.OK);
+    }
+
+    /**
+     * This method is responsible for provide the summary of the
+     * valid offers: id, name, price, offerPrice and currency.
+     * @return the summary of the offers which the endOffer date
+     * is greater or equals the current date.
+     */
+    @GetMapping(params = {"view=summary", "!limit"})
+    @ApiOperation("Get the summary of the non expired offers: id, name, price, offerPrice and currency")
+    public ResponseEntity<List<OfferSummary>> getValidOfferSummaries(final WebRequest request) {
+        final LocalDate today = LocalDate.now();
+        return ifModified(request, "valid-summary-" + today, collectionVersion.lastModified(today), offerManagement::getValidOfferSummaries);
+    }
+
+    /**
+     * This method is responsible for provide a page of the
+     * valid offers, sorted by id.
+     * @param limit max number of offers of the page
+     * @param after cursor returned as next by the previous page
+     * @return the page and the cursor of the next one.
+     */
+    @GetMapping(params = {"limit", "!validOn", "!validFrom"})
+    @ApiOperation("Get a page of the non expired offers. Use the next cursor as the after parameter to get the following page")
+    public ResponseEntity<OfferPage> getValidOffers(@RequestParam final int limit,
+                                                    @RequestParam(required = false) final String after) {
+        return new ResponseEntity<>(offerManagement.getValidOffers(after, limit), HttpStatus.OK);
+    }
+
+    /**
+     * This method is responsible for search the offers by
+     * the words of their name and description.
+     * @param q words searched, each one also matches the words which start with it
+     * @param limit max number of offers of the page
+     * @param after cursor returned as next by the previous page
+     * @return the offers with all the words, the most relevant first, and the cursor of the next page.
+     */
+    @GetMapping(value = "/search", params = "q")
+    @ApiOperation("Search the offers by the words of the name and the description, the most relevant first. Use the next cursor as the after parameter to get the following page")
+    public ResponseEntity<OfferPage> searchOffers(@RequestParam final String q,
+                                                  @RequestParam(defaultValue = "20") final int limit,
+                                                  @RequestParam(required = false) final String after) {
+        return new ResponseEntity<>(offerManagement.search(q, after, limit), HttpStatus.OK);
     }
 
     /**
@@ -46,8 +152,60 @@ public class OfferController {
      */
     @GetMapping("/all")
     @ApiOperation("Get list of the non expired offers")
-    public ResponseEntity<List<Offer>> getOffers() {
-        return new ResponseEntity<>(offerManagement.getOffers(), HttpStatus.OK);
+    public ResponseEntity<List<Offer>> getOffers(final WebRequest request) {
+        return ifModified(request, "all", collectionVersion.lastModified(), offerManagement::getOffers);
+    }
+
+    /**
+     * This method is responsible for provide the summary of
+     * all offers, including the expired ones.
+     * @return the summary of all offers.
+     */
+    @GetMapping(value = "/all", params = {"view=summary", "!limit", "!stream"})
+    @ApiOperation("Get the summary of all offers: id, name, price, offerPrice and currency")
+    public ResponseEntity<List<OfferSummary>> getOfferSummaries(final WebRequest request) {
+        return ifModified(request, "all-summary", collectionVersion.lastModified(), offerManagement::getOfferSummaries);
+    }
+
+    /**
+     * This method is responsible for provide the discount statistics
+     * of all offers, precomputed on every write.
+     * @return count and average discount by currency and the biggest discounts.
+     */
+    @GetMapping("/analytics")
+    @ApiOperation("Get the discount analytics of all offers: count and average discount by currency and the biggest discounts")
+    public ResponseEntity<DiscountAnalytics> getDiscountAnalytics(final WebRequest request) {
+        return ifModified(request, "analytics", collectionVersion.lastModified(), offerManagement::getDiscountAnalytics);
+    }
+
+    /**
+     * This method is responsible for provide a page of
+     * all offers, including the expired ones, sorted by id.
+     * @param limit max number of offers of the page
+     * @param after cursor returned as next by the previous page
+     * @return the page and the cursor of the next one.
+     */
+    @GetMapping(value = "/all", params = "limit")
+    @ApiOperation("Get a page of all offers. Use the next cursor as the after parameter to get the following page")
+    public ResponseEntity<OfferPage> getOffers(@RequestParam final int limit,
+                                               @RequestParam(required = false) final String after) {
+        return new ResponseEntity<>(offerManagement.getOffers(after, limit), HttpStatus.OK);
+    }
+
+    /**
+     * This method is responsible for stream all offers, including
+     * the expired ones, straight from the database cursor. The memory
+     * doesn't grow with the number of offers.
+     * @param stream json for a JSON array or ndjson for one offer per line,
+     *               any other format is rejected before the cursor is opened.
+     * @return all offers.
+     */
+    @GetMapping(value = "/all", params = "stream")
+    @ApiOperation("Stream all offers. The stream parameter is the format: json (default) or ndjson")
+    public ResponseEntity<StreamingResponseBody> streamOffers(@RequestParam(defaultValue = "json") final String stream) {
+        return ResponseEntity.ok()
+                .contentType(offerStreamWriter.contentType(stream))
+                .body(offerStreamWriter.write(offerManagement.streamOffers(), stream));
     }
 
     /**
@@ -62,6 +220,28 @@ public class OfferController {
         return new ResponseEntity<>(offerManagement.save(offer), HttpStatus.OK);
     }
 
+    /**
+     * This method is responsible for save a batch of offers sent
+     * as a JSON or Smile array. Each offer is validated and saved independently.
+     * @return the report with the result of each offer.
+     */
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, SmileParser.APPLICATION_SMILE_VALUE})
+    @ApiOperation("Save a batch of offers. Each offer is validated and saved independently, the report has the result of each one")
+    public ResponseEntity<BatchReport> saveOffers(@RequestBody final List<Offer> offers) {
+        return new ResponseEntity<>(offerManagement.saveAll(offers), HttpStatus.OK);
+    }
+
+    /**
+     * This method is responsible for save a batch of offers sent
+     * as NDJSON, one offer per line.
+     * @return the report with the result of each offer.
+     */
+    @PostMapping(value = "/batch", consumes = OfferStreamWriter.NDJSON_VALUE)
+    @ApiOperation("Save a batch of offers sent as NDJSON, one offer per line")
+    public ResponseEntity<BatchReport> saveOffers(final InputStream body) {
+        return new ResponseEntity<>(offerManagement.saveAll(offerStreamReader.read(body)), HttpStatus.OK);
+    }
+
     /**
      * This method is responsible for provide cancel an offer.
      * The offer is not deleted from the database. It's only expired.
@@ -69,12 +249,64 @@ public class OfferController {
      * method is put instead of delete.
      * @return the offer saved with it's new id created automatically.
      */
-    // If required, in the future it can be replaced by delete
-    // or a job must be created to erase the old data and save disc
-    // or even used to generate reports.
+    // The offers expired for longer than the retention are moved
+    // to the archive collection by OfferArchiving, they can still be used to generate reports.
     @PutMapping("{id}")
     @ApiOperation("Cancel a valid offer by id.")
     public ResponseEntity<Offer> cancelOffer(@PathVariable final String id) {
         return new ResponseEntity<>(offerManagement.cancelOffer(id), HttpStatus.OK);
     }
+
+    /**
+     * This method is responsible for cancel, in one update, the non expired
+     * offers selected by ids, currency and/or name prefix.
+     * @return the number of offers cancelled.
+     */
+    @PutMapping("/cancel")
+    @ApiOperation("Cancel the valid offers selected by ids, currency and/or namePrefix.")
+    public ResponseEntity<CancelReport> cancelOffers(@RequestBody final OfferFilter filter) {
+        return new ResponseEntity<>(offerManagement.cancelOffers(filter), HttpStatus.OK);
+    }
+
+    /**
+     * The ETag and Last-Modified are checked before the offers are read.
+     * When the client already has the current version, the response is
+     * a 304 and neither Mongo nor the JSON serialization are touched.
+     * While the version is degraded, the list is sent without them.
+     *
+     * The JSON and Smile representations have their own ETag and the response varies on Accept.
+     * Last-Modified has seconds precision, so it's only sent once the second of the last write
+     * is over: a client given that second could not tell it from a later write in the same second.
+     */
+    private <T> ResponseEntity<T> ifModified(final WebRequest request, final String view,
+                                             final long lastModified, final Supplier<T> offers) {
+        final HttpServletResponse response = ((NativeWebRequest) request).getNativeResponse(HttpServletResponse.class);
+        if (response != null)
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        final long settledLastModified = System.currentTimeMillis() / 1000 > lastModified / 1000 ? lastModified : -1;
+        if (!collectionVersion.isDegraded()
+                && request.checkNotModified(collectionVersion.etag(view + "-" + representation(request)), settledLastModified))
+            return null;
+        return new ResponseEntity<>(offers.get(), HttpStatus.OK);
+    }
+
+    /**
+     * The JSON converter comes before the Smile one, it's chosen for the wildcards.
+     * @return json or smile, as the list will be written for the Accept header of the request
+     */
+    private static String representation(final WebRequest request) {
+        try {
+            final List<MediaType> accepted = MediaType.parseMediaTypes(request.getHeader(HttpHeaders.ACCEPT));
+            MediaType.sortBySpecificityAndQuality(accepted);
+            for (final MediaType mediaType : accepted) {
+                if (mediaType.includes(MediaType.APPLICATION_JSON))
+                    return "json";
+                if (mediaType.includes(SmileParser.APPLICATION_SMILE))
+                    return "smile";
+            }
+        } catch (InvalidMediaTypeException e) {
+            // refused by the content negotiation
+        }
+        return "json";
+    }
 }
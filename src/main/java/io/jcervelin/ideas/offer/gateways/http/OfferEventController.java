@@ -0,0 +1,159 @@
+package io.jcervelin.ideas.offer.gateways.http;
+
+import io.jcervelin.ideas.offer.models.OfferEvent;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidRequestException;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Controller responsible for push the changes of the offers to the clients
+ * as Server-Sent Events, so they don't need to poll the list endpoints.
+ * The events come from the change stream, this endpoint only exists when it's enabled.
+ * The stream only follows the collection of the default tenant, the other tenants are refused,
+ * and each subscriber only receives the events published as its own tenant.
+ *
+ * Each connection lasts the async request timeout, then the client reconnects.
+ * Events sent while a client is reconnecting are not replayed.
+ *
+ * Each subscriber has its own queue of up to MAX_PENDING_EVENTS, sent by a thread of its own,
+ * so a slow client doesn't hold the change stream. A client which falls further behind is
+ * disconnected and has to reconnect.
+ */
+@Slf4j
+@Profile("!reactive")
+@RestController
+@RequestMapping("/api/offers")
+@ConditionalOnProperty(prefix = "offer.change-stream", name = "enabled", havingValue = "true")
+@Api(value = "/api/offers", description = "Offers Management")
+public class OfferEventController {
+
+    static final int MAX_PENDING_EVENTS = 1_000;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor;
+
+    public OfferEventController() {
+        this(Executors.newCachedThreadPool(new CustomizableThreadFactory("offer-events-")));
+    }
+
+    OfferEventController(final ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * This method is responsible for subscribe the client to the changes.
+     * @return a stream of events named SAVED or DELETED, with the OfferEvent as data.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ApiOperation("Subscribe to the changes of the offers of the default tenant as Server-Sent Events")
+    public SseEmitter stream() {
+        if (!OfferTenant.isDefault())
+            throw new InvalidRequestException(String.format("The changes are only streamed for the default tenant. [%s]", OfferTenant.current()));
+        return subscribe(new SseEmitter());
+    }
+
+    SseEmitter subscribe(final SseEmitter emitter) {
+        final Subscriber subscriber = new Subscriber(emitter, OfferTenant.current());
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        return emitter;
+    }
+
+    /**
+     * Only queues the event for each subscriber of the tenant it's published as,
+     * it never waits for a client.
+     * @param event
+     */
+    @EventListener
+    public void publish(final OfferEvent event) {
+        final String tenant = OfferTenant.current();
+        for (final Subscriber subscriber : subscribers) {
+            if (!subscriber.tenant.equals(tenant))
+                continue;
+            if (!subscriber.events.offer(event)) {
+                log.debug("A subscriber is more than {} offer events behind, it's disconnected.", MAX_PENDING_EVENTS);
+                subscribers.remove(subscriber);
+                subscriber.dropped = true;
+            }
+            schedule(subscriber);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    int subscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * At most one thread sends the events of a subscriber, in order.
+     */
+    private void schedule(final Subscriber subscriber) {
+        if (subscriber.sending.compareAndSet(false, true))
+            executor.execute(() -> send(subscriber));
+    }
+
+    private void send(final Subscriber subscriber) {
+        try {
+            OfferEvent event;
+            while (!subscriber.dropped && (event = subscriber.events.poll()) != null) {
+                try {
+                    subscriber.emitter.send(SseEmitter.event().name(event.getType().name()).data(event, MediaType.APPLICATION_JSON));
+                } catch (IOException | IllegalStateException e) {
+                    // the client is gone, its emitter can't be used anymore
+                    log.debug("Offer event not sent to a subscriber. [{}]", e.getMessage());
+                    subscribers.remove(subscriber);
+                    subscriber.dropped = true;
+                    subscriber.emitter.completeWithError(e);
+                    return;
+                }
+            }
+            if (subscriber.dropped) {
+                subscriber.events.clear();
+                subscriber.emitter.complete();
+            }
+        } finally {
+            subscriber.sending.set(false);
+            // an event queued after the last poll, before the flag was reset
+            if (!subscriber.dropped && !subscriber.events.isEmpty())
+                schedule(subscriber);
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Subscriber {
+
+        private final SseEmitter emitter;
+        private final String tenant;
+        private final Queue<OfferEvent> events = new ArrayBlockingQueue<>(MAX_PENDING_EVENTS);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean dropped;
+    }
+}
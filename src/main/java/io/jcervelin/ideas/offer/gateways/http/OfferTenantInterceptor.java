@@ -0,0 +1,50 @@
+package io.jcervelin.ideas.offer.gateways.http;
+
+import io.jcervelin.ideas.offer.configs.tenant.OfferTenantProperties;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidRequestException;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import lombok.RequiredArgsConstructor;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Interceptor responsible for resolve the tenant of the request from its header
+ * and make it the tenant of the thread until the request is completed.
+ * A tenant not configured is rejected before the controller is called.
+ *
+ * The streamed responses are written by another thread, their cursor is opened
+ * by the controller, before the tenant is cleared.
+ */
+@RequiredArgsConstructor
+public class OfferTenantInterceptor implements AsyncHandlerInterceptor {
+
+    private final OfferTenantProperties properties;
+
+    @Override
+    public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response, final Object handler) {
+        final String tenant = request.getHeader(properties.getHeader());
+        if (!StringUtils.hasText(tenant)) {
+            OfferTenant.clear();
+            return true;
+        }
+        if (!properties.all().contains(tenant))
+            throw new InvalidRequestException(String.format("Unknown tenant. [%s]", tenant));
+        OfferTenant.set(tenant);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(final HttpServletRequest request, final HttpServletResponse response,
+                                               final Object handler) {
+        OfferTenant.clear();
+    }
+
+    @Override
+    public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response,
+                                final Object handler, final Exception exception) {
+        OfferTenant.clear();
+    }
+}
@@ -2,6 +2,7 @@ package io.jcervelin.ideas.offer.gateways.http.advices;
 
 import io.jcervelin.ideas.offer.models.exceptions.ErrorResponse;
 import io.jcervelin.ideas.offer.models.exceptions.InvalidOfferException;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidRequestException;
 import io.jcervelin.ideas.offer.models.exceptions.OfferErrorException;
 import io.jcervelin.ideas.offer.models.exceptions.OfferNotFoundException;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +10,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import static org.springframework.http.HttpStatus.*;
 
@@ -38,6 +40,16 @@ public class ExceptionControllerAdvice {
         return createMessage(exception, UNPROCESSABLE_ENTITY);
     }
 
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<ErrorResponse> invalidRequestException(final Exception exception) {
+        return createMessage(exception, BAD_REQUEST);
+    }
+
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<ErrorResponse> argumentTypeMismatchException(final Exception exception) {
+        return createMessage(exception, BAD_REQUEST);
+    }
+
     private ResponseEntity<ErrorResponse> createMessage(final Exception exception, final HttpStatus httpStatus) {
         final ErrorResponse errorResponse = new ErrorResponse();
         errorResponse.setStatus(httpStatus);
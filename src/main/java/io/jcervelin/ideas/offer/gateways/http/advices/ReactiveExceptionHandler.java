@@ -0,0 +1,61 @@
+package io.jcervelin.ideas.offer.gateways.http.advices;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jcervelin.ideas.offer.models.exceptions.ErrorResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.method.annotation.ExceptionHandlerMethodResolver;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebExceptionHandler;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+
+/**
+ * The functional routes of the reactive profile are not covered by the
+ * controller advices, so this handler resolves the exception with
+ * ExceptionControllerAdvice and writes its ErrorResponse.
+ * The status codes are the same as the servlet stack.
+ *
+ * Errors of the framework itself, like a malformed body, keep their
+ * status and are rendered by the default handler.
+ */
+@Profile("reactive")
+@Order(-2)
+@RequiredArgsConstructor
+@Component
+public class ReactiveExceptionHandler implements WebExceptionHandler {
+
+    private static final ExceptionHandlerMethodResolver RESOLVER =
+            new ExceptionHandlerMethodResolver(ExceptionControllerAdvice.class);
+
+    private final ExceptionControllerAdvice advice;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Mono<Void> handle(final ServerWebExchange exchange, final Throwable throwable) {
+        final ServerHttpResponse response = exchange.getResponse();
+        if (!(throwable instanceof Exception) || throwable instanceof ResponseStatusException || response.isCommitted())
+            return Mono.error(throwable);
+
+        final Method method = RESOLVER.resolveMethod((Exception) throwable);
+        final ResponseEntity<ErrorResponse> error =
+                (ResponseEntity<ErrorResponse>) ReflectionUtils.invokeMethod(method, advice, throwable);
+
+        response.setStatusCode(error.getStatusCode());
+        if (error.getStatusCode() == HttpStatus.NO_CONTENT)
+            return response.setComplete();
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON_UTF8);
+        return response.writeWith(Mono.fromCallable(() ->
+                response.bufferFactory().wrap(objectMapper.writeValueAsBytes(error.getBody()))));
+    }
+}
@@ -0,0 +1,77 @@
+package io.jcervelin.ideas.offer.gateways.http.reactive;
+
+import io.jcervelin.ideas.offer.gateways.http.streams.OfferStreamWriter;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidRequestException;
+import io.jcervelin.ideas.offer.usecases.ReactiveOfferManagement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Handler of the offer routes of the reactive profile.
+ * Same endpoints and status codes as OfferController, without blocking a thread
+ * while Mongo answers.
+ *
+ * The offers are streamed, one per line, when the client accepts NDJSON.
+ * Then each offer is written when it's read from the cursor and the next ones
+ * are only requested from Mongo as the client consumes the response.
+ * A JSON array is aggregated before it's written.
+ */
+@Profile("reactive")
+@RequiredArgsConstructor
+@Component
+public class OfferHandler {
+
+    private final ReactiveOfferManagement offerManagement;
+
+    /**
+     * GET /api/offers
+     * @return all offers which the endOffer date is greater
+     * or equals the current date.
+     */
+    public Mono<ServerResponse> getValidOffers(final ServerRequest request) {
+        return offers(request, offerManagement.getValidOffers());
+    }
+
+    /**
+     * GET /api/offers/all
+     * @return all offers, including the expired ones.
+     */
+    public Mono<ServerResponse> getOffers(final ServerRequest request) {
+        return offers(request, offerManagement.getOffers());
+    }
+
+    /**
+     * POST /api/offers
+     * @return the offer saved with it's new id created automatically.
+     */
+    public Mono<ServerResponse> saveOffer(final ServerRequest request) {
+        return request.bodyToMono(Offer.class)
+                .switchIfEmpty(Mono.error(new InvalidRequestException("The offer is required.")))
+                .flatMap(offerManagement::save)
+                .flatMap(offer -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(offer));
+    }
+
+    /**
+     * PUT /api/offers/{id}
+     * @return the offer cancelled, its endOffer date is yesterday.
+     */
+    public Mono<ServerResponse> cancelOffer(final ServerRequest request) {
+        return offerManagement.cancelOffer(request.pathVariable("id"))
+                .flatMap(offer -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(offer));
+    }
+
+    private Mono<ServerResponse> offers(final ServerRequest request, final Flux<Offer> offers) {
+        final MediaType contentType = request.headers().accept().stream()
+                .anyMatch(type -> !type.isWildcardSubtype() && type.isCompatibleWith(OfferStreamWriter.APPLICATION_NDJSON))
+                ? OfferStreamWriter.APPLICATION_NDJSON
+                : MediaType.APPLICATION_JSON_UTF8;
+        return ServerResponse.ok().contentType(contentType).body(offers, Offer.class);
+    }
+}
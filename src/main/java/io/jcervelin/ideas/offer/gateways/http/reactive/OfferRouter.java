@@ -0,0 +1,31 @@
+package io.jcervelin.ideas.offer.gateways.http.reactive;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PUT;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Routes of the reactive profile. They replace OfferController
+ * when the application runs on WebFlux.
+ */
+@Profile("reactive")
+@Configuration
+public class OfferRouter {
+
+    private static final String ENDPOINT = "/api/offers";
+
+    @Bean
+    public RouterFunction<ServerResponse> offerRoutes(final OfferHandler handler) {
+        return route(GET(ENDPOINT), handler::getValidOffers)
+                .andRoute(GET(ENDPOINT + "/all"), handler::getOffers)
+                .andRoute(POST(ENDPOINT), handler::saveOffer)
+                .andRoute(PUT(ENDPOINT + "/{id}"), handler::cancelOffer);
+    }
+}
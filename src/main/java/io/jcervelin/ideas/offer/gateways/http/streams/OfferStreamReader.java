@@ -0,0 +1,30 @@
+package io.jcervelin.ideas.offer.gateways.http.streams;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidRequestException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Class responsible for read NDJSON request bodies, one offer per line.
+ */
+@RequiredArgsConstructor
+@Component
+public class OfferStreamReader {
+
+    private final ObjectMapper objectMapper;
+
+    public List<Offer> read(final InputStream inputStream) {
+        try (MappingIterator<Offer> offers = objectMapper.readerFor(Offer.class).readValues(inputStream)) {
+            return offers.readAll();
+        } catch (IOException | RuntimeException e) {
+            throw new InvalidRequestException(String.format("The offers could not be read. [%s]", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.jcervelin.ideas.offer.gateways.http.streams;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidRequestException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Class responsible for write the offers to the response as soon as they
+ * are read from the database, as a JSON array or as NDJSON (one offer per line).
+ * The stream of offers is closed when the response is finished.
+ * Any other format is an invalid request.
+ */
+@RequiredArgsConstructor
+@Component
+public class OfferStreamWriter {
+
+    public static final String JSON = "json";
+    public static final String NDJSON = "ndjson";
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.valueOf(NDJSON_VALUE);
+
+    private final ObjectMapper objectMapper;
+
+    public MediaType contentType(final String format) {
+        return isNdjson(format) ? APPLICATION_NDJSON : MediaType.APPLICATION_JSON_UTF8;
+    }
+
+    public StreamingResponseBody write(final Stream<Offer> offers, final String format) {
+        final boolean ndjson = isNdjson(format);
+        return outputStream -> {
+            try (final Stream<Offer> closeable = offers) {
+                write(closeable.iterator(), outputStream, ndjson);
+            }
+        };
+    }
+
+    private static boolean isNdjson(final String format) {
+        if (NDJSON.equalsIgnoreCase(format))
+            return true;
+        if (JSON.equalsIgnoreCase(format))
+            return false;
+        throw new InvalidRequestException(String.format("The stream must be json or ndjson. [%s]", format));
+    }
+
+    private void write(final Iterator<Offer> offers, final OutputStream outputStream, final boolean ndjson) throws IOException {
+        final JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+
+        if (!ndjson)
+            generator.writeStartArray();
+
+        boolean first = true;
+        while (offers.hasNext()) {
+            generator.writeObject(offers.next());
+            if (ndjson)
+                generator.writeRaw('\n');
+            // the first offer goes out right away, the next ones when the buffer is full
+            if (first) {
+                generator.flush();
+                first = false;
+            }
+        }
+
+        if (!ndjson)
+            generator.writeEndArray();
+        generator.close();
+    }
+}
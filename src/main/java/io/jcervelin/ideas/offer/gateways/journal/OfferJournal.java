@@ -0,0 +1,266 @@
+package io.jcervelin.ideas.offer.gateways.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jcervelin.ideas.offer.configs.json.SmileParser;
+import io.jcervelin.ideas.offer.models.Offer;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Durable queue of the offers not written to Mongo yet, kept in a memory-mapped file.
+ *
+ * The file starts with the position of the first offer not written yet, followed by
+ * the offers in Smile, each one after its length and its CRC32. A length of 0 ends the
+ * journal, a record torn by a crash fails the CRC and ends it too. The offers are also
+ * kept in memory, in the same order, for the writer.
+ *
+ * The file is a ring: an offer which doesn't fit before the end of the file is written at
+ * its beginning, if the offers written to Mongo left room there, and a length of -1 sends
+ * the reader back to it. Each commit frees the space of the offers written, so the journal
+ * is only full when the writer falls behind by the size of the file. When all of them
+ * are written the journal starts again from the beginning of the file.
+ *
+ * The appends are serialized, the syncs are not: a thread which syncs the file makes
+ * durable the offers appended by the others meanwhile, which don't sync it again.
+ */
+@Slf4j
+public class OfferJournal implements Closeable {
+
+    private static final int HEADER = Long.BYTES;
+    private static final int RECORD_HEADER = 2 * Integer.BYTES;
+    private static final int WRAP = -1;
+    private static final ObjectMapper SMILE = SmileParser.smileObjectMapper();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final BlockingQueue<Entry> pending = new LinkedBlockingQueue<>();
+    private final Object syncLock = new Object();
+
+    // first offer not written yet and end of the last one appended, the ring is empty when both are equal
+    private int checkpoint = HEADER;
+    private int position = HEADER;
+    private long appended;
+    private volatile long synced;
+
+    private OfferJournal(final FileChannel channel, final MappedByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens the journal, creating the file when it doesn't exist, and recovers
+     * the offers not written to Mongo before the last stop.
+     * @param path
+     * @param size of the file, a bigger existing file keeps its size
+     */
+    public static OfferJournal open(final Path path, final int size) throws IOException {
+        final FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final boolean created = channel.size() == 0;
+            final OfferJournal journal = new OfferJournal(channel,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size())));
+            if (created)
+                journal.reset();
+            else
+                journal.recover();
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void recover() {
+        final long start = buffer.getLong(0);
+        checkpoint = start < HEADER || start + Integer.BYTES > buffer.capacity() ? HEADER : (int) start;
+        position = checkpoint;
+        boolean wrapped = false;
+        while (true) {
+            final int length = buffer.getInt(position);
+            if (length == WRAP && !wrapped && checkpoint > HEADER) {
+                wrapped = true;
+                position = HEADER;
+                continue;
+            }
+            final int end = position + RECORD_HEADER + length;
+            // once wrapped, the offers can't reach the first one not written
+            if (length <= 0 || end + Integer.BYTES > (wrapped ? checkpoint : buffer.capacity()))
+                break;
+            final byte[] payload = new byte[length];
+            read(position + RECORD_HEADER, payload);
+            if (crc(payload) != buffer.getInt(position + Integer.BYTES))
+                break;
+            try {
+                pending.add(new Entry(SMILE.readValue(payload, Offer.class), end, ++appended));
+            } catch (IOException e) {
+                log.warn("The journal has an offer which can't be read, the journal ends before it. [{}]", e.getMessage());
+                break;
+            }
+            position = end;
+        }
+        terminate(position);
+        synced = appended;
+    }
+
+    /**
+     * @param offer with its id
+     * @return the entry of the offer, null when the journal is full
+     */
+    public Entry append(final Offer offer) {
+        final byte[] payload;
+        try {
+            payload = SMILE.writeValueAsBytes(offer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (this) {
+            final int at = free(RECORD_HEADER + payload.length);
+            if (at < 0)
+                return null;
+            final int end = at + RECORD_HEADER + payload.length;
+            write(at + RECORD_HEADER, payload);
+            buffer.putInt(at + Integer.BYTES, crc(payload));
+            terminate(end);
+            // the length is written last, the record is only read once it's complete
+            buffer.putInt(at, payload.length);
+            if (at != position)
+                buffer.putInt(position, WRAP);
+            position = end;
+            final Entry entry = new Entry(offer, end, ++appended);
+            pending.add(entry);
+            return entry;
+        }
+    }
+
+    /**
+     * Waits until the entry is on the disk.
+     * @param entry
+     */
+    public void sync(final Entry entry) {
+        if (synced >= entry.getSequence())
+            return;
+        synchronized (syncLock) {
+            if (synced >= entry.getSequence())
+                return;
+            final long appendedBefore;
+            synchronized (this) {
+                appendedBefore = appended;
+            }
+            buffer.force();
+            synced = appendedBefore;
+        }
+    }
+
+    /**
+     * @param max number of entries
+     * @param timeout to wait for the first one
+     * @return the next entries to write, in the order they were appended,
+     * empty when there's none after the timeout
+     */
+    public List<Entry> take(final int max, final Duration timeout) throws InterruptedException {
+        final Entry first = pending.poll(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        if (first == null)
+            return Collections.emptyList();
+        final List<Entry> entries = new ArrayList<>(Math.min(max, pending.size() + 1));
+        entries.add(first);
+        pending.drainTo(entries, max - 1);
+        return entries;
+    }
+
+    public int pending() {
+        return pending.size();
+    }
+
+    /**
+     * Each record leaves room for the length which ends the journal, or sends the reader back
+     * to the beginning of the file, and a record written at the beginning can't reach the
+     * first one not written yet.
+     * @param length of the record
+     * @return position where the record fits, -1 when the journal is full
+     */
+    private int free(final int length) {
+        if (position >= checkpoint) {
+            if (position + length + Integer.BYTES <= buffer.capacity())
+                return position;
+            return HEADER + length + Integer.BYTES <= checkpoint ? HEADER : -1;
+        }
+        return position + length + Integer.BYTES <= checkpoint ? position : -1;
+    }
+
+    /**
+     * Marks the entries until this one, included, as written to Mongo.
+     * @param entry
+     */
+    public synchronized void commit(final Entry entry) {
+        if (entry.getSequence() == appended) {
+            reset();
+        } else {
+            checkpoint = entry.getEnd();
+            buffer.putLong(0, checkpoint);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void reset() {
+        checkpoint = HEADER;
+        position = HEADER;
+        terminate(HEADER);
+        buffer.putLong(0, HEADER);
+    }
+
+    private void terminate(final int end) {
+        if (end + Integer.BYTES <= buffer.capacity())
+            buffer.putInt(end, 0);
+    }
+
+    /**
+     * The copies go through a view, the position of the buffer is never moved.
+     */
+    private void read(final int from, final byte[] payload) {
+        final ByteBuffer view = buffer.duplicate();
+        view.position(from);
+        view.get(payload);
+    }
+
+    private void write(final int from, final byte[] payload) {
+        final ByteBuffer view = buffer.duplicate();
+        view.position(from);
+        view.put(payload);
+    }
+
+    private static int crc(final byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    @Value
+    public static class Entry {
+        Offer offer;
+        int end;
+        long sequence;
+    }
+}
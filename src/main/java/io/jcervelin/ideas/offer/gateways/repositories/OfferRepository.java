@@ -1,14 +1,33 @@
 package io.jcervelin.ideas.offer.gateways.repositories;
 
+import io.jcervelin.ideas.offer.models.ArchiveReport;
+import io.jcervelin.ideas.offer.models.DiscountAnalytics;
 import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferDeadLetter;
+import io.jcervelin.ideas.offer.models.OfferFilter;
+import io.jcervelin.ideas.offer.models.OfferSummary;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface OfferRepository {
     List<Offer> findAll();
     List<Offer> findValidOffers (final LocalDate localDate);
+    List<Offer> findAll(final String afterId, final int limit);
+    Stream<Offer> streamAll();
+    List<OfferSummary> findAllSummaries();
+    List<OfferSummary> findValidOfferSummaries(final LocalDate localDate);
+    List<Offer> findValidOffersBetween(final LocalDate from, final LocalDate to, final String afterId, final int limit);
+    List<Offer> findValidOffers (final LocalDate localDate, final String afterId, final int limit);
+    List<Offer> search(final String text, final int offset, final int limit);
     Optional<Offer> cancelOfferById (final String id);
+    long cancelOffers(final OfferFilter filter);
     Offer save(final Offer offer);
+    Map<Integer, String> insertAll(final List<Offer> offers);
+    void park(final List<OfferDeadLetter> deadLetters);
+    ArchiveReport archiveExpiredOffers(final LocalDate endBefore, final int limit);
+    DiscountAnalytics findDiscountAnalytics();
 }
@@ -0,0 +1,18 @@
+package io.jcervelin.ideas.offer.gateways.repositories;
+
+import io.jcervelin.ideas.offer.models.Offer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+public interface ReactiveOfferRepository {
+
+    Flux<Offer> findAll();
+
+    Flux<Offer> findValidOffers(final LocalDate localDate);
+
+    Mono<Offer> cancelOfferById(final String id);
+
+    Mono<Offer> save(final Offer offer);
+}
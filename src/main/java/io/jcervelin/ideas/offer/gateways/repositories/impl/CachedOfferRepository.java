@@ -0,0 +1,342 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import io.jcervelin.ideas.offer.configs.cache.OfferCacheProperties;
+import io.jcervelin.ideas.offer.gateways.repositories.OfferRepository;
+import io.jcervelin.ideas.offer.models.ArchiveReport;
+import io.jcervelin.ideas.offer.models.DiscountAnalytics;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferDeadLetter;
+import io.jcervelin.ideas.offer.models.OfferFilter;
+import io.jcervelin.ideas.offer.models.OfferSummary;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import lombok.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Repository decorator which keeps a snapshot of the valid offers per date,
+ * so the listing of the valid offers doesn't hit Mongo on every request.
+ *
+ * The snapshots are patched on save and cancel, and they expire after the
+ * configured time to live, because other writers may change the collection.
+ * With the change stream enabled, the writes of the other instances are patched too, but only
+ * in the snapshots of the default tenant: the stream follows its collection alone, the snapshots
+ * of the other tenants only see the writes of this instance and expire.
+ * While the change stream is broken the snapshots are skipped, the reads go to the database.
+ * The memory budget is the max number of offers held by all the snapshots of a tenant,
+ * each tenant has its own snapshots.
+ */
+@Primary
+@Component
+@ConditionalOnProperty(prefix = "offer.cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CachedOfferRepository implements OfferRepository {
+
+    private final OfferRepository delegate;
+    private final OfferCacheProperties properties;
+    private final OfferCollectionVersion collectionVersion;
+
+    private final ConcurrentMap<String, TenantCache> tenants = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CachedOfferRepository(@Qualifier("offerRepositoryImpl") final OfferRepository delegate,
+                                 final OfferCacheProperties properties,
+                                 final OfferCollectionVersion collectionVersion) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.collectionVersion = collectionVersion;
+    }
+
+    @Override
+    public List<Offer> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Offer> findAll(final String afterId, final int limit) {
+        return delegate.findAll(afterId, limit);
+    }
+
+    @Override
+    public Stream<Offer> streamAll() {
+        return delegate.streamAll();
+    }
+
+    @Override
+    public List<OfferSummary> findAllSummaries() {
+        return delegate.findAllSummaries();
+    }
+
+    /**
+     * The summaries are mapped from the snapshot of the date when there is one,
+     * otherwise they are read with the projection and not cached.
+     */
+    @Override
+    public List<OfferSummary> findValidOfferSummaries(final LocalDate localDate) {
+        final Snapshot snapshot = collectionVersion.isDegraded() ? null : cache().buckets.get(localDate);
+        if (snapshot != null && !snapshot.isExpired(properties.getTimeToLive().toNanos())) {
+            hits.incrementAndGet();
+            return snapshot.getOffers().stream().map(OfferSummary::of).collect(Collectors.toList());
+        }
+        misses.incrementAndGet();
+        return delegate.findValidOfferSummaries(localDate);
+    }
+
+    @Override
+    public List<Offer> findValidOffersBetween(final LocalDate from, final LocalDate to, final String afterId, final int limit) {
+        return delegate.findValidOffersBetween(from, to, afterId, limit);
+    }
+
+    @Override
+    public List<Offer> findValidOffers(final LocalDate localDate, final String afterId, final int limit) {
+        return delegate.findValidOffers(localDate, afterId, limit);
+    }
+
+    @Override
+    public List<Offer> search(final String text, final int offset, final int limit) {
+        return delegate.search(text, offset, limit);
+    }
+
+    /**
+     * Method responsible for serve the valid offers from the snapshot of the date.
+     * When there is no snapshot or it's expired, the offers are loaded from the database,
+     * and while the instance is degraded they are not kept.
+     * @param localDate
+     * @return an unmodifiable list of the valid offers
+     */
+    @Override
+    public List<Offer> findValidOffers(final LocalDate localDate) {
+        if (collectionVersion.isDegraded()) {
+            misses.incrementAndGet();
+            return Collections.unmodifiableList(new ArrayList<>(delegate.findValidOffers(localDate)));
+        }
+        final TenantCache cache = cache();
+        final Snapshot snapshot = cache.buckets.get(localDate);
+        if (snapshot != null && !snapshot.isExpired(properties.getTimeToLive().toNanos())) {
+            hits.incrementAndGet();
+            return snapshot.getOffers();
+        }
+        misses.incrementAndGet();
+        final long observedGeneration = cache.generation.get();
+        final List<Offer> offers = Collections.unmodifiableList(new ArrayList<>(delegate.findValidOffers(localDate)));
+        store(cache, localDate, offers, observedGeneration);
+        return offers;
+    }
+
+    @Override
+    public Optional<Offer> cancelOfferById(final String id) {
+        final Optional<Offer> offerCancelled = delegate.cancelOfferById(id);
+        offerCancelled.ifPresent(this::patch);
+        return offerCancelled;
+    }
+
+    @Override
+    public long cancelOffers(final OfferFilter filter) {
+        try {
+            return delegate.cancelOffers(filter);
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public Offer save(final Offer offer) {
+        final Offer offerSaved = delegate.save(offer);
+        patch(offerSaved);
+        return offerSaved;
+    }
+
+    /**
+     * Patching the snapshots offer by offer would copy them for each one,
+     * so they are dropped after a bulk insert.
+     */
+    @Override
+    public Map<Integer, String> insertAll(final List<Offer> offers) {
+        try {
+            return delegate.insertAll(offers);
+        } finally {
+            invalidate();
+        }
+    }
+
+    /**
+     * The offers parked were never in the collection.
+     */
+    @Override
+    public void park(final List<OfferDeadLetter> deadLetters) {
+        delegate.park(deadLetters);
+    }
+
+    /**
+     * The archived offers ended before the retention window,
+     * they are not in the snapshots of the valid offers.
+     */
+    @Override
+    public ArchiveReport archiveExpiredOffers(final LocalDate endBefore, final int limit) {
+        return delegate.archiveExpiredOffers(endBefore, limit);
+    }
+
+    @Override
+    public DiscountAnalytics findDiscountAnalytics() {
+        return delegate.findDiscountAnalytics();
+    }
+
+    /**
+     * Drops every snapshot of the current tenant. Next reads will be loaded from the database.
+     */
+    public void invalidate() {
+        final TenantCache cache = cache();
+        synchronized (cache) {
+            cache.generation.incrementAndGet();
+            evictions.addAndGet(cache.buckets.size());
+            cache.buckets.clear();
+        }
+    }
+
+    /**
+     * @return the statistics of all the tenants
+     */
+    public Statistics statistics() {
+        return new Statistics(hits.get(), misses.get(), evictions.get(),
+                tenants.values().stream().mapToInt(cache -> cache.buckets.size()).sum(),
+                tenants.values().stream().mapToLong(CachedOfferRepository::heldOffers).sum());
+    }
+
+    /**
+     * Replaces the previous version of the offer in the snapshots of the current tenant.
+     * @param offer
+     */
+    public void patch(final Offer offer) {
+        patch(Collections.singletonList(offer), Collections.emptySet());
+    }
+
+    /**
+     * Applies a batch of changes, the ones seen by the change stream for instance,
+     * copying each snapshot of the current tenant once for the whole batch.
+     * @param saved offers which replace their previous version
+     * @param removed ids of the offers removed
+     */
+    public void patch(final Collection<Offer> saved, final Collection<String> removed) {
+        final Map<String, Offer> savedById = new HashMap<>();
+        saved.forEach(offer -> savedById.put(offer.getId(), offer));
+        final Set<String> removedIds = new HashSet<>(removed);
+        final TenantCache cache = cache();
+        synchronized (cache) {
+            cache.generation.incrementAndGet();
+            cache.buckets.replaceAll((date, snapshot) -> snapshot.patch(date, savedById, removedIds));
+        }
+    }
+
+    /**
+     * The tenants come from the configuration, they are never removed.
+     */
+    private TenantCache cache() {
+        return tenants.computeIfAbsent(OfferTenant.current(), tenant -> new TenantCache());
+    }
+
+    private void store(final TenantCache cache, final LocalDate date, final List<Offer> offers, final long observedGeneration) {
+        synchronized (cache) {
+            // a write happened while the offers were loaded, so they can be stale
+            if (cache.generation.get() != observedGeneration)
+                return;
+
+            if (offers.size() > properties.getMaxOffers()) {
+                evictions.incrementAndGet();
+                return;
+            }
+
+            final Map<LocalDate, Snapshot> buckets = cache.buckets;
+            final long ttl = properties.getTimeToLive().toNanos();
+            if (buckets.remove(date) != null)
+                evictions.incrementAndGet();
+            buckets.entrySet().removeIf(entry -> {
+                final boolean expired = entry.getValue().isExpired(ttl);
+                if (expired)
+                    evictions.incrementAndGet();
+                return expired;
+            });
+
+            while (!buckets.isEmpty() && (buckets.size() >= properties.getMaxBuckets()
+                    || heldOffers(cache) + offers.size() > properties.getMaxOffers())) {
+                buckets.keySet().stream()
+                        .min(Comparator.naturalOrder())
+                        .ifPresent(oldest -> {
+                            buckets.remove(oldest);
+                            evictions.incrementAndGet();
+                        });
+            }
+
+            buckets.put(date, new Snapshot(offers, System.nanoTime()));
+        }
+    }
+
+    private static long heldOffers(final TenantCache cache) {
+        return cache.buckets.values().stream().mapToLong(snapshot -> snapshot.getOffers().size()).sum();
+    }
+
+    /**
+     * Snapshots of one tenant, the budget applies to each tenant,
+     * the snapshots of a big tenant don't evict the ones of the others.
+     */
+    private static class TenantCache {
+        private final ConcurrentMap<LocalDate, Snapshot> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong generation = new AtomicLong();
+    }
+
+    @Value
+    private static class Snapshot {
+        private final List<Offer> offers;
+        private final long loadedAt;
+
+        boolean isExpired(final long ttl) {
+            return System.nanoTime() - loadedAt >= ttl;
+        }
+
+        /**
+         * Copy of the snapshot without the previous version of the offers saved nor the ones
+         * removed, plus the new versions valid on the date of the snapshot.
+         */
+        Snapshot patch(final LocalDate date, final Map<String, Offer> saved, final Set<String> removed) {
+            final List<Offer> patched = new ArrayList<>(offers.size() + saved.size());
+            for (final Offer current : offers) {
+                if (!saved.containsKey(current.getId()) && !removed.contains(current.getId()))
+                    patched.add(current);
+            }
+            for (final Offer offer : saved.values()) {
+                if (offer.isValidOn(date))
+                    patched.add(offer);
+            }
+            return new Snapshot(Collections.unmodifiableList(patched), loadedAt);
+        }
+    }
+
+    @Value
+    public static class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int buckets;
+        private final long offers;
+    }
+}
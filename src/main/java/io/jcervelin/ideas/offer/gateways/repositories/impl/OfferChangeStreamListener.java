@@ -0,0 +1,281 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.jcervelin.ideas.offer.configs.mongo.OfferChangeStreamProperties;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferEvent;
+import io.jcervelin.ideas.offer.models.OfferEventType;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListener;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+import org.springframework.data.mongodb.core.messaging.SubscriptionRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Class responsible for apply in this instance the writes seen by the change
+ * stream of the offers collection, including the ones done by other instances:
+ * the snapshots of the cache and the validity and search indexes are patched, the version of
+ * the collection moves on and the change is published as an OfferEvent.
+ *
+ * The changes are queued by the stream and applied by a background thread in batches:
+ * the snapshots are copied once per batch, or dropped when the batch is full, and the
+ * version moves once per batch. The writes of this instance which come back through
+ * the stream are only published, they were already applied.
+ *
+ * A broken stream is removed from the container and opened again from the resume token
+ * of the last change seen, after a delay doubled on each failure. Until it's open again
+ * the collection version is degraded: the snapshots are skipped and the lists are sent
+ * without ETag. Once it's open the snapshots are dropped and the version moves on.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class OfferChangeStreamListener implements MessageListener<ChangeStreamDocument<Document>, Offer> {
+
+    private static final int CHANGE_STREAM_FATAL_ERROR = 280;
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    private static final Duration OPEN_POLL = Duration.ofMillis(100);
+
+    private final ObjectProvider<CachedOfferRepository> cachedOfferRepository;
+    private final OfferValidityIndex validityIndex;
+    private final OfferSearchIndex searchIndex;
+    private final OfferCollectionVersion collectionVersion;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OfferLocalWrites localWrites;
+    private final OfferChangeStreamProperties properties;
+
+    private BlockingQueue<OfferEvent> changes;
+    private Thread applier;
+    private volatile boolean running;
+
+    private MessageListenerContainer container;
+    private Function<BsonValue, SubscriptionRequest<ChangeStreamDocument<Document>, Offer, ?>> requests;
+    private ScheduledExecutorService resubscriber;
+    private Subscription subscription;
+    private int failures;
+    private volatile BsonValue resumeToken;
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled())
+            return;
+        changes = new LinkedBlockingQueue<>(properties.getQueueSize());
+        running = true;
+        applier = new Thread(this::run, "offer-change-stream-applier");
+        applier.setDaemon(true);
+        applier.start();
+        resubscriber = Executors.newSingleThreadScheduledExecutor(task -> {
+            final Thread thread = new Thread(task, "offer-change-stream-resubscriber");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running)
+            return;
+        running = false;
+        resubscriber.shutdownNow();
+        applier.interrupt();
+        applier.join();
+    }
+
+    /**
+     * Opens the stream in the container, the version is degraded until it's open.
+     * @param container container of the stream, removed and registered again on failure
+     * @param requests request of the stream resumed after the token, from now on when it's null
+     */
+    public synchronized void subscribe(final MessageListenerContainer container,
+                                       final Function<BsonValue, SubscriptionRequest<ChangeStreamDocument<Document>, Offer, ?>> requests) {
+        this.container = container;
+        this.requests = requests;
+        collectionVersion.setDegraded(true);
+        resubscriber.execute(this::resubscribe);
+    }
+
+    /**
+     * The stream waits while the queue is full.
+     */
+    @Override
+    public void onMessage(final Message<ChangeStreamDocument<Document>, Offer> message) {
+        final ChangeStreamDocument<Document> change = message.getRaw();
+        final OfferEventType type = change.getOperationType() == OperationType.DELETE
+                ? OfferEventType.DELETED
+                : OfferEventType.SAVED;
+        try {
+            changes.put(new OfferEvent(id(change.getDocumentKey()), type, type == OfferEventType.DELETED ? null : message.getBody()));
+            if (change.getResumeToken() != null)
+                resumeToken = change.getResumeToken();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Applies a batch of changes, the last one of each offer wins.
+     * @param events changes in the order of the stream
+     */
+    void apply(final List<OfferEvent> events) {
+        final Map<String, Offer> saved = new LinkedHashMap<>();
+        final Set<String> removed = new HashSet<>();
+        for (final OfferEvent event : events) {
+            if (localWrites.isEcho(event))
+                continue;
+            final Offer offer = event.getOffer();
+            if (offer == null) {
+                // deleted, or gone before the lookup of the update
+                saved.remove(event.getId());
+                removed.add(event.getId());
+                validityIndex.remove(event.getId());
+                searchIndex.remove(event.getId());
+            } else {
+                removed.remove(offer.getId());
+                saved.put(offer.getId(), offer);
+                validityIndex.put(offer);
+                searchIndex.put(offer);
+            }
+        }
+        if (!saved.isEmpty() || !removed.isEmpty()) {
+            if (events.size() >= properties.getBatchSize())
+                cachedOfferRepository.ifAvailable(CachedOfferRepository::invalidate);
+            else
+                cachedOfferRepository.ifAvailable(cache -> cache.patch(new ArrayList<>(saved.values()), removed));
+            collectionVersion.increment();
+        }
+        events.forEach(eventPublisher::publishEvent);
+    }
+
+    /**
+     * Changes may be missed until the stream is open again,
+     * so the snapshots can't be trusted anymore.
+     * @param e
+     */
+    public synchronized void onError(final Throwable e) {
+        log.warn("The change stream of the offers failed, the cache is skipped until it's resumed. [{}]", e.getMessage());
+        collectionVersion.setDegraded(true);
+        cachedOfferRepository.ifAvailable(CachedOfferRepository::invalidate);
+        collectionVersion.increment();
+        // not subscribed yet, or already waiting for the next attempt
+        if (subscription == null || !running)
+            return;
+        container.remove(subscription);
+        subscription = null;
+        if (historyLost(e))
+            resumeToken = null;
+        final long delay = Math.min(properties.getRetryDelay().toMillis() << Math.min(failures, 20),
+                properties.getMaxRetryDelay().toMillis());
+        failures++;
+        resubscriber.schedule(this::resubscribe, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A stream which doesn't open within maxRetryDelay, without an error either, is a failure too.
+     * The wait is sliced, a stream which fails to open never gets there.
+     */
+    private void resubscribe() {
+        final Subscription opening;
+        synchronized (this) {
+            if (!running)
+                return;
+            opening = subscription = container.register(requests.apply(resumeToken), Offer.class, this::onError);
+        }
+        try {
+            final long deadline = System.nanoTime() + properties.getMaxRetryDelay().toNanos();
+            while (!opening.await(OPEN_POLL)) {
+                synchronized (this) {
+                    // failed meanwhile, the next attempt is already scheduled
+                    if (opening != subscription)
+                        return;
+                    if (System.nanoTime() - deadline > 0) {
+                        onError(new IllegalStateException("The change stream was not opened in time."));
+                        return;
+                    }
+                }
+            }
+            synchronized (this) {
+                if (opening != subscription)
+                    return;
+                failures = 0;
+                log.info("The change stream of the offers is open, the cache is used again.");
+                cachedOfferRepository.ifAvailable(CachedOfferRepository::invalidate);
+                collectionVersion.increment();
+                collectionVersion.setDegraded(false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The changes after the token are gone from the oplog, the stream can only start from now on.
+     */
+    private static boolean historyLost(final Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause())
+            if (cause instanceof MongoServerException
+                    && (((MongoServerException) cause).getCode() == CHANGE_STREAM_HISTORY_LOST
+                    || ((MongoServerException) cause).getCode() == CHANGE_STREAM_FATAL_ERROR))
+                return true;
+        return false;
+    }
+
+    private void run() {
+        final List<OfferEvent> batch = new ArrayList<>(properties.getBatchSize());
+        while (running) {
+            try {
+                final OfferEvent first = changes.poll(1, TimeUnit.SECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                changes.drainTo(batch, properties.getBatchSize() - 1);
+                apply(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("The changes of the offers could not be applied, the cache was invalidated. [{}]", e.getMessage());
+                cachedOfferRepository.ifAvailable(CachedOfferRepository::invalidate);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static String id(final BsonDocument documentKey) {
+        if (documentKey == null || !documentKey.containsKey("_id"))
+            return null;
+        final BsonValue id = documentKey.get("_id");
+        if (id.isObjectId())
+            return id.asObjectId().getValue().toHexString();
+        if (id.isString())
+            return id.asString().getValue();
+        return id.toString();
+    }
+}
@@ -0,0 +1,214 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import io.jcervelin.ideas.offer.configs.analytics.OfferAnalyticsProperties;
+import io.jcervelin.ideas.offer.models.CurrencyDiscount;
+import io.jcervelin.ideas.offer.models.DiscountAnalytics;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferDiscount;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.limit;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.project;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.sort;
+
+/**
+ * Class responsible for keep the discount analytics of the offers in one small document.
+ * It's built by an aggregation pipeline when the application starts, then every write
+ * of the repository applies its difference with one update: the counters of the currency
+ * are incremented and the ranking is kept sorted and sliced by Mongo.
+ * A cancel only changes the endOffer, it doesn't change the analytics.
+ *
+ * Writes made while the document is rebuilt may be counted twice or missed,
+ * the next rebuild fixes them.
+ *
+ * The offer is already persisted when its difference is applied, so an update which fails
+ * doesn't fail the write: the document is marked for rebuild and the next read rebuilds it.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class OfferDiscountRollup {
+
+    private final MongoTemplate mongoTemplate;
+    private final OfferAnalyticsProperties properties;
+
+    // tenants which document missed an update, in case it could not be removed either
+    private final Set<String> stale = ConcurrentHashMap.newKeySet();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("The discount analytics could not be built, they will be built on the first read. [{}]", e.getMessage());
+        }
+    }
+
+    public Optional<DiscountAnalytics> find() {
+        if (stale.contains(OfferTenant.current()))
+            return Optional.empty();
+        return Optional.ofNullable(mongoTemplate.findById(DiscountAnalytics.DISCOUNTS, DiscountAnalytics.class));
+    }
+
+    public DiscountAnalytics rebuild() {
+        // cleared first, an update failing meanwhile marks it again
+        stale.remove(OfferTenant.current());
+        try {
+            final DiscountAnalytics analytics = aggregate();
+            mongoTemplate.save(analytics);
+            return analytics;
+        } catch (RuntimeException e) {
+            stale.add(OfferTenant.current());
+            throw e;
+        }
+    }
+
+    /**
+     * Method responsible for make the next read rebuild the document of the tenant.
+     * It's removed, so the other instances rebuild it too, and the updates which
+     * find it missing meanwhile are skipped.
+     */
+    public void markForRebuild() {
+        stale.add(OfferTenant.current());
+        try {
+            mongoTemplate.remove(new Query(Criteria.where("_id").is(DiscountAnalytics.DISCOUNTS)), DiscountAnalytics.class);
+        } catch (RuntimeException e) {
+            log.warn("The discount analytics could not be removed, only this instance will rebuild them. [{}]", e.getMessage());
+        }
+    }
+
+    /**
+     * Computes the analytics from all the offers, with one pipeline
+     * for the currencies and another for the ranking.
+     */
+    DiscountAnalytics aggregate() {
+        final String collection = mongoTemplate.getCollectionName(Offer.class);
+        final DiscountAnalytics analytics = new DiscountAnalytics();
+
+        final Aggregation byCurrency = newAggregation(
+                project("currency").and("price").minus("offerPrice").as("discount"),
+                group("currency").count().as("count").sum("discount").as("discountSum"));
+        for (final Document result : mongoTemplate.aggregate(byCurrency, collection, Document.class)) {
+            final String currency = result.getString("_id");
+            analytics.getCurrencies().put(DiscountAnalytics.key(currency), new CurrencyDiscount(currency,
+                    ((Number) result.get("count")).longValue(), ((Number) result.get("discountSum")).doubleValue()));
+        }
+
+        final Aggregation ranking = newAggregation(
+                project("name", "currency", "price", "offerPrice").and("price").minus("offerPrice").as("discount"),
+                sort(Sort.Direction.DESC, "discount"),
+                limit(properties.getTopDiscounts()));
+        for (final Document result : mongoTemplate.aggregate(ranking, collection, Document.class)) {
+            analytics.getTopDiscounts().add(new OfferDiscount(result.get("_id").toString(), result.getString("name"),
+                    result.getString("currency"), ((Number) result.get("price")).doubleValue(),
+                    ((Number) result.get("offerPrice")).doubleValue(), ((Number) result.get("discount")).doubleValue()));
+        }
+        return analytics;
+    }
+
+    public void add(final Collection<Offer> offers) {
+        if (!offers.isEmpty())
+            apply(() -> checkRanking(update(added(offers))));
+    }
+
+    public void remove(final Collection<Offer> offers) {
+        if (!offers.isEmpty())
+            apply(() -> checkRanking(update(removed(offers))));
+    }
+
+    /**
+     * A version which keeps the name, the prices and the currency doesn't change the analytics.
+     * @param previous version of the offer replaced, null when it's a new one
+     * @param current
+     */
+    public void replace(final Offer previous, final Offer current) {
+        if (previous != null && sameDiscount(previous, current))
+            return;
+        apply(() -> {
+            if (previous != null)
+                update(removed(Collections.singletonList(previous)));
+            checkRanking(update(added(Collections.singletonList(current))));
+        });
+    }
+
+    private void apply(final Runnable update) {
+        try {
+            update.run();
+        } catch (RuntimeException e) {
+            log.warn("The discount analytics could not be updated, they will be rebuilt on the next read. [{}]", e.getMessage());
+            markForRebuild();
+        }
+    }
+
+    private static boolean sameDiscount(final Offer previous, final Offer current) {
+        return Double.compare(previous.getPrice(), current.getPrice()) == 0
+                && Double.compare(previous.getOfferPrice(), current.getOfferPrice()) == 0
+                && Objects.equals(previous.getCurrency(), current.getCurrency())
+                && Objects.equals(previous.getName(), current.getName());
+    }
+
+    /**
+     * When an offer of the ranking is removed, the next one is not known
+     * by the document, so the ranking is rebuilt.
+     */
+    private void checkRanking(final DiscountAnalytics analytics) {
+        if (analytics != null && analytics.getTopDiscounts().size() < Math.min(properties.getTopDiscounts(), analytics.getCount()))
+            rebuild();
+    }
+
+    private DiscountAnalytics update(final Update update) {
+        return mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(DiscountAnalytics.DISCOUNTS)), update,
+                FindAndModifyOptions.options().returnNew(true), DiscountAnalytics.class);
+    }
+
+    private Update added(final Collection<Offer> offers) {
+        final Update update = increments(offers, 1);
+        update.push("topDiscounts")
+                .sort(Sort.by(Sort.Direction.DESC, "discount"))
+                .slice(properties.getTopDiscounts())
+                .each(offers.stream().map(OfferDiscount::of).toArray());
+        return update;
+    }
+
+    private static Update removed(final Collection<Offer> offers) {
+        final List<String> ids = offers.stream().map(Offer::getId).collect(Collectors.toList());
+        return increments(offers, -1)
+                .pull("topDiscounts", new Document("offerId", new Document("$in", ids)));
+    }
+
+    private static Update increments(final Collection<Offer> offers, final int sign) {
+        final Update update = new Update();
+        offers.stream()
+                .collect(Collectors.groupingBy(offer -> DiscountAnalytics.key(offer.getCurrency())))
+                .forEach((key, ofCurrency) -> update
+                        .set("currencies." + key + ".currency", ofCurrency.get(0).getCurrency())
+                        .inc("currencies." + key + ".count", sign * ofCurrency.size())
+                        .inc("currencies." + key + ".discountSum",
+                                sign * ofCurrency.stream().mapToDouble(offer -> offer.getPrice() - offer.getOfferPrice()).sum()));
+        return update;
+    }
+}
@@ -0,0 +1,74 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import io.jcervelin.ideas.offer.configs.mongo.OfferChangeStreamProperties;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferEvent;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Class responsible for remember the last writes of this instance, so the change stream
+ * listener recognises them when they come back through the stream and doesn't apply them twice.
+ *
+ * Only the writes of the default tenant are remembered, the only one followed by the change
+ * stream, and only while it's enabled. The oldest writes are forgotten past MAX_WRITES, their
+ * echo is then applied again, which is harmless.
+ */
+@RequiredArgsConstructor
+@Component
+public class OfferLocalWrites {
+
+    private static final int MAX_WRITES = 10_000;
+    private static final Offer REMOVED = new Offer();
+
+    private final OfferChangeStreamProperties properties;
+
+    private final Map<String, Offer> writes = new LinkedHashMap<String, Offer>() {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Offer> eldest) {
+            return size() > MAX_WRITES;
+        }
+    };
+
+    public void saved(final Offer offer) {
+        if (isRemembered() && offer.getId() != null)
+            remember(offer.getId(), offer);
+    }
+
+    public void removed(final Collection<String> ids) {
+        if (isRemembered())
+            ids.forEach(id -> remember(id, REMOVED));
+    }
+
+    /**
+     * The write is forgotten once its echo is seen.
+     * @param event change seen by the change stream
+     * @return true when the change is the last write of this instance of the offer
+     */
+    public boolean isEcho(final OfferEvent event) {
+        final Offer written;
+        synchronized (writes) {
+            written = writes.remove(event.getId());
+        }
+        if (written == null)
+            return false;
+        return written == REMOVED ? event.getOffer() == null : written.equals(event.getOffer());
+    }
+
+    private boolean isRemembered() {
+        return properties.isEnabled() && OfferTenant.isDefault();
+    }
+
+    private void remember(final String id, final Offer offer) {
+        synchronized (writes) {
+            // the latest write of the offer goes to the end, it's the last one forgotten
+            writes.remove(id);
+            writes.put(id, offer);
+        }
+    }
+}
@@ -1,56 +1,467 @@
 package io.jcervelin.ideas.offer.gateways.repositories.impl;
 
+import io.jcervelin.ideas.offer.configs.mongo.MongoClientConfig;
+import io.jcervelin.ideas.offer.configs.mongo.OfferMongoProperties;
 import io.jcervelin.ideas.offer.gateways.repositories.OfferMongoRepository;
 import io.jcervelin.ideas.offer.gateways.repositories.OfferRepository;
+import io.jcervelin.ideas.offer.models.ArchiveReport;
+import io.jcervelin.ideas.offer.models.DiscountAnalytics;
 import io.jcervelin.ideas.offer.models.Offer;
-import lombok.RequiredArgsConstructor;
+import io.jcervelin.ideas.offer.models.OfferDeadLetter;
+import io.jcervelin.ideas.offer.models.OfferFilter;
+import io.jcervelin.ideas.offer.models.OfferSummary;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.BsonDocument;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.StreamUtils;
 import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-@RequiredArgsConstructor
+/**
+ * Repository of the offers in Mongo. The pages, the searches, the exports and the offers
+ * valid in a period are read with the list template, which may read from the secondaries.
+ * The writes and the reads they depend on go to the primary.
+ *
+ * The lists cached in the snapshots or sent with an ETag, the valid offers, all offers and
+ * their summaries, only go to the list template once the last write seen by the collection
+ * version is older than the max staleness of the secondaries. Before that they go to the
+ * primary: the version moves on as soon as the write is seen, a list read from a secondary
+ * behind would be kept, or revalidated, with the new version.
+ */
 @Component
 public class OfferRepositoryImpl implements OfferRepository {
 
+    public static final String ARCHIVE_COLLECTION = "offers_archive";
+    private static final int DUPLICATE_KEY = 11000;
+    // heartbeat frequency of the driver, the staleness of a secondary is measured that often
+    private static final Duration HEARTBEAT_FREQUENCY = Duration.ofSeconds(10);
+
     private final OfferMongoRepository repository;
     private final MongoTemplate mongoTemplate;
+    private final OfferValidityIndex validityIndex;
+    private final OfferSearchIndex searchIndex;
+    private final OfferDiscountRollup discountRollup;
+    private final MongoTemplate listMongoTemplate;
+    private final OfferLocalWrites localWrites;
+    private final OfferCollectionVersion collectionVersion;
+    private final OfferMongoProperties mongoProperties;
+
+    public OfferRepositoryImpl(final OfferMongoRepository repository,
+                               final MongoTemplate mongoTemplate,
+                               final OfferValidityIndex validityIndex,
+                               final OfferSearchIndex searchIndex,
+                               final OfferDiscountRollup discountRollup,
+                               @Qualifier(MongoClientConfig.LIST_MONGO_TEMPLATE) final MongoTemplate listMongoTemplate,
+                               final OfferLocalWrites localWrites,
+                               final OfferCollectionVersion collectionVersion,
+                               final OfferMongoProperties mongoProperties) {
+        this.repository = repository;
+        this.mongoTemplate = mongoTemplate;
+        this.validityIndex = validityIndex;
+        this.searchIndex = searchIndex;
+        this.discountRollup = discountRollup;
+        this.listMongoTemplate = listMongoTemplate;
+        this.localWrites = localWrites;
+        this.collectionVersion = collectionVersion;
+        this.mongoProperties = mongoProperties;
+    }
 
     @Override
     public List<Offer> findValidOffers (final LocalDate localDate) {
-        return repository.findValidOffers(localDate);
+        return versionedListTemplate().find(validQuery(localDate), Offer.class);
     }
 
     @Override
     public List<Offer> findAll() {
-        return repository.findAll();
+        return versionedListTemplate().findAll(Offer.class);
+    }
+
+    /**
+     * Keyset pagination over all offers, sorted by id.
+     * The cost of each page doesn't depend on how deep it is.
+     * @param afterId id of the last offer of the previous page, null for the first page
+     * @param limit max number of offers returned
+     */
+    @Override
+    public List<Offer> findAll(final String afterId, final int limit) {
+        return listMongoTemplate.find(pageQuery(new Query(), afterId, limit), Offer.class);
     }
 
     /**
-     * Method responsible for cancel Offer updating the endOffer to LocalDate.now() - 1 day
+     * Method responsible for read all offers from a database cursor,
+     * instead of loading them in memory.
+     * @return stream of offers, it must be closed to release the cursor
+     */
+    @Override
+    public Stream<Offer> streamAll() {
+        return StreamUtils.createStreamFromIterator(listMongoTemplate.stream(new Query(), Offer.class));
+    }
+
+    @Override
+    public List<OfferSummary> findAllSummaries() {
+        return findSummaries(new Query());
+    }
+
+    @Override
+    public List<OfferSummary> findValidOfferSummaries(final LocalDate localDate) {
+        return findSummaries(validQuery(localDate));
+    }
+
+    /**
+     * Keyset pagination over the offers valid in the period, sorted by id. Once the validity
+     * index is loaded, it selects the ids of the page and only those are read from Mongo, the
+     * validity is checked again on them. An offer changed meanwhile is skipped and the next ids
+     * are read in its place, so a page is only short when it's the last one. Otherwise by Mongo.
+     * @param from first date of the period
+     * @param to last date of the period
+     * @param afterId id of the last offer of the previous page, null for the first page
+     * @param limit max number of offers returned
+     */
+    @Override
+    public List<Offer> findValidOffersBetween(final LocalDate from, final LocalDate to, final String afterId, final int limit) {
+        final Criteria validBetween = Criteria.where("startOffer").lt(to).and("endOffer").gte(from);
+        if (!validityIndex.isReady())
+            return listMongoTemplate.find(pageQuery(new Query(validBetween), afterId, limit), Offer.class);
+        final List<Offer> offers = new ArrayList<>();
+        String after = afterId;
+        List<String> ids;
+        int requested;
+        do {
+            requested = limit - offers.size();
+            ids = validityIndex.findValidBetween(from, to, after, requested);
+            if (ids.isEmpty())
+                break;
+            offers.addAll(findByIds(ids, validBetween));
+            after = ids.get(ids.size() - 1);
+        } while (ids.size() == requested && offers.size() < limit);
+        return offers;
+    }
+
+    /**
+     * Ranked by the search index once it's loaded, then the offers of the page are
+     * read by id. Otherwise Mongo returns the offers with all the words in the name
+     * or the description, sorted by id.
+     * @param text words searched
+     * @param offset number of offers skipped
+     * @param limit max number of offers returned
+     */
+    @Override
+    public List<Offer> search(final String text, final int offset, final int limit) {
+        if (!searchIndex.isReady()) {
+            final Query query = new Query(searchCriteria(text))
+                    .with(Sort.by(Sort.Direction.ASC, "_id"))
+                    .skip(offset)
+                    .limit(limit);
+            return listMongoTemplate.find(query, Offer.class);
+        }
+        return findByIds(searchIndex.search(text, offset, limit), new Criteria());
+    }
+
+    /**
+     * Keyset pagination over the valid offers, sorted by id.
+     * @param localDate
+     * @param afterId id of the last offer of the previous page, null for the first page
+     * @param limit max number of offers returned
+     */
+    @Override
+    public List<Offer> findValidOffers(final LocalDate localDate, final String afterId, final int limit) {
+        return listMongoTemplate.find(pageQuery(validQuery(localDate), afterId, limit), Offer.class);
+    }
+
+    /**
+     * Method responsible for cancel Offer updating the endOffer to LocalDate.now() - 1 day.
+     * The update and the read of the offer updated are done in one round-trip.
      * @param id
      * @return when id is not found it returns an Optional.empty()
      */
     @Override
     public Optional<Offer> cancelOfferById (final String id) {
+        Assert.notNull(id, "The given id must not be null!");
 
-        mongoTemplate.updateFirst(
+        final Optional<Offer> offerCancelled = Optional.ofNullable(mongoTemplate.findAndModify(
                 new Query().addCriteria(Criteria.where("_id").is(id)),
-                new Update().set("endOffer",LocalDate.now().minusDays(1)),
+                new Update().set("endOffer", LocalDate.now().minusDays(1)),
+                FindAndModifyOptions.options().returnNew(true),
                 Offer.class
-        );
+        ));
+        offerCancelled.ifPresent(validityIndex::put);
+        offerCancelled.ifPresent(localWrites::saved);
+        return offerCancelled;
+    }
+
+    /**
+     * Method responsible for cancel, in one update, the offers selected by the filter.
+     * Only the non expired offers are cancelled, the expired ones keep their endOffer.
+     * @param filter ids, currency and/or name prefix of the offers
+     * @return number of offers cancelled
+     */
+    @Override
+    public long cancelOffers(final OfferFilter filter) {
+        final LocalDate today = LocalDate.now();
+        final Query query = new Query(Criteria.where("endOffer").gte(today));
+        if (filter.getIds() != null && !filter.getIds().isEmpty())
+            query.addCriteria(Criteria.where("_id").in(filter.getIds()));
+        if (filter.getCurrency() != null && !filter.getCurrency().isEmpty())
+            query.addCriteria(Criteria.where("currency").is(filter.getCurrency()));
+        if (filter.getNamePrefix() != null && !filter.getNamePrefix().isEmpty())
+            query.addCriteria(Criteria.where("name").regex("^" + escapeRegex(filter.getNamePrefix())));
 
-        return repository.findById(id);
+        final long cancelled = mongoTemplate.updateMulti(query, new Update().set("endOffer", today.minusDays(1)), Offer.class)
+                .getModifiedCount();
+        validityIndex.cancel(filter, today, today.minusDays(1));
+        return cancelled;
     }
 
+    /**
+     * Method responsible for save the offer. Only an offer sent with its id replaces another one,
+     * it's replaced by one find and replace which returns the fields of the previous version
+     * the discount analytics depend on, instead of reading it before the write.
+     * @param offer
+     * @return the offer saved, with its id
+     */
     @Override
     public Offer save(Offer offer) {
-        return repository.save(offer);
+        final Offer previous;
+        final Offer offerSaved;
+        if (offer.getId() == null) {
+            previous = null;
+            offerSaved = repository.save(offer);
+        } else {
+            final Query byId = new Query(Criteria.where("_id").is(offer.getId()));
+            byId.fields().include("name").include("price").include("offerPrice").include("currency");
+            previous = mongoTemplate.findAndReplace(byId, offer, FindAndReplaceOptions.options().upsert());
+            offerSaved = offer;
+        }
+        localWrites.saved(offerSaved);
+        validityIndex.put(offerSaved);
+        searchIndex.put(offerSaved);
+        discountRollup.replace(previous, offerSaved);
+        return offerSaved;
+    }
+
+    /**
+     * Method responsible for insert the offers in one unordered bulk write.
+     * An offer which fails doesn't stop the others.
+     * @param offers
+     * @return the error message of each offer not inserted by its position in the list,
+     * empty when all of them were inserted.
+     */
+    @Override
+    public Map<Integer, String> insertAll(final List<Offer> offers) {
+        Map<Integer, String> errors;
+        // the bulk insert doesn't write the generated ids back to the offers
+        offers.stream()
+                .filter(offer -> offer.getId() == null)
+                .forEach(offer -> offer.setId(ObjectId.get().toHexString()));
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Offer.class)
+                    .insert(offers)
+                    .execute();
+            errors = Collections.emptyMap();
+        } catch (RuntimeException e) {
+            errors = bulkWriteErrors(e).stream()
+                    .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage));
+        }
+        final List<Offer> inserted = new ArrayList<>(offers.size());
+        for (int position = 0; position < offers.size(); position++) {
+            if (!errors.containsKey(position)) {
+                localWrites.saved(offers.get(position));
+                validityIndex.put(offers.get(position));
+                searchIndex.put(offers.get(position));
+                inserted.add(offers.get(position));
+            }
+        }
+        discountRollup.add(inserted);
+        return errors;
+    }
+
+    /**
+     * Method responsible for park the offers refused by Mongo in the dead letter collection
+     * of the tenant. An offer already parked is kept as it was.
+     * @param deadLetters
+     */
+    @Override
+    public void park(final List<OfferDeadLetter> deadLetters) {
+        if (deadLetters.isEmpty())
+            return;
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OfferDeadLetter.class)
+                    .insert(deadLetters)
+                    .execute();
+        } catch (RuntimeException e) {
+            if (bulkWriteErrors(e).stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY))
+                throw e;
+        }
+    }
+
+    /**
+     * Method responsible for move a batch of expired offers to the archive collection of the tenant,
+     * the oldest ones first. The offers are copied before being removed and a copy already
+     * archived is kept, so a batch interrupted between both steps is completed by the next one.
+     * An offer made valid again meanwhile is not removed.
+     * @param endBefore the offers which the endOffer date is before it are archived
+     * @param limit max number of offers moved
+     * @return number of offers selected and of offers removed from the offers collection
+     */
+    @Override
+    public ArchiveReport archiveExpiredOffers(final LocalDate endBefore, final int limit) {
+        final List<Offer> expired = mongoTemplate.find(new Query(Criteria.where("endOffer").lt(endBefore))
+                .with(Sort.by(Sort.Direction.ASC, "endOffer"))
+                .limit(limit), Offer.class);
+        if (expired.isEmpty())
+            return new ArchiveReport(0, 0);
+
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Offer.class, OfferTenant.collection(ARCHIVE_COLLECTION))
+                    .insert(expired)
+                    .execute();
+        } catch (RuntimeException e) {
+            // nothing is removed while an offer could not be copied
+            if (bulkWriteErrors(e).stream().anyMatch(error -> error.getCode() != DUPLICATE_KEY))
+                throw e;
+        }
+
+        final List<String> ids = expired.stream().map(Offer::getId).collect(Collectors.toList());
+        final long removed = mongoTemplate.remove(
+                new Query(Criteria.where("_id").in(ids).and("endOffer").lt(endBefore)),
+                Offer.class).getDeletedCount();
+        validityIndex.removeExpired(ids, endBefore);
+        // an offer extended meanwhile was kept, which ones is not known
+        if (removed == expired.size()) {
+            localWrites.removed(ids);
+            searchIndex.removeAll(ids);
+            discountRollup.remove(expired);
+        } else {
+            discountRollup.markForRebuild();
+        }
+        return new ArchiveReport(expired.size(), (int) removed);
+    }
+
+    /**
+     * Served by the rollup document, built by the aggregation pipeline when it doesn't exist yet.
+     */
+    @Override
+    public DiscountAnalytics findDiscountAnalytics() {
+        return discountRollup.find().orElseGet(discountRollup::rebuild);
+    }
+
+    private static Criteria searchCriteria(final String text) {
+        final Criteria[] words = OfferSearchIndex.words(text).stream()
+                .map(Pattern::quote)
+                .map(word -> new Criteria().orOperator(
+                        Criteria.where("name").regex(word, "i"),
+                        Criteria.where("description").regex(word, "i")))
+                .toArray(Criteria[]::new);
+        return new Criteria().andOperator(words);
+    }
+
+    /**
+     * The errors of each document of a bulk write which failed. The driver exception is
+     * translated by Spring, to a DuplicateKeyException for instance, and kept as its cause.
+     * @param e
+     * @throws RuntimeException the exception given when it's not a failure of a bulk write
+     */
+    private static List<BulkWriteError> bulkWriteErrors(final RuntimeException e) {
+        if (e.getCause() instanceof MongoBulkWriteException)
+            return ((MongoBulkWriteException) e.getCause()).getWriteErrors();
+        if (e instanceof BulkOperationException)
+            return ((BulkOperationException) e).getErrors().stream()
+                    .map(error -> new BulkWriteError(error.getCode(), error.getMessage(), new BsonDocument(), error.getIndex()))
+                    .collect(Collectors.toList());
+        throw e;
+    }
+
+    /**
+     * Escapes the prefix char by char instead of using \Q...\E,
+     * so Mongo can still use the index bounds of an anchored regex.
+     */
+    private static String escapeRegex(final String value) {
+        final StringBuilder escaped = new StringBuilder(value.length());
+        for (final char c : value.toCharArray()) {
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0)
+                escaped.append('\\');
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Reads the offers selected by an index, in the order of the ids. An offer
+     * removed or changed meanwhile, which no longer matches the criteria, is skipped.
+     * @param ids a page of ids, bounded by the limit of the request
+     */
+    private List<Offer> findByIds(final List<String> ids, final Criteria criteria) {
+        if (ids.isEmpty())
+            return Collections.emptyList();
+        final Map<String, Offer> offers = listMongoTemplate.find(new Query(criteria).addCriteria(Criteria.where("_id").in(ids)), Offer.class)
+                .stream()
+                .collect(Collectors.toMap(Offer::getId, offer -> offer));
+        return ids.stream()
+                .map(offers::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Only the fields of the summary are projected, the description
+     * and the dates are neither sent by Mongo nor allocated.
+     */
+    private List<OfferSummary> findSummaries(final Query query) {
+        for (final String field : OfferSummary.FIELDS)
+            query.fields().include(field);
+        final MongoTemplate template = versionedListTemplate();
+        return template.find(query, OfferSummary.class, template.getCollectionName(Offer.class));
+    }
+
+    /**
+     * The secondaries selected by the list template are at most the max staleness behind,
+     * give or take the heartbeat which measures it. Once the last write is older than both,
+     * every one of them has it. Without a max staleness they may be any time behind.
+     * @return template of the lists which go with the collection version
+     */
+    private MongoTemplate versionedListTemplate() {
+        final Duration maxStaleness = mongoProperties.getListMaxStaleness();
+        if (maxStaleness == null)
+            return mongoTemplate;
+        final long settledAt = collectionVersion.lastModified() + maxStaleness.plus(HEARTBEAT_FREQUENCY).toMillis();
+        return System.currentTimeMillis() > settledAt ? listMongoTemplate : mongoTemplate;
+    }
+
+    private static Query validQuery(final LocalDate localDate) {
+        return new Query(Criteria.where("startOffer").lt(localDate).and("endOffer").gte(localDate));
+    }
+
+    private Query pageQuery(final Query query, final String afterId, final int limit) {
+        if (afterId != null)
+            query.addCriteria(Criteria.where("_id").gt(ObjectId.isValid(afterId) ? new ObjectId(afterId) : afterId));
+        return query
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(limit);
     }
 
 
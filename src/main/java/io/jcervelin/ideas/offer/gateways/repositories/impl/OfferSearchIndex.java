@@ -0,0 +1,323 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import io.jcervelin.ideas.offer.configs.search.OfferSearchIndexProperties;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.StreamUtils;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index of the words of the name and the description of the offers.
+ * Each word of a search matches the words of the offers which start with it, an offer
+ * must match all of them. The offers are ranked by the sum of the weight of their best
+ * word for each one: occurrences, three times in the name, by how rare the word is,
+ * and halved when it's only a prefix. The cost depends on the offers matched, the words
+ * are found in a sorted map.
+ *
+ * Only the ids are kept, the offers are read from Mongo, so a cancel doesn't change it.
+ * The index is loaded from Mongo when the application starts and kept current by the
+ * write paths of the repositories. Until it's loaded, isReady is false and the searches
+ * must go to Mongo.
+ *
+ * It holds the offers of the default tenant, the other tenants search in Mongo.
+ * Past maxOffers offers, when it's loaded or later, it's dropped and the searches
+ * go to Mongo until the next restart.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class OfferSearchIndex {
+
+    private static final int NAME_WEIGHT = 3;
+    private static final double PREFIX_WEIGHT = 0.5;
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // the highest score first, the ties by id
+    private static final Comparator<Map.Entry<String, Double>> RANKING =
+            Map.Entry.<String, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    private final MongoTemplate mongoTemplate;
+    private final OfferSearchIndexProperties properties;
+
+    // word -> id of the offers -> weight of the word in the offer
+    private final NavigableMap<String, Map<String, Integer>> postings = new TreeMap<>();
+    private final Map<String, Set<String>> wordsById = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+    private volatile boolean overflow;
+
+    // offers removed while the index is loaded, the cursor may bring them as they were before
+    private boolean loading;
+    private final Set<String> removedWhileLoading = new HashSet<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!properties.isEnabled())
+            return;
+        final long start = System.currentTimeMillis();
+        final Query query = new Query();
+        query.fields().include("name").include("description");
+        try (final Stream<Offer> offers = StreamUtils.createStreamFromIterator(mongoTemplate.stream(query, Offer.class))) {
+            load(offers);
+            if (ready)
+                log.info("Search index loaded with {} offers and {} words in {} ms.",
+                        size(), words(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            clear();
+            log.warn("The search index could not be loaded, the searches will go to Mongo. [{}]", e.getMessage());
+        }
+    }
+
+    /**
+     * The offers written while the index is loaded are already in it and newer
+     * than the ones read by the cursor, so they are not replaced. The ones removed
+     * or archived meanwhile may come from the cursor as they were before, they are skipped.
+     */
+    void load(final Stream<Offer> offers) {
+        lock.writeLock().lock();
+        loading = true;
+        lock.writeLock().unlock();
+        try {
+            for (final Iterator<Offer> iterator = offers.iterator(); iterator.hasNext() && !overflow; ) {
+                final Offer offer = iterator.next();
+                lock.writeLock().lock();
+                try {
+                    if (!wordsById.containsKey(offer.getId()) && !removedWhileLoading.contains(offer.getId()))
+                        add(offer);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            ready = !overflow;
+        } finally {
+            lock.writeLock().lock();
+            loading = false;
+            removedWhileLoading.clear();
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready && OfferTenant.isDefault();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return wordsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int words() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param text words searched, in any case and with or without accents
+     * @param offset number of offers skipped
+     * @param limit max number of ids returned
+     * @return ids of the offers which match all the words, the most relevant first
+     */
+    public List<String> search(final String text, final int offset, final int limit) {
+        final Set<String> searched = new LinkedHashSet<>(words(text));
+        if (searched.isEmpty())
+            return Collections.emptyList();
+        final Map<String, Double> scores;
+        lock.readLock().lock();
+        try {
+            final List<Map<String, Double>> matches = new ArrayList<>();
+            for (final String word : searched) {
+                final Map<String, Double> match = match(word);
+                if (match.isEmpty())
+                    return Collections.emptyList();
+                matches.add(match);
+            }
+            // the smallest match is the one intersected with the others
+            matches.sort(Comparator.comparingInt(Map::size));
+            scores = matches.get(0);
+            for (final Map<String, Double> match : matches.subList(1, matches.size())) {
+                scores.keySet().retainAll(match.keySet());
+                scores.replaceAll((id, score) -> score + match.get(id));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return rank(scores, offset + limit).stream()
+                .skip(offset)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Keeps only the best offers while the scores are visited,
+     * instead of sorting all the offers matched.
+     */
+    private static List<Map.Entry<String, Double>> rank(final Map<String, Double> scores, final int top) {
+        final PriorityQueue<Map.Entry<String, Double>> best = new PriorityQueue<>(RANKING.reversed());
+        for (final Map.Entry<String, Double> score : scores.entrySet()) {
+            best.offer(score);
+            if (best.size() > top)
+                best.poll();
+        }
+        final List<Map.Entry<String, Double>> ranked = new ArrayList<>(best);
+        ranked.sort(RANKING);
+        return ranked;
+    }
+
+    /**
+     * Adds the offer or replaces its previous version.
+     * @param offer
+     */
+    public void put(final Offer offer) {
+        if (!properties.isEnabled() || !OfferTenant.isDefault() || offer.getId() == null || overflow)
+            return;
+        lock.writeLock().lock();
+        try {
+            unindex(offer.getId());
+            add(offer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the offer, if it's indexed.
+     * @param id
+     */
+    public void remove(final String id) {
+        if (!properties.isEnabled() || !OfferTenant.isDefault() || id == null || overflow)
+            return;
+        lock.writeLock().lock();
+        try {
+            unindex(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the offers, if they are indexed.
+     * @param ids
+     */
+    public void removeAll(final Collection<String> ids) {
+        if (!properties.isEnabled() || !OfferTenant.isDefault() || overflow)
+            return;
+        lock.writeLock().lock();
+        try {
+            ids.forEach(this::unindex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Words of a text: letters and digits in lower case, without accents.
+     * @param text
+     */
+    static List<String> words(final String text) {
+        if (text == null || text.isEmpty())
+            return Collections.emptyList();
+        final String normalized = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        return Stream.of(SEPARATORS.split(normalized))
+                .filter(word -> !word.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Score of each offer by its best word starting with the one searched.
+     */
+    private Map<String, Double> match(final String searched) {
+        final Map<String, Double> match = new HashMap<>();
+        final int offers = wordsById.size();
+        for (final Map.Entry<String, Map<String, Integer>> word
+                : postings.subMap(searched, true, searched + Character.MAX_VALUE, false).entrySet()) {
+            final double rarity = Math.log(1 + (double) offers / word.getValue().size());
+            final double weight = word.getKey().length() == searched.length() ? rarity : rarity * PREFIX_WEIGHT;
+            word.getValue().forEach((id, occurrences) -> match.merge(id, occurrences * weight, Math::max));
+        }
+        return match;
+    }
+
+    private void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            wordsById.clear();
+            ready = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Past the budget, the index is dropped and the searches go to Mongo.
+     */
+    private void add(final Offer offer) {
+        if (overflow)
+            return;
+        if (wordsById.size() >= properties.getMaxOffers()) {
+            overflow = true;
+            ready = false;
+            postings.clear();
+            wordsById.clear();
+            log.warn("There are more than {} offers, the searches will go to Mongo.", properties.getMaxOffers());
+            return;
+        }
+        final Map<String, Integer> occurrences = new HashMap<>();
+        words(offer.getName()).forEach(word -> occurrences.merge(word, NAME_WEIGHT, Integer::sum));
+        words(offer.getDescription()).forEach(word -> occurrences.merge(word, 1, Integer::sum));
+        occurrences.forEach((word, weight) -> postings.computeIfAbsent(word, key -> new HashMap<>()).put(offer.getId(), weight));
+        wordsById.put(offer.getId(), occurrences.keySet());
+    }
+
+    private void unindex(final String id) {
+        if (loading)
+            removedWhileLoading.add(id);
+        final Set<String> words = wordsById.remove(id);
+        if (words == null)
+            return;
+        for (final String word : words) {
+            final Map<String, Integer> offers = postings.get(word);
+            offers.remove(id);
+            if (offers.isEmpty())
+                postings.remove(word);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import io.jcervelin.ideas.offer.configs.cache.OfferValidityIndexProperties;
+import io.jcervelin.ideas.offer.configs.tenant.OfferTenantProperties;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferFilter;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.StreamUtils;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the offers by validity period, partitioned by startOffer
+ * and then by endOffer. Asking which offers are valid between two dates visits
+ * only the partitions which started before the end of the period and, inside each,
+ * the offers which end after its beginning. The cost depends on the number of
+ * distinct dates and on the offers returned, not on the size of the collection.
+ *
+ * Only the ids, the dates and the fields the cancel filters match, name and currency,
+ * are kept, the queries return the ids and the offers are read from Mongo by id.
+ * A tenant with more than offer.validity-index.max-offers offers is not indexed.
+ *
+ * The index is loaded from Mongo when the application starts and kept current by
+ * the write paths of the repositories. Until it's loaded, isReady is false and the
+ * queries must go to Mongo. Writes made straight to Mongo are only seen when the
+ * change stream is enabled.
+ *
+ * Each tenant has its own index, loaded from its own collection, so the size
+ * of a tenant doesn't change the cost of the queries of the others.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class OfferValidityIndex {
+
+    private static final String[] FIELDS = {"startOffer", "endOffer", "name", "currency"};
+
+    private final MongoTemplate mongoTemplate;
+    private final OfferValidityIndexProperties properties;
+    private final OfferTenantProperties tenantProperties;
+
+    private final ConcurrentMap<String, TenantIndex> tenants = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!properties.isEnabled())
+            return;
+        tenantProperties.all().forEach(tenant -> OfferTenant.run(tenant, this::loadTenant));
+    }
+
+    private void loadTenant() {
+        final long start = System.currentTimeMillis();
+        final Query query = new Query();
+        for (final String field : FIELDS)
+            query.fields().include(field);
+        try (final Stream<Offer> offers = StreamUtils.createStreamFromIterator(mongoTemplate.stream(query, Offer.class))) {
+            load(offers);
+            if (isReady())
+                log.info("Validity index of the tenant {} loaded with {} offers in {} ms.",
+                        OfferTenant.current(), size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            clear();
+            log.warn("The validity index of the tenant {} could not be loaded, its queries by date will go to Mongo. [{}]",
+                    OfferTenant.current(), e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the offers of the current tenant. The offers written while the index is loaded are
+     * already in it and newer than the ones read by the cursor, so they are not replaced. The ones
+     * removed, archived or cancelled meanwhile may come from the cursor as they were before,
+     * they are skipped or cancelled again.
+     */
+    void load(final Stream<Offer> offers) {
+        final TenantIndex index = tenants.computeIfAbsent(OfferTenant.current(), tenant -> new TenantIndex());
+        index.lock.writeLock().lock();
+        index.loading = true;
+        index.lock.writeLock().unlock();
+        try {
+            for (final Iterator<Offer> iterator = offers.iterator(); iterator.hasNext() && !index.overflow; ) {
+                final Offer offer = iterator.next();
+                index.lock.writeLock().lock();
+                try {
+                    if (!index.byId.containsKey(offer.getId()) && !index.changedWhileLoading(offer))
+                        add(index, index.cancelledWhileLoading(indexed(offer)));
+                } finally {
+                    index.lock.writeLock().unlock();
+                }
+            }
+            index.ready = !index.overflow;
+        } finally {
+            index.lock.writeLock().lock();
+            index.loaded();
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true when the offers of the current tenant are loaded
+     */
+    public boolean isReady() {
+        final TenantIndex index = tenants.get(OfferTenant.current());
+        return index != null && index.ready;
+    }
+
+    public int size() {
+        final TenantIndex index = tenants.get(OfferTenant.current());
+        if (index == null)
+            return 0;
+        index.lock.readLock().lock();
+        try {
+            return index.byId.size();
+        } finally {
+            index.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Keyset page of the offers of the current tenant valid on any date of the period.
+     * Only the lowest ids are kept while the partitions are visited, the page never
+     * holds more than limit ids however many offers are valid.
+     * @param from first date of the period
+     * @param to last date of the period
+     * @param afterId id of the last offer of the previous page, null for the first page
+     * @param limit max number of ids returned
+     * @return ids sorted like the _id of Mongo
+     */
+    public List<String> findValidBetween(final LocalDate from, final LocalDate to, final String afterId, final int limit) {
+        final TreeSet<String> page = new TreeSet<>();
+        final TenantIndex index = tenants.get(OfferTenant.current());
+        if (index == null)
+            return new ArrayList<>(page);
+        index.lock.readLock().lock();
+        try {
+            for (final NavigableMap<LocalDate, List<Offer>> byEnd : index.byStart.headMap(to, false).values())
+                for (final List<Offer> partition : byEnd.tailMap(from, true).values())
+                    for (final Offer offer : partition) {
+                        final String id = offer.getId();
+                        if (afterId != null && id.compareTo(afterId) <= 0)
+                            continue;
+                        if (page.size() < limit)
+                            page.add(id);
+                        else if (id.compareTo(page.last()) < 0) {
+                            page.add(id);
+                            page.pollLast();
+                        }
+                    }
+        } finally {
+            index.lock.readLock().unlock();
+        }
+        return new ArrayList<>(page);
+    }
+
+    /**
+     * Adds the offer or replaces its previous version.
+     * @param offer
+     */
+    public void put(final Offer offer) {
+        final TenantIndex index = tenantIndex();
+        if (index == null || offer.getId() == null)
+            return;
+        index.lock.writeLock().lock();
+        try {
+            index.remove(index.byId.get(offer.getId()));
+            add(index, indexed(offer));
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the offer, if it's indexed.
+     * @param id
+     */
+    public void remove(final String id) {
+        final TenantIndex index = tenantIndex();
+        if (index == null || id == null)
+            return;
+        index.lock.writeLock().lock();
+        try {
+            index.remove(index.byId.get(id));
+            if (index.loading)
+                index.removed.add(id);
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the offers archived, the ones made valid again meanwhile are kept.
+     * @param ids
+     * @param endBefore
+     */
+    public void removeExpired(final Collection<String> ids, final LocalDate endBefore) {
+        final TenantIndex index = tenantIndex();
+        if (index == null)
+            return;
+        index.lock.writeLock().lock();
+        try {
+            for (final String id : ids) {
+                final Offer offer = index.byId.get(id);
+                if (offer != null && offer.getEndOffer() != null && offer.getEndOffer().isBefore(endBefore))
+                    index.remove(offer);
+                if (index.loading)
+                    index.expired.put(id, endBefore);
+            }
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies in memory the cancel done by the repository: the non expired
+     * offers selected by the filter end on the date given.
+     * @param filter
+     * @param today
+     * @param endOffer
+     */
+    public void cancel(final OfferFilter filter, final LocalDate today, final LocalDate endOffer) {
+        final TenantIndex index = tenantIndex();
+        if (index == null)
+            return;
+        index.lock.writeLock().lock();
+        try {
+            final List<Offer> candidates = new ArrayList<>();
+            if (filter.getIds() != null && !filter.getIds().isEmpty()) {
+                filter.getIds().stream().map(index.byId::get).filter(offer -> offer != null).forEach(candidates::add);
+            } else {
+                candidates.addAll(index.byId.values());
+            }
+            final Cancel cancel = new Cancel(filter, today, endOffer);
+            for (final Offer offer : candidates) {
+                if (cancel.matches(offer)) {
+                    index.remove(offer);
+                    index.add(withEndOffer(offer, endOffer));
+                }
+            }
+            if (index.loading)
+                index.cancels.add(cancel);
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The tenants come from the configuration, the writes made before the load are kept.
+     * @return the index of the current tenant, null when the index is disabled
+     * or the tenant has too many offers
+     */
+    private TenantIndex tenantIndex() {
+        if (!properties.isEnabled())
+            return null;
+        final TenantIndex index = tenants.computeIfAbsent(OfferTenant.current(), tenant -> new TenantIndex());
+        return index.overflow ? null : index;
+    }
+
+    /**
+     * Past the budget, the offers of the tenant are dropped and its queries go to Mongo.
+     */
+    private void add(final TenantIndex index, final Offer offer) {
+        if (index.overflow)
+            return;
+        index.add(offer);
+        if (index.byId.size() > properties.getMaxOffers()) {
+            index.overflow();
+            log.warn("The tenant {} has more than {} offers, its queries by date will go to Mongo.",
+                    OfferTenant.current(), properties.getMaxOffers());
+        }
+    }
+
+    private void clear() {
+        tenants.remove(OfferTenant.current());
+    }
+
+    /**
+     * Only the fields used by the index are kept.
+     */
+    private static Offer indexed(final Offer offer) {
+        final Offer indexed = new Offer();
+        indexed.setId(offer.getId());
+        indexed.setName(offer.getName());
+        indexed.setCurrency(offer.getCurrency());
+        indexed.setStartOffer(offer.getStartOffer());
+        indexed.setEndOffer(offer.getEndOffer());
+        return indexed;
+    }
+
+    /**
+     * The indexed offers may be in use by other threads, they are not changed.
+     */
+    private static Offer withEndOffer(final Offer offer, final LocalDate endOffer) {
+        final Offer cancelled = indexed(offer);
+        cancelled.setEndOffer(endOffer);
+        return cancelled;
+    }
+
+    /**
+     * Cancel of the offers selected by a filter, kept while the index is loaded
+     * to be applied to the offers the cursor brings afterwards.
+     */
+    @RequiredArgsConstructor
+    private static class Cancel {
+
+        private final OfferFilter filter;
+        private final LocalDate today;
+        private final LocalDate endOffer;
+
+        private boolean matches(final Offer offer) {
+            return offer.getEndOffer() != null && !offer.getEndOffer().isBefore(today) && filter.matches(offer);
+        }
+    }
+
+    /**
+     * Offers of one tenant, each tenant has its own lock,
+     * the writes of a tenant don't block the queries of the others.
+     */
+    private static class TenantIndex {
+
+        // the offers of the same period are kept in a list, the queries copy it at once,
+        // a write scans it but it only holds the offers with the same start and end
+        private final NavigableMap<LocalDate, NavigableMap<LocalDate, List<Offer>>> byStart = new TreeMap<>();
+        private final Map<String, Offer> byId = new HashMap<>();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private volatile boolean ready;
+        private volatile boolean overflow;
+
+        // changes made while the index is loaded, the cursor may bring the offers as they were before
+        private boolean loading;
+        private final Set<String> removed = new HashSet<>();
+        private final Map<String, LocalDate> expired = new HashMap<>();
+        private final List<Cancel> cancels = new ArrayList<>();
+
+        private boolean changedWhileLoading(final Offer offer) {
+            if (removed.contains(offer.getId()))
+                return true;
+            final LocalDate endBefore = expired.get(offer.getId());
+            return endBefore != null && offer.getEndOffer() != null && offer.getEndOffer().isBefore(endBefore);
+        }
+
+        private Offer cancelledWhileLoading(final Offer offer) {
+            Offer current = offer;
+            for (final Cancel cancel : cancels)
+                if (cancel.matches(current))
+                    current = withEndOffer(current, cancel.endOffer);
+            return current;
+        }
+
+        private void loaded() {
+            loading = false;
+            removed.clear();
+            expired.clear();
+            cancels.clear();
+        }
+
+        private void overflow() {
+            overflow = true;
+            ready = false;
+            byStart.clear();
+            byId.clear();
+        }
+
+        private void add(final Offer offer) {
+            byId.put(offer.getId(), offer);
+            // without both dates the offer is never valid, it's only kept by id
+            if (offer.getStartOffer() == null || offer.getEndOffer() == null)
+                return;
+            byStart.computeIfAbsent(offer.getStartOffer(), start -> new TreeMap<>())
+                    .computeIfAbsent(offer.getEndOffer(), end -> new ArrayList<>())
+                    .add(offer);
+        }
+
+        private void remove(final Offer offer) {
+            if (offer == null)
+                return;
+            byId.remove(offer.getId());
+            if (offer.getStartOffer() == null || offer.getEndOffer() == null)
+                return;
+            final NavigableMap<LocalDate, List<Offer>> byEnd = byStart.get(offer.getStartOffer());
+            final List<Offer> partition = byEnd.get(offer.getEndOffer());
+            partition.removeIf(current -> current.getId().equals(offer.getId()));
+            if (partition.isEmpty())
+                byEnd.remove(offer.getEndOffer());
+            if (byEnd.isEmpty())
+                byStart.remove(offer.getStartOffer());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import io.jcervelin.ideas.offer.gateways.repositories.ReactiveOfferRepository;
+import io.jcervelin.ideas.offer.models.Offer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+/**
+ * Non-blocking access to the offers, used by the reactive profile.
+ * The finds are read from a Mongo cursor on demand: the driver only asks
+ * for the next batch when the subscriber requests more offers, so a slow
+ * client holds the cursor back instead of filling the memory.
+ */
+@Profile("reactive")
+@RequiredArgsConstructor
+@Component
+public class ReactiveOfferRepositoryImpl implements ReactiveOfferRepository {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final OfferValidityIndex validityIndex;
+    private final OfferSearchIndex searchIndex;
+
+    @Override
+    public Flux<Offer> findAll() {
+        return mongoTemplate.find(new Query(), Offer.class);
+    }
+
+    @Override
+    public Flux<Offer> findValidOffers(final LocalDate localDate) {
+        return mongoTemplate.find(
+                new Query(Criteria.where("startOffer").lt(localDate).and("endOffer").gte(localDate)),
+                Offer.class);
+    }
+
+    /**
+     * Method responsible for cancel Offer updating the endOffer to LocalDate.now() - 1 day.
+     * @param id
+     * @return when id is not found it completes empty
+     */
+    @Override
+    public Mono<Offer> cancelOfferById(final String id) {
+        Assert.notNull(id, "The given id must not be null!");
+
+        return mongoTemplate.findAndModify(
+                new Query().addCriteria(Criteria.where("_id").is(id)),
+                new Update().set("endOffer", LocalDate.now().minusDays(1)),
+                FindAndModifyOptions.options().returnNew(true),
+                Offer.class)
+                .doOnNext(validityIndex::put);
+    }
+
+    @Override
+    public Mono<Offer> save(final Offer offer) {
+        return mongoTemplate.save(offer)
+                .doOnNext(validityIndex::put)
+                .doOnNext(searchIndex::put);
+    }
+}
@@ -0,0 +1,23 @@
+package io.jcervelin.ideas.offer.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Result of a batch of the archival. An offer selected may not be archived,
+ * when it was extended meanwhile, so only the selection tells whether expired
+ * offers are left.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchiveReport implements Serializable {
+
+    private static final long serialVersionUID = 5064720194336702563L;
+
+    private int selected;
+    private int archived;
+}
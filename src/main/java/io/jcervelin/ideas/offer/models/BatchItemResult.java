@@ -0,0 +1,24 @@
+package io.jcervelin.ideas.offer.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Result of one offer of a batch. The index is the position
+ * of the offer in the request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult implements Serializable {
+
+    private static final long serialVersionUID = 2201580927374187412L;
+
+    private int index;
+    private String id;
+    private BatchItemStatus status;
+    private String message;
+}
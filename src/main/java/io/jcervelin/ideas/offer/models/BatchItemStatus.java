@@ -0,0 +1,7 @@
+package io.jcervelin.ideas.offer.models;
+
+public enum BatchItemStatus {
+    SAVED,
+    INVALID,
+    FAILED
+}
@@ -0,0 +1,21 @@
+package io.jcervelin.ideas.offer.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchReport implements Serializable {
+
+    private static final long serialVersionUID = -6935121437512047893L;
+
+    private int received;
+    private int saved;
+    private int failed;
+    private List<BatchItemResult> items;
+}
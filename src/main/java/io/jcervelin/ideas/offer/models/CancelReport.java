@@ -0,0 +1,17 @@
+package io.jcervelin.ideas.offer.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CancelReport implements Serializable {
+
+    private static final long serialVersionUID = -2740398310532765522L;
+
+    private long cancelled;
+}
@@ -0,0 +1,26 @@
+package io.jcervelin.ideas.offer.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Number of offers and sum of their discounts, price - offerPrice, in a currency.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CurrencyDiscount implements Serializable {
+
+    private static final long serialVersionUID = -2760924116593317415L;
+
+    private String currency;
+    private long count;
+    private double discountSum;
+
+    public double getAverageDiscount() {
+        return count == 0 ? 0 : discountSum / count;
+    }
+}
@@ -0,0 +1,51 @@
+package io.jcervelin.ideas.offer.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Discount statistics of all the offers, kept in one document updated by each write.
+ * The currencies are keyed by DiscountAnalytics.key, Mongo doesn't accept every
+ * currency as a field name. Each tenant has its own document, in its own collection.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "#{T(io.jcervelin.ideas.offer.utils.OfferTenant).collection('offer_analytics')}")
+public class DiscountAnalytics implements Serializable {
+
+    private static final long serialVersionUID = -8497010215866398310L;
+
+    public static final String DISCOUNTS = "discounts";
+
+    @Id
+    @JsonIgnore
+    private String id = DISCOUNTS;
+    private Map<String, CurrencyDiscount> currencies = new LinkedHashMap<>();
+    private List<OfferDiscount> topDiscounts = new ArrayList<>();
+
+    public long getCount() {
+        return currencies.values().stream().mapToLong(CurrencyDiscount::getCount).sum();
+    }
+
+    public double getAverageDiscount() {
+        final long count = getCount();
+        return count == 0 ? 0 : currencies.values().stream().mapToDouble(CurrencyDiscount::getDiscountSum).sum() / count;
+    }
+
+    /**
+     * @param currency
+     * @return field name of the currency, without the dots and dollars Mongo forbids
+     */
+    public static String key(final String currency) {
+        return currency == null ? "-" : currency.replace('.', '_').replace('$', '_');
+    }
+}
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotEmpty;
@@ -13,22 +15,50 @@ import java.time.LocalDate;
 
 @Data
 @NoArgsConstructor
-@Document(collection = "offers")
+// one collection per tenant, the name is evaluated on every operation
+@Document(collection = "#{T(io.jcervelin.ideas.offer.utils.OfferTenant).collection('offers')}")
+@CompoundIndexes({
+        // endOffer first, most of the offers are expired and it's the most selective bound
+        @CompoundIndex(name = "validity_idx", def = "{'endOffer': 1, 'startOffer': 1}")
+})
 public class Offer implements Serializable {
 
     private static final long serialVersionUID = 5184262962570378015L;
 
+    public static final String NAME_REQUIRED = "The name is required";
+    public static final String START_OFFER_REQUIRED = "The startOffer is required";
+
     @Id
     private String id;
-    @NotEmpty(message="The name is required")
+    @NotEmpty(message = NAME_REQUIRED)
     private String name;
     private double price;
     private double offerPrice;
-    @NotNull(message="The startOffer is required")
+    @NotNull(message = START_OFFER_REQUIRED)
     @JsonFormat(pattern = "dd/MM/yyyy")
     private LocalDate startOffer;
     @JsonFormat(pattern = "dd/MM/yyyy")
     private LocalDate endOffer;
     private String currency;
     private String description;
+
+    /**
+     * Same rule of the validity query in the repository, the offer
+     * must be started before the date and not finished yet.
+     * @param date
+     * @return true when the offer is valid on the date given
+     */
+    public boolean isValidOn(final LocalDate date) {
+        return isValidBetween(date, date);
+    }
+
+    /**
+     * @param from first date of the period
+     * @param to last date of the period
+     * @return true when the offer is valid on any date of the period
+     */
+    public boolean isValidBetween(final LocalDate from, final LocalDate to) {
+        return startOffer != null && endOffer != null
+                && startOffer.isBefore(to) && !endOffer.isBefore(from);
+    }
 }
@@ -0,0 +1,34 @@
+package io.jcervelin.ideas.offer.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Offer of the write-behind journal which Mongo refused with an error other than a duplicated id,
+ * parked with the error instead of being dropped. It has the id of the offer, so an offer parked
+ * again after a restart is not duplicated.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "#{T(io.jcervelin.ideas.offer.utils.OfferTenant).collection('offers_dead_letter')}")
+public class OfferDeadLetter implements Serializable {
+
+    private static final long serialVersionUID = 2910356771420945178L;
+
+    @Id
+    private String id;
+    private Offer offer;
+    private String error;
+    private Instant parkedAt;
+
+    public static OfferDeadLetter of(final Offer offer, final String error) {
+        return new OfferDeadLetter(offer.getId(), offer, error, Instant.now());
+    }
+}
@@ -0,0 +1,30 @@
+package io.jcervelin.ideas.offer.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * An offer of the ranking of the biggest discounts.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OfferDiscount implements Serializable {
+
+    private static final long serialVersionUID = 7309274406427371164L;
+
+    private String offerId;
+    private String name;
+    private String currency;
+    private double price;
+    private double offerPrice;
+    private double discount;
+
+    public static OfferDiscount of(final Offer offer) {
+        return new OfferDiscount(offer.getId(), offer.getName(), offer.getCurrency(),
+                offer.getPrice(), offer.getOfferPrice(), offer.getPrice() - offer.getOfferPrice());
+    }
+}
@@ -0,0 +1,24 @@
+package io.jcervelin.ideas.offer.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Change of one offer seen in the offers collection. A cancel is a SAVED
+ * event with the new endOffer. The offer is null when it's DELETED
+ * or when it was removed before its change could be read.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OfferEvent implements Serializable {
+
+    private static final long serialVersionUID = 4719204871826341155L;
+
+    private String id;
+    private OfferEventType type;
+    private Offer offer;
+}
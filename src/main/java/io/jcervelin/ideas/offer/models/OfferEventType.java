@@ -0,0 +1,6 @@
+package io.jcervelin.ideas.offer.models;
+
+public enum OfferEventType {
+    SAVED,
+    DELETED
+}
@@ -0,0 +1,45 @@
+package io.jcervelin.ideas.offer.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Selection of offers by a list of ids or by attributes.
+ * When more than one attribute is given, the offer must match all of them.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OfferFilter implements Serializable {
+
+    private static final long serialVersionUID = 8164097405391876601L;
+
+    private List<String> ids;
+    private String currency;
+    private String namePrefix;
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return (ids == null || ids.isEmpty())
+                && (currency == null || currency.isEmpty())
+                && (namePrefix == null || namePrefix.isEmpty());
+    }
+
+    /**
+     * Same selection of the cancel query in the repository,
+     * the name prefix is case sensitive.
+     * @param offer
+     * @return true when the offer matches all the attributes given
+     */
+    public boolean matches(final Offer offer) {
+        return (ids == null || ids.isEmpty() || ids.contains(offer.getId()))
+                && (currency == null || currency.isEmpty() || currency.equals(offer.getCurrency()))
+                && (namePrefix == null || namePrefix.isEmpty()
+                        || (offer.getName() != null && offer.getName().startsWith(namePrefix)));
+    }
+}
@@ -0,0 +1,23 @@
+package io.jcervelin.ideas.offer.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Page of offers. The next attribute is the cursor to be sent
+ * as the after parameter to get the following page, it's null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OfferPage implements Serializable {
+
+    private static final long serialVersionUID = -3482512906014470112L;
+
+    private List<Offer> offers;
+    private String next;
+}
@@ -0,0 +1,32 @@
+package io.jcervelin.ideas.offer.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Lightweight view of an offer for listings, without dates and description.
+ * It's read from Mongo with a field projection, the other fields
+ * are not even sent by the database.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OfferSummary implements Serializable {
+
+    private static final long serialVersionUID = -6328735183502264581L;
+
+    public static final String[] FIELDS = {"name", "price", "offerPrice", "currency"};
+
+    private String id;
+    private String name;
+    private double price;
+    private double offerPrice;
+    private String currency;
+
+    public static OfferSummary of(final Offer offer) {
+        return new OfferSummary(offer.getId(), offer.getName(), offer.getPrice(), offer.getOfferPrice(), offer.getCurrency());
+    }
+}
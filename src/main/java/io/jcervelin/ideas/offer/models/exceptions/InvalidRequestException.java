@@ -0,0 +1,7 @@
+package io.jcervelin.ideas.offer.models.exceptions;
+
+public class InvalidRequestException extends RuntimeException {
+    public InvalidRequestException(final String message) {
+        super (message);
+    }
+}
@@ -0,0 +1,83 @@
+package io.jcervelin.ideas.offer.usecases;
+
+import io.jcervelin.ideas.offer.configs.archive.OfferArchiveProperties;
+import io.jcervelin.ideas.offer.configs.tenant.OfferTenantProperties;
+import io.jcervelin.ideas.offer.gateways.repositories.OfferRepository;
+import io.jcervelin.ideas.offer.models.ArchiveReport;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class responsible for move the offers expired for longer than the retention
+ * to the archive collection, so the offers collection and its indexes don't grow forever.
+ *
+ * Each batch is complete by itself, a run stopped in the middle is resumed by the next one.
+ * The batches are throttled, the job never takes more than half of the time of a Mongo connection.
+ * Every instance may run it, the same batch done twice archives each offer once.
+ * The tenants are archived one after the other, each one in its own collections.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class OfferArchiving {
+
+    private final OfferRepository repository;
+    private final OfferArchiveProperties properties;
+    private final OfferCollectionVersion collectionVersion;
+    private final OfferTenantProperties tenantProperties;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Scheduled(cron = "${offer.archive.cron:0 0 3 * * *}")
+    public void archiveExpiredOffers() {
+        final LocalDate endBefore = LocalDate.now().minusDays(properties.getRetentionDays());
+        tenantProperties.all().forEach(tenant -> OfferTenant.run(tenant, () -> archive(endBefore)));
+    }
+
+    /**
+     * Archives the offers of the current tenant.
+     * @param endBefore the offers which the endOffer date is before it are archived
+     * @return number of offers archived, 0 when another run is in progress
+     */
+    public long archive(final LocalDate endBefore) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("The archival of the expired offers is already running.");
+            return 0;
+        }
+        long archived = 0;
+        try {
+            for (int batch = 0; batch < properties.getMaxBatches(); batch++) {
+                final long start = System.nanoTime();
+                final ArchiveReport report = repository.archiveExpiredOffers(endBefore, properties.getBatchSize());
+                if (report.getArchived() > 0)
+                    collectionVersion.increment();
+                archived += report.getArchived();
+                // the offers extended meanwhile are skipped, only a short selection means none is left
+                if (report.getSelected() < properties.getBatchSize())
+                    break;
+                pause(System.nanoTime() - start);
+            }
+            log.info("{} offers of the tenant {} ended before {} were archived.", archived, OfferTenant.current(), endBefore);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("The archival of the expired offers was interrupted after {} offers.", archived);
+        } catch (Exception e) {
+            log.error("The archival of the expired offers stopped after {} offers. [{}]", archived, e.getMessage());
+        } finally {
+            running.set(false);
+        }
+        return archived;
+    }
+
+    private void pause(final long lastBatchNanos) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(Math.max(properties.getPause().toNanos(), lastBatchNanos));
+    }
+}
@@ -1,16 +1,43 @@
 package io.jcervelin.ideas.offer.usecases;
 
+import io.jcervelin.ideas.offer.configs.batch.OfferBatchProperties;
 import io.jcervelin.ideas.offer.gateways.repositories.OfferRepository;
+import io.jcervelin.ideas.offer.models.BatchItemResult;
+import io.jcervelin.ideas.offer.models.BatchItemStatus;
+import io.jcervelin.ideas.offer.models.BatchReport;
+import io.jcervelin.ideas.offer.models.CancelReport;
+import io.jcervelin.ideas.offer.models.DiscountAnalytics;
 import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferFilter;
+import io.jcervelin.ideas.offer.models.OfferPage;
+import io.jcervelin.ideas.offer.models.OfferSummary;
 import io.jcervelin.ideas.offer.models.exceptions.InvalidOfferException;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidRequestException;
 import io.jcervelin.ideas.offer.models.exceptions.OfferErrorException;
 import io.jcervelin.ideas.offer.models.exceptions.OfferNotFoundException;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
 import io.jcervelin.ideas.offer.utils.OfferValidator;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import io.jcervelin.ideas.offer.utils.PageCursor;
+import io.jcervelin.ideas.offer.utils.SingleFlight;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.time.LocalDate.now;
 
@@ -18,12 +45,24 @@ import static java.time.LocalDate.now;
 @Component
 public class OfferManagement {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_SEARCH_OFFSET = 10000;
+
     private final OfferRepository repository;
     private final OfferValidator validator;
+    private final OfferBatchProperties batchProperties;
+    private final OfferCollectionVersion collectionVersion;
+    private final OfferWriteBehind writeBehind;
+
+    // keyed by tenant and date, the concurrent requests of the same list share one read
+    private final SingleFlight<String, List<Offer>> validOffersFlight = new SingleFlight<>();
+    private final SingleFlight<String, List<OfferSummary>> validOfferSummariesFlight = new SingleFlight<>();
 
     /**
      * Method responsible for saving offers and wrap connection exceptions
      * or any kind of issue from Mongo in a customized exception class.
+     * With the write-behind enabled, a new offer is returned with its id
+     * once it's in the journal, it's written to Mongo in background.
      *
      * @param offer
      * @return offer saved
@@ -31,7 +70,9 @@ public class OfferManagement {
     public Offer save(final Offer offer) {
         try {
             validator.validate(offer);
-            return repository.save(offer);
+            if (writeBehind.enqueue(offer))
+                return offer;
+            return write(() -> repository.save(offer));
         } catch (InvalidOfferException e) {
             throw e;
         } catch (Exception e) {
@@ -39,16 +80,59 @@ public class OfferManagement {
         }
     }
 
+    /**
+     * Method responsible for saving a batch of offers. The offers are validated in parallel,
+     * then the valid ones are written in chunks of unordered bulk inserts.
+     * An invalid offer or a failed write doesn't stop the others,
+     * the report has the result of each offer in the order they were sent.
+     *
+     * @param offers
+     * @return report with the id, or the error, of each offer
+     */
+    public BatchReport saveAll(final List<Offer> offers) {
+        if (offers == null || offers.isEmpty())
+            throw new InvalidRequestException("No offers were sent.");
+        if (offers.size() > batchProperties.getMaxSize())
+            throw new InvalidRequestException(String.format("The batch can't have more than %d offers.", batchProperties.getMaxSize()));
+
+        final BatchItemResult[] results = new BatchItemResult[offers.size()];
+        IntStream.range(0, offers.size()).parallel().forEach(index -> {
+            try {
+                validator.validate(offers.get(index));
+            } catch (InvalidOfferException e) {
+                results[index] = new BatchItemResult(index, null, BatchItemStatus.INVALID, e.getMessage());
+            }
+        });
+
+        final List<Integer> valid = IntStream.range(0, offers.size())
+                .filter(index -> results[index] == null)
+                .boxed()
+                .collect(Collectors.toList());
+
+        write(() -> {
+            for (int from = 0; from < valid.size(); from += batchProperties.getChunkSize()) {
+                final List<Integer> chunk = valid.subList(from, Math.min(from + batchProperties.getChunkSize(), valid.size()));
+                insertChunk(offers, chunk, results);
+            }
+            return results;
+        });
+
+        final int saved = (int) Arrays.stream(results).filter(result -> result.getStatus() == BatchItemStatus.SAVED).count();
+        return new BatchReport(offers.size(), saved, offers.size() - saved, Arrays.asList(results));
+    }
+
     /**
      * Method responsible for get the valid offers excluding the expired ones.
+     * The concurrent requests, after the snapshot expires for instance, share one read.
      * In case of database outage it should return OfferErrorException.
      * In case of data not found it should return OfferNotFoundException.
      *
-     * @return list of valid offers
+     * @return list of valid offers, shared with the concurrent requests
      */
     public List<Offer> getValidOffers() {
         try {
-            final List<Offer> validOffers = repository.findValidOffers(now());
+            final LocalDate today = now();
+            final List<Offer> validOffers = validOffersFlight.call(flightKey(today), () -> repository.findValidOffers(today));
             if(validOffers.isEmpty())
                 throw new OfferNotFoundException("No data found.");
             return validOffers;
@@ -59,6 +143,55 @@ public class OfferManagement {
         }
     }
 
+    /**
+     * Method responsible for get a page of the offers valid on any date of a period,
+     * sorted by id, for instance to plan campaigns. The period may be in the past or in the future.
+     * In case of database outage it should return OfferErrorException.
+     * In case of data not found it should return OfferNotFoundException.
+     *
+     * @param from first date of the period
+     * @param to last date of the period, the same as from for a single date
+     * @param after cursor returned by the previous page, null for the first page
+     * @param limit max number of offers of the page
+     * @return page of offers valid on any date of the period and the cursor of the next page
+     */
+    public OfferPage getValidOffers(final LocalDate from, final LocalDate to, final String after, final int limit) {
+        if (from == null || to == null || to.isBefore(from))
+            throw new InvalidRequestException("The period must have a start date before or equals its end date.");
+        validateLimit(limit);
+        final String afterId = PageCursor.decode(after);
+        try {
+            return toPage(repository.findValidOffersBetween(from, to, afterId, limit + 1), limit);
+        } catch (OfferNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new OfferErrorException(String.format("The offer could not be found. [%s]", e.getMessage()));
+        }
+    }
+
+    /**
+     * Method responsible for get the summary of the valid offers excluding the expired ones.
+     * The concurrent requests share one read.
+     * In case of database outage it should return OfferErrorException.
+     * In case of data not found it should return OfferNotFoundException.
+     *
+     * @return summary of the valid offers, shared with the concurrent requests
+     */
+    public List<OfferSummary> getValidOfferSummaries() {
+        try {
+            final LocalDate today = now();
+            final List<OfferSummary> summaries = validOfferSummariesFlight.call(flightKey(today),
+                    () -> repository.findValidOfferSummaries(today));
+            if(summaries.isEmpty())
+                throw new OfferNotFoundException("No data found.");
+            return summaries;
+        } catch (OfferNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new OfferErrorException(String.format("The offer could not be found. [%s]", e.getMessage()));
+        }
+    }
+
     /**
      * Method responsible for get the offers.
      * In case of database outage it should return OfferErrorException.
@@ -79,6 +212,141 @@ public class OfferManagement {
         }
     }
 
+    /**
+     * Method responsible for get the summary of the offers.
+     * In case of database outage it should return OfferErrorException.
+     * In case of data not found it should return OfferNotFoundException.
+     *
+     * @return summary of all offers, including the expired ones.
+     */
+    public List<OfferSummary> getOfferSummaries() {
+        try {
+            final List<OfferSummary> summaries = repository.findAllSummaries();
+            if(summaries.isEmpty())
+                throw new OfferNotFoundException("No data found.");
+            return summaries;
+        } catch (OfferNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new OfferErrorException(String.format("The offer could not be found. [%s]", e.getMessage()));
+        }
+    }
+
+    /**
+     * Method responsible for get the discount analytics of all offers:
+     * count and average discount by currency and the biggest discounts.
+     * They are read from a precomputed document, not from the offers.
+     *
+     * @return the discount analytics
+     */
+    public DiscountAnalytics getDiscountAnalytics() {
+        try {
+            return repository.findDiscountAnalytics();
+        } catch (Exception e) {
+            throw new OfferErrorException(String.format("The discount analytics could not be read. [%s]", e.getMessage()));
+        }
+    }
+
+    /**
+     * Method responsible for stream all offers straight from the database cursor,
+     * so they are not loaded in memory. The first batch is read here, then
+     * database outage and data not found are reported before anything is written.
+     * In case of database outage it should return OfferErrorException.
+     * In case of data not found it should return OfferNotFoundException.
+     *
+     * @return stream of all offers, including the expired ones. It must be closed by the caller.
+     */
+    public Stream<Offer> streamOffers() {
+        try {
+            final Stream<Offer> offers = repository.streamAll();
+            final Iterator<Offer> iterator = offers.iterator();
+            if (!iterator.hasNext()) {
+                offers.close();
+                throw new OfferNotFoundException("No data found.");
+            }
+            return StreamSupport
+                    .stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                    .onClose(offers::close);
+        } catch (OfferNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new OfferErrorException(String.format("The offer could not be found. [%s]", e.getMessage()));
+        }
+    }
+
+    /**
+     * Method responsible for get a page of the valid offers, sorted by id.
+     * In case of database outage it should return OfferErrorException.
+     * In case of data not found it should return OfferNotFoundException.
+     *
+     * @param after cursor returned by the previous page, null for the first page
+     * @param limit max number of offers of the page
+     * @return page of valid offers and the cursor of the next page
+     */
+    public OfferPage getValidOffers(final String after, final int limit) {
+        validateLimit(limit);
+        final String afterId = PageCursor.decode(after);
+        try {
+            return toPage(repository.findValidOffers(now(), afterId, limit + 1), limit);
+        } catch (OfferNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new OfferErrorException(String.format("The offer could not be found. [%s]", e.getMessage()));
+        }
+    }
+
+    /**
+     * Method responsible for get a page of all offers, sorted by id.
+     * In case of database outage it should return OfferErrorException.
+     * In case of data not found it should return OfferNotFoundException.
+     *
+     * @param after cursor returned by the previous page, null for the first page
+     * @param limit max number of offers of the page
+     * @return page of offers, including the expired ones, and the cursor of the next page
+     */
+    public OfferPage getOffers(final String after, final int limit) {
+        validateLimit(limit);
+        final String afterId = PageCursor.decode(after);
+        try {
+            return toPage(repository.findAll(afterId, limit + 1), limit);
+        } catch (OfferNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new OfferErrorException(String.format("The offer could not be found. [%s]", e.getMessage()));
+        }
+    }
+
+    /**
+     * Method responsible for search the offers by the words of their name and
+     * description, the most relevant first. A word also matches the longer ones
+     * which start with it.
+     * In case of database outage it should return OfferErrorException.
+     * In case of data not found it should return OfferNotFoundException.
+     *
+     * @param text words searched
+     * @param after cursor returned by the previous page, null for the first page
+     * @param limit max number of offers of the page
+     * @return page of offers found and the cursor of the next page
+     */
+    public OfferPage search(final String text, final String after, final int limit) {
+        if (text == null || text.trim().isEmpty())
+            throw new InvalidRequestException("The text to search is required.");
+        validateLimit(limit);
+        final int offset = offset(after);
+        try {
+            final List<Offer> offers = repository.search(text, offset, limit + 1);
+            if (offers.isEmpty())
+                throw new OfferNotFoundException("No data found.");
+            if (offers.size() <= limit)
+                return new OfferPage(offers, null);
+            return new OfferPage(new ArrayList<>(offers.subList(0, limit)), PageCursor.encode(String.valueOf(offset + limit)));
+        } catch (OfferNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new OfferErrorException(String.format("The offers could not be searched. [%s]", e.getMessage()));
+        }
+    }
+
     /**
      * Method responsible for cancel Offer and return the proper kind of exception.
      * for business exceptions is OfferNotFoundException and technical exceptions is OfferErrorException.
@@ -87,7 +355,7 @@ public class OfferManagement {
      */
     public Offer cancelOffer (final String id) {
         try {
-            final Optional<Offer> offerCanceled = repository.cancelOfferById(id);
+            final Optional<Offer> offerCanceled = write(() -> repository.cancelOfferById(id));
             return offerCanceled.orElseThrow(() -> new OfferNotFoundException("No data found."));
         } catch (OfferNotFoundException e) {
             throw e;
@@ -96,4 +364,109 @@ public class OfferManagement {
         }
     }
 
+    /**
+     * Method responsible for cancel, in one update, the non expired offers selected
+     * by ids, currency and/or name prefix. An empty filter is refused,
+     * it would cancel every offer.
+     * In case of database outage it should return OfferErrorException.
+     * In case of no offer cancelled it should return OfferNotFoundException.
+     * @param filter
+     * @return number of offers cancelled
+     */
+    public CancelReport cancelOffers(final OfferFilter filter) {
+        if (filter == null || filter.isEmpty())
+            throw new InvalidRequestException("The ids, currency or namePrefix of the offers to cancel are required.");
+        try {
+            final long cancelled = write(() -> repository.cancelOffers(filter));
+            if (cancelled == 0)
+                throw new OfferNotFoundException("No data found.");
+            return new CancelReport(cancelled);
+        } catch (OfferNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new OfferErrorException(String.format("The offers could not be cancelled. [%s]", e.getMessage()));
+        }
+    }
+
+    /**
+     * The version is incremented even when the write fails,
+     * part of it may have been applied.
+     */
+    private <T> T write(final Supplier<T> operation) {
+        try {
+            return operation.get();
+        } finally {
+            collectionVersion.increment();
+        }
+    }
+
+    private void validateLimit(final int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE)
+            throw new InvalidRequestException(String.format("The limit must be between 1 and %d.", MAX_PAGE_SIZE));
+    }
+
+    /**
+     * The results are ranked, so the cursor of a search carries the number
+     * of offers already returned instead of an id.
+     */
+    private static int offset(final String after) {
+        final String cursor = PageCursor.decode(after);
+        if (cursor == null)
+            return 0;
+        try {
+            final int offset = Integer.parseInt(cursor);
+            if (offset >= 0 && offset <= MAX_SEARCH_OFFSET)
+                return offset;
+        } catch (NumberFormatException e) {
+            // refused below
+        }
+        throw new InvalidRequestException(String.format("Invalid cursor. [%s]", after));
+    }
+
+    /**
+     * The repository is asked for one offer more than the limit,
+     * that's how it's known whether there is a next page.
+     */
+    private OfferPage toPage(final List<Offer> offers, final int limit) {
+        if (offers.isEmpty())
+            throw new OfferNotFoundException("No data found.");
+        if (offers.size() <= limit)
+            return new OfferPage(offers, null);
+        final List<Offer> page = new ArrayList<>(offers.subList(0, limit));
+        return new OfferPage(page, PageCursor.encode(page.get(limit - 1).getId()));
+    }
+
+    /**
+     * The ids are assigned before the insert, that's how each
+     * offer of the report gets its id back from a bulk write.
+     */
+    private void insertChunk(final List<Offer> offers, final List<Integer> chunk, final BatchItemResult[] results) {
+        final List<Offer> chunkOffers = new ArrayList<>(chunk.size());
+        for (final Integer index : chunk) {
+            final Offer offer = offers.get(index);
+            if (offer.getId() == null)
+                offer.setId(new ObjectId().toHexString());
+            chunkOffers.add(offer);
+        }
+
+        try {
+            final Map<Integer, String> errors = repository.insertAll(chunkOffers);
+            for (int position = 0; position < chunk.size(); position++) {
+                final int index = chunk.get(position);
+                final String error = errors.get(position);
+                results[index] = error == null
+                        ? new BatchItemResult(index, offers.get(index).getId(), BatchItemStatus.SAVED, null)
+                        : new BatchItemResult(index, offers.get(index).getId(), BatchItemStatus.FAILED,
+                                String.format("The offer could not be saved. [%s]", error));
+            }
+        } catch (Exception e) {
+            for (final Integer index : chunk)
+                results[index] = new BatchItemResult(index, offers.get(index).getId(), BatchItemStatus.FAILED,
+                        String.format("The offer could not be saved. [%s]", e.getMessage()));
+        }
+    }
+
+    private static String flightKey(final LocalDate date) {
+        return OfferTenant.current() + "/" + date;
+    }
 }
@@ -0,0 +1,151 @@
+package io.jcervelin.ideas.offer.usecases;
+
+import io.jcervelin.ideas.offer.configs.writebehind.OfferWriteBehindProperties;
+import io.jcervelin.ideas.offer.gateways.journal.OfferJournal;
+import io.jcervelin.ideas.offer.gateways.repositories.OfferRepository;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferDeadLetter;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Class responsible for the write-behind of the new offers, enabled by offer.write-behind.enabled.
+ *
+ * A new offer gets its id here, it's appended to the journal and acknowledged once the journal
+ * is on the disk. A background writer inserts the offers of the journal in Mongo in batches,
+ * then moves the version of the collection, so the lists show them after the batch is written.
+ * The offers left in the journal by a crash or a stop are written again when it starts, the
+ * ones already in Mongo fail as duplicated ids and are skipped. The offers refused with another
+ * error are parked in the dead letter collection, the batch is only committed once they are.
+ *
+ * The offers sent with an id may replace another one, they are saved synchronously, as are
+ * the new ones when the journal is full and the ones of the tenants other than the default.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class OfferWriteBehind {
+
+    private static final String DUPLICATE_KEY = "E11000";
+
+    private final OfferRepository repository;
+    private final OfferWriteBehindProperties properties;
+    private final OfferCollectionVersion collectionVersion;
+
+    private OfferJournal journal;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled())
+            return;
+        try {
+            journal = OfferJournal.open(Paths.get(properties.getJournal()), (int) properties.getJournalSize().toBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("The journal %s could not be opened.", properties.getJournal()), e);
+        }
+        if (journal.pending() > 0)
+            log.info("{} offers of the journal will be written to Mongo.", journal.pending());
+        running = true;
+        writer = new Thread(this::run, "offer-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Appends a new offer to the journal and waits until it's on the disk.
+     * @param offer valid offer
+     * @return true when the offer, with its new id, is in the journal,
+     * false when it must be saved synchronously
+     */
+    public boolean enqueue(final Offer offer) {
+        // the journal doesn't keep the tenant, the writer inserts in the collection of the default one
+        if (!running || offer.getId() != null || !OfferTenant.isDefault())
+            return false;
+        offer.setId(ObjectId.get().toHexString());
+        final OfferJournal.Entry entry = journal.append(offer);
+        if (entry == null) {
+            offer.setId(null);
+            log.warn("The journal is full, the offer will be saved synchronously.");
+            return false;
+        }
+        journal.sync(entry);
+        return true;
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (!running)
+            return;
+        running = false;
+        writer.join(properties.getShutdownTimeout().toMillis());
+        if (writer.isAlive()) {
+            writer.interrupt();
+            writer.join();
+        }
+        if (journal.pending() > 0)
+            log.warn("{} offers of the journal will be written to Mongo on the next start.", journal.pending());
+        journal.close();
+    }
+
+    /**
+     * After a stop, the writer only empties the journal while Mongo accepts the batches.
+     */
+    private void run() {
+        try {
+            while (running || journal.pending() > 0) {
+                final List<OfferJournal.Entry> batch = journal.take(properties.getBatchSize(), properties.getFlushInterval());
+                if (!batch.isEmpty() && !write(batch))
+                    return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return false when the batch was not written because the application is stopping
+     */
+    private boolean write(final List<OfferJournal.Entry> batch) throws InterruptedException {
+        final List<Offer> offers = batch.stream().map(OfferJournal.Entry::getOffer).collect(Collectors.toList());
+        while (true) {
+            try {
+                final Map<Integer, String> errors = repository.insertAll(offers);
+                final List<OfferDeadLetter> deadLetters = errors.entrySet().stream()
+                        .filter(error -> !error.getValue().contains(DUPLICATE_KEY))
+                        .map(error -> OfferDeadLetter.of(offers.get(error.getKey()), error.getValue()))
+                        .collect(Collectors.toList());
+                if (!deadLetters.isEmpty()) {
+                    repository.park(deadLetters);
+                    deadLetters.forEach(deadLetter -> log.error(
+                            "The offer {} of the journal could not be written, it's parked as a dead letter. [{}]",
+                            deadLetter.getId(), deadLetter.getError()));
+                }
+                break;
+            } catch (Exception e) {
+                log.warn("{} offers of the journal could not be written, they will be retried. [{}]", offers.size(), e.getMessage());
+                if (!running)
+                    return false;
+                TimeUnit.MILLISECONDS.sleep(properties.getRetryPause().toMillis());
+            }
+        }
+        collectionVersion.increment();
+        journal.commit(batch.get(batch.size() - 1));
+        return true;
+    }
+}
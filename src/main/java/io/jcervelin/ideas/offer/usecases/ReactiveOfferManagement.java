@@ -0,0 +1,94 @@
+package io.jcervelin.ideas.offer.usecases;
+
+import io.jcervelin.ideas.offer.gateways.repositories.ReactiveOfferRepository;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidOfferException;
+import io.jcervelin.ideas.offer.models.exceptions.OfferErrorException;
+import io.jcervelin.ideas.offer.models.exceptions.OfferNotFoundException;
+import io.jcervelin.ideas.offer.utils.OfferValidator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static java.time.LocalDate.now;
+
+/**
+ * Non-blocking version of OfferManagement, used by the reactive profile.
+ * The rules and the exceptions are the same, they are signaled as errors
+ * of the publishers instead of thrown.
+ */
+@Profile("reactive")
+@RequiredArgsConstructor
+@Component
+public class ReactiveOfferManagement {
+
+    private final ReactiveOfferRepository repository;
+    private final OfferValidator validator;
+
+    /**
+     * Method responsible for saving offers and wrap connection exceptions
+     * or any kind of issue from Mongo in a customized exception class.
+     *
+     * @param offer
+     * @return offer saved
+     */
+    public Mono<Offer> save(final Offer offer) {
+        return Mono.fromCallable(() -> {
+                    validator.validate(offer);
+                    return offer;
+                })
+                .flatMap(repository::save)
+                .onErrorMap(isNot(InvalidOfferException.class), wrap("The offer could not be saved."));
+    }
+
+    /**
+     * Method responsible for get the valid offers excluding the expired ones.
+     * In case of database outage it should signal OfferErrorException.
+     * In case of data not found it should signal OfferNotFoundException.
+     *
+     * @return valid offers, read from the database as they are requested
+     */
+    public Flux<Offer> getValidOffers() {
+        return Flux.defer(() -> repository.findValidOffers(now()))
+                .switchIfEmpty(Flux.error(new OfferNotFoundException("No data found.")))
+                .onErrorMap(isNot(OfferNotFoundException.class), wrap("The offer could not be found."));
+    }
+
+    /**
+     * Method responsible for get the offers.
+     * In case of database outage it should signal OfferErrorException.
+     * In case of data not found it should signal OfferNotFoundException.
+     *
+     * @return all offers, including the expired ones, read from the database as they are requested
+     */
+    public Flux<Offer> getOffers() {
+        return Flux.defer(repository::findAll)
+                .switchIfEmpty(Flux.error(new OfferNotFoundException("No data found.")))
+                .onErrorMap(isNot(OfferNotFoundException.class), wrap("The offer could not be found."));
+    }
+
+    /**
+     * Method responsible for cancel Offer and signal the proper kind of exception.
+     * for business exceptions is OfferNotFoundException and technical exceptions is OfferErrorException.
+     * @param id
+     * @return the offer canceled with the endDate = yesterday.
+     */
+    public Mono<Offer> cancelOffer(final String id) {
+        return Mono.defer(() -> repository.cancelOfferById(id))
+                .switchIfEmpty(Mono.error(new OfferNotFoundException("No data found.")))
+                .onErrorMap(isNot(OfferNotFoundException.class), wrap("The offer could not be cancelled."));
+    }
+
+    private static Predicate<Throwable> isNot(final Class<? extends Exception> businessException) {
+        return e -> !businessException.isInstance(e);
+    }
+
+    private static Function<Throwable, Throwable> wrap(final String message) {
+        return e -> new OfferErrorException(String.format("%s [%s]", message, e.getMessage()));
+    }
+}
@@ -0,0 +1,71 @@
+package io.jcervelin.ideas.offer.utils;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of the offer collection, incremented on every write done through
+ * OfferManagement. The list endpoints use it as ETag and Last-Modified,
+ * so a client polling an unchanged list gets a 304 without reading Mongo.
+ *
+ * The version starts from the startup time, an ETag of a previous run
+ * never matches. Writes made by other instances or straight to Mongo
+ * are only seen when the change stream is enabled, the version is local
+ * to this instance. While the change stream is broken the instance is
+ * degraded: the version can't tell whether a list changed.
+ */
+@Component
+public class OfferCollectionVersion {
+
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+    private volatile long lastModified = System.currentTimeMillis();
+    private volatile boolean degraded;
+
+    public synchronized void increment() {
+        version.incrementAndGet();
+        // Last-Modified has seconds precision and never goes past the clock, the writes
+        // of the same second are told apart by the ETag, which has the version
+        lastModified = Math.max(System.currentTimeMillis(), lastModified);
+    }
+
+    /**
+     * The version is shared by the tenants, the ETag names the tenant,
+     * so the list of a tenant is never taken for the list of another.
+     * @param view name of the list and its representation, for instance all-summary
+     * @return ETag of the current version of the list of the current tenant
+     */
+    public String etag(final String view) {
+        return OfferTenant.isDefault()
+                ? String.format("%s-%d-%s", instance, version.get(), view)
+                : String.format("%s-%d-%s-%s", instance, version.get(), OfferTenant.current(), view);
+    }
+
+    /**
+     * @return true while the writes of the other instances may be missed,
+     * the lists are then neither cached nor answered with a 304
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public void setDegraded(final boolean degraded) {
+        this.degraded = degraded;
+    }
+
+    public long lastModified() {
+        return lastModified;
+    }
+
+    /**
+     * The valid offers also change at midnight, without any write.
+     * @param date
+     * @return last modification of the valid offers of the date
+     */
+    public long lastModified(final LocalDate date) {
+        return Math.max(lastModified, date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+}
@@ -0,0 +1,75 @@
+package io.jcervelin.ideas.offer.utils;
+
+import java.util.function.Supplier;
+
+/**
+ * Tenant of the current thread, the marketplace whose offers are served.
+ *
+ * The collections of the offers are named after it: the default tenant keeps the
+ * original names, the others get their own collections with the tenant as suffix,
+ * for instance offers.acme, so the scans of one tenant never read the offers of another.
+ * The name of the collection of the documents is evaluated on every operation,
+ * see the Document annotation of the Offer class.
+ *
+ * It's set by the http interceptor for the duration of a request. The threads of the
+ * application, the jobs and the listeners, run as the default tenant unless they set it.
+ */
+public final class OfferTenant {
+
+    public static final String DEFAULT = "default";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private OfferTenant() {
+    }
+
+    public static String current() {
+        final String tenant = CURRENT.get();
+        return tenant == null ? DEFAULT : tenant;
+    }
+
+    public static boolean isDefault() {
+        return DEFAULT.equals(current());
+    }
+
+    /**
+     * @param base name of the collection of the default tenant
+     * @return name of the collection of the current tenant
+     */
+    public static String collection(final String base) {
+        return isDefault() ? base : base + "." + current();
+    }
+
+    public static void set(final String tenant) {
+        CURRENT.set(tenant);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Method responsible for run a task as the tenant given, then restore the previous one.
+     * @param tenant
+     * @param task
+     */
+    public static <T> T call(final String tenant, final Supplier<T> task) {
+        final String previous = CURRENT.get();
+        CURRENT.set(tenant);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null)
+                CURRENT.remove();
+            else
+                CURRENT.set(previous);
+        }
+    }
+
+    public static void run(final String tenant, final Runnable task) {
+        call(tenant, () -> {
+            task.run();
+            return null;
+        });
+    }
+}
@@ -1,27 +1,120 @@
 package io.jcervelin.ideas.offer.utils;
 
+import io.jcervelin.ideas.offer.configs.validation.OfferValidationProperties;
 import io.jcervelin.ideas.offer.models.Offer;
 import io.jcervelin.ideas.offer.models.exceptions.InvalidOfferException;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
+import javax.validation.metadata.BeanDescriptor;
+import javax.validation.metadata.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-@RequiredArgsConstructor
+/**
+ * Class responsible for validate the offers before they are written.
+ *
+ * The constraints of the annotations of the offer are checked by plain code, a valid
+ * offer is accepted without allocating anything. The Bean Validation validator is
+ * only used when it's disabled by offer.validation.compiled, or when the annotations
+ * of the offer are not the ones coded here, so a new constraint is never skipped.
+ * The business rules, between the fields, are checked the same way in both cases.
+ */
+@Slf4j
 @Component
 public class OfferValidator {
+
+    public static final String OFFER_PRICE_ABOVE_PRICE = "The offerPrice must not be greater than the price";
+    public static final String END_BEFORE_START = "The endOffer must not be before the startOffer";
+    public static final String INVALID_CURRENCY = "The currency must be an ISO 4217 code";
+
+    private static final Set<String> COMPILED_PROPERTIES = new HashSet<>(Arrays.asList("name", "startOffer"));
+    private static final Set<String> CURRENCIES = Currency.getAvailableCurrencies().stream()
+            .map(Currency::getCurrencyCode)
+            .collect(Collectors.toSet());
+
     private final Validator validator;
+    private final boolean compiled;
+
+    public OfferValidator(final Validator validator, final OfferValidationProperties properties) {
+        this.validator = validator;
+        this.compiled = properties.isCompiled() && isCompiled(validator.getConstraintsForClass(Offer.class));
+    }
 
     public void validate(final Offer offer) {
-        final Set<ConstraintViolation<Offer>> validations = validator.validate(offer);
-        if(!validations.isEmpty())
-            throw new InvalidOfferException(
-                validations
-                        .stream()
-                        .map(ConstraintViolation::getMessage)
-                        .collect(Collectors.joining(" - ")));
+        if (compiled && hasName(offer) && hasStartOffer(offer) && followsTheBusinessRules(offer))
+            return;
+        final List<String> messages = new ArrayList<>();
+        if (compiled) {
+            if (!hasName(offer))
+                messages.add(Offer.NAME_REQUIRED);
+            if (!hasStartOffer(offer))
+                messages.add(Offer.START_OFFER_REQUIRED);
+        } else {
+            for (final ConstraintViolation<Offer> violation : validator.validate(offer))
+                messages.add(violation.getMessage());
+        }
+        if (!isDiscount(offer))
+            messages.add(OFFER_PRICE_ABOVE_PRICE);
+        if (!isPeriod(offer))
+            messages.add(END_BEFORE_START);
+        if (!isIsoCurrency(offer))
+            messages.add(INVALID_CURRENCY);
+        if (!messages.isEmpty())
+            throw new InvalidOfferException(String.join(" - ", messages));
+    }
+
+    /**
+     * The code checks only @NotEmpty on the name and @NotNull on the startOffer.
+     */
+    private static boolean isCompiled(final BeanDescriptor offer) {
+        final Set<String> properties = offer.getConstrainedProperties().stream()
+                .map(PropertyDescriptor::getPropertyName)
+                .collect(Collectors.toSet());
+        if (offer.getConstraintDescriptors().isEmpty() && properties.equals(COMPILED_PROPERTIES)
+                && offer.getConstraintsForProperty("name").getConstraintDescriptors().size() == 1
+                && offer.getConstraintsForProperty("startOffer").getConstraintDescriptors().size() == 1)
+            return true;
+        log.warn("The constraints of the offer changed, they will be checked by the Bean Validation validator. [{}]", properties);
+        return false;
+    }
+
+    private static boolean hasName(final Offer offer) {
+        return offer.getName() != null && !offer.getName().isEmpty();
+    }
+
+    private static boolean hasStartOffer(final Offer offer) {
+        return offer.getStartOffer() != null;
+    }
+
+    private static boolean followsTheBusinessRules(final Offer offer) {
+        return isDiscount(offer) && isPeriod(offer) && isIsoCurrency(offer);
+    }
+
+    private static boolean isDiscount(final Offer offer) {
+        return offer.getOfferPrice() <= offer.getPrice();
+    }
+
+    /**
+     * The endOffer is optional, but an offer without it is never valid:
+     * the validity rule and its queries need an end on or after the date.
+     */
+    private static boolean isPeriod(final Offer offer) {
+        return offer.getStartOffer() == null || offer.getEndOffer() == null
+                || !offer.getEndOffer().isBefore(offer.getStartOffer());
+    }
+
+    /**
+     * The currency is optional.
+     */
+    private static boolean isIsoCurrency(final Offer offer) {
+        return offer.getCurrency() == null || CURRENCIES.contains(offer.getCurrency());
     }
 }
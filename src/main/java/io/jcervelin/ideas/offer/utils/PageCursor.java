@@ -0,0 +1,32 @@
+package io.jcervelin.ideas.offer.utils;
+
+import io.jcervelin.ideas.offer.models.exceptions.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursor used by the paginated endpoints. It carries the id
+ * of the last offer of the page, the next page starts after it, or
+ * the number of offers already returned by a search.
+ */
+public final class PageCursor {
+
+    private PageCursor() {
+    }
+
+    public static String encode(final String id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String decode(final String cursor) {
+        if (cursor == null || cursor.isEmpty())
+            return null;
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException(String.format("Invalid cursor. [%s]", cursor));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package io.jcervelin.ideas.offer.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces the concurrent calls of the same key: the first one runs the call,
+ * the ones which arrive while it's in flight wait for it and get the same result,
+ * or the same exception. A call which arrives after it's done runs it again,
+ * nothing is cached here.
+ *
+ * The result is shared by the callers, it must not be changed by them.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * @param key of the call, the calls with equal keys must return the same result
+     * @param call run when there's no call of the key in flight
+     * @return result of the call in flight or of this one
+     */
+    public V call(final K key, final Supplier<V> call) {
+        final CompletableFuture<V> flight = new CompletableFuture<>();
+        final CompletableFuture<V> inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight != null)
+            return join(inFlight);
+        try {
+            final V result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return number of calls in flight
+     */
+    public int inFlight() {
+        return flights.size();
+    }
+
+    private static <V> V join(final CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.jcervelin.ideas.offer.configs.json;
+
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public class PooledBufferRecyclerTest {
+
+    private final PooledBufferRecycler target = new PooledBufferRecycler(1, 16 * 1024);
+
+    @Test
+    public void releasedBufferShouldBeReusedByAnotherThread() throws Exception {
+        // GIVEN a buffer released by a thread
+        final byte[] released = target.allocByteBuffer(BufferRecycler.BYTE_WRITE_ENCODING_BUFFER);
+        final Thread thread = new Thread(() -> target.releaseByteBuffer(BufferRecycler.BYTE_WRITE_ENCODING_BUFFER, released));
+        thread.start();
+        thread.join();
+
+        // WHEN another thread takes one
+        final byte[] buffer = target.allocByteBuffer(BufferRecycler.BYTE_WRITE_ENCODING_BUFFER);
+
+        // THEN it should be the same
+        Assertions.assertThat(buffer).isSameAs(released);
+    }
+
+    @Test
+    public void bufferBiggerThanTheMaxSizeShouldNotBeKept() {
+        // GIVEN a big buffer released
+        final char[] big = target.allocCharBuffer(BufferRecycler.CHAR_TEXT_BUFFER, 32 * 1024);
+        target.releaseCharBuffer(BufferRecycler.CHAR_TEXT_BUFFER, big);
+
+        // WHEN a buffer is taken
+        final char[] buffer = target.allocCharBuffer(BufferRecycler.CHAR_TEXT_BUFFER);
+
+        // THEN a new one should be allocated
+        Assertions.assertThat(buffer).isNotSameAs(big);
+    }
+
+    @Test
+    public void bufferSmallerThanTheMinSizeShouldNotBeReused() {
+        // GIVEN a buffer of the default size released
+        final byte[] released = target.allocByteBuffer(BufferRecycler.BYTE_WRITE_CONCAT_BUFFER);
+        target.releaseByteBuffer(BufferRecycler.BYTE_WRITE_CONCAT_BUFFER, released);
+
+        // WHEN a bigger one is needed
+        final byte[] buffer = target.allocByteBuffer(BufferRecycler.BYTE_WRITE_CONCAT_BUFFER, released.length + 1);
+
+        // THEN a new one should be allocated with the size asked
+        Assertions.assertThat(buffer).isNotSameAs(released).hasSize(released.length + 1);
+    }
+}
@@ -0,0 +1,110 @@
+package io.jcervelin.ideas.offer.configs.metrics;
+
+import io.jcervelin.ideas.offer.configs.batch.OfferBatchProperties;
+import io.jcervelin.ideas.offer.gateways.http.advices.ExceptionControllerAdvice;
+import io.jcervelin.ideas.offer.gateways.repositories.OfferRepository;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.exceptions.OfferErrorException;
+import io.jcervelin.ideas.offer.models.exceptions.OfferNotFoundException;
+import io.jcervelin.ideas.offer.usecases.OfferManagement;
+import io.jcervelin.ideas.offer.usecases.OfferWriteBehind;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
+import io.jcervelin.ideas.offer.utils.OfferValidator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OfferMetricsAspectTest {
+
+    @Mock
+    private OfferRepository offerRepository;
+
+    @Mock
+    private OfferValidator offerValidator;
+
+    @Mock
+    private OfferWriteBehind writeBehind;
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private OfferManagement target;
+
+    @Before
+    public void setUp() {
+        final AspectJProxyFactory factory = new AspectJProxyFactory(
+                new OfferManagement(offerRepository, offerValidator, new OfferBatchProperties(), new OfferCollectionVersion(), writeBehind));
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new OfferMetricsAspect(registry));
+        target = factory.getProxy();
+    }
+
+    @Test
+    public void useCaseShouldBeTimedAndTheResultSizeRecorded() {
+        // GIVEN 2 valid offers
+        doReturn(Arrays.asList(new Offer(), new Offer())).when(offerRepository).findValidOffers(any(LocalDate.class));
+
+        // WHEN the valid offers are requested
+        target.getValidOffers();
+
+        // THEN the timer should have the success outcome and the size should be recorded
+        Assertions.assertThat(registry.get(OfferMetricsAspect.USECASE_TIMER)
+                .tags("method", "getValidOffers", "outcome", OfferMetricsAspect.SUCCESS)
+                .timer().count()).isEqualTo(1);
+        Assertions.assertThat(registry.get(OfferMetricsAspect.RESULT_SIZE)
+                .tag("method", "getValidOffers")
+                .summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    public void useCaseShouldBeTaggedByTheExceptionThrown() {
+        // GIVEN an empty database
+        doReturn(Collections.emptyList()).when(offerRepository).findValidOffers(any(LocalDate.class));
+        thrown.expect(OfferNotFoundException.class);
+
+        try {
+            // WHEN the valid offers are requested
+            target.getValidOffers();
+        } finally {
+            // THEN the timer should have the exception as outcome
+            Assertions.assertThat(registry.get(OfferMetricsAspect.USECASE_TIMER)
+                    .tags("method", "getValidOffers", "outcome", "OfferNotFoundException")
+                    .timer().count()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void errorResponsesShouldBeCounted() {
+        // GIVEN the advice behind the aspect
+        final AspectJProxyFactory factory = new AspectJProxyFactory(new ExceptionControllerAdvice());
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new OfferMetricsAspect(registry));
+        final ExceptionControllerAdvice advice = factory.getProxy();
+
+        // WHEN an error is handled
+        advice.offerErrorException(new OfferErrorException("Mongo is outage."));
+
+        // THEN it should be counted by exception and status
+        Assertions.assertThat(registry.get(OfferMetricsAspect.ERRORS)
+                .tags("exception", "OfferErrorException", "status", "500")
+                .counter().count()).isEqualTo(1);
+    }
+}
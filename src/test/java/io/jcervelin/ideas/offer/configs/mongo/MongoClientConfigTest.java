@@ -0,0 +1,117 @@
+package io.jcervelin.ideas.offer.configs.mongo;
+
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ReadPreference;
+import com.mongodb.TaggableReadPreference;
+import io.jcervelin.ideas.offer.configs.metrics.MongoPoolMetrics;
+import io.jcervelin.ideas.offer.configs.threads.VirtualThreadProperties;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MongoClientConfigTest {
+
+    @Mock
+    private MongoPoolMetrics mongoPoolMetrics;
+
+    private OfferMongoProperties properties;
+
+    private final MongoClientConfig target = new MongoClientConfig();
+
+    @Before
+    public void setUp() {
+        properties = new OfferMongoProperties();
+    }
+
+    @Test
+    public void mongoClientOptionsShouldHaveThePoolAndTheTimeoutsConfigured() {
+        // GIVEN a smaller pool and shorter timeouts than the ones of the driver
+        properties.setMinPoolSize(5);
+        properties.setMaxPoolSize(20);
+        properties.setWaitQueueMultiplier(10);
+        properties.setMaxWaitTime(Duration.ofSeconds(2));
+        properties.setSocketTimeout(Duration.ofSeconds(5));
+        properties.setServerSelectionTimeout(Duration.ofSeconds(3));
+
+        // WHEN the options are built
+        final MongoClientOptions result = target.mongoClientOptions(mongoPoolMetrics, new VirtualThreadProperties(), properties);
+
+        // THEN the pool should be limited and the timeouts applied
+        Assertions.assertThat(result.getMinConnectionsPerHost()).isEqualTo(5);
+        Assertions.assertThat(result.getConnectionsPerHost()).isEqualTo(20);
+        Assertions.assertThat(result.getThreadsAllowedToBlockForConnectionMultiplier()).isEqualTo(10);
+        Assertions.assertThat(result.getMaxWaitTime()).isEqualTo(2000);
+        Assertions.assertThat(result.getSocketTimeout()).isEqualTo(5000);
+        Assertions.assertThat(result.getServerSelectionTimeout()).isEqualTo(3000);
+        Assertions.assertThat(result.getReadPreference()).isEqualTo(ReadPreference.primary());
+    }
+
+    @Test
+    public void defaultOptionsShouldBeTheOnesOfTheDriver() {
+        // WHEN the options are built without settings
+        final MongoClientOptions result = target.mongoClientOptions(mongoPoolMetrics, new VirtualThreadProperties(), properties);
+
+        // THEN they should not change the behaviour of the driver, apart from the pool listener
+        final MongoClientOptions driver = MongoClientOptions.builder().build();
+        Assertions.assertThat(result.getMinConnectionsPerHost()).isEqualTo(driver.getMinConnectionsPerHost());
+        Assertions.assertThat(result.getConnectionsPerHost()).isEqualTo(driver.getConnectionsPerHost());
+        Assertions.assertThat(result.getThreadsAllowedToBlockForConnectionMultiplier())
+                .isEqualTo(driver.getThreadsAllowedToBlockForConnectionMultiplier());
+        Assertions.assertThat(result.getMaxWaitTime()).isEqualTo(driver.getMaxWaitTime());
+        Assertions.assertThat(result.getMaxConnectionIdleTime()).isEqualTo(driver.getMaxConnectionIdleTime());
+        Assertions.assertThat(result.getConnectTimeout()).isEqualTo(driver.getConnectTimeout());
+        Assertions.assertThat(result.getSocketTimeout()).isEqualTo(driver.getSocketTimeout());
+        Assertions.assertThat(result.getServerSelectionTimeout()).isEqualTo(driver.getServerSelectionTimeout());
+    }
+
+    @Test
+    public void virtualThreadsShouldKeepTheBiggerWaitQueueMultiplier() {
+        // GIVEN virtual threads on
+        final VirtualThreadProperties virtualThreadProperties = new VirtualThreadProperties();
+        virtualThreadProperties.setEnabled(true);
+        virtualThreadProperties.setConnectionWaitMultiplier(100);
+
+        // WHEN the options are built with a smaller and with a bigger wait queue multiplier
+        properties.setWaitQueueMultiplier(10);
+        final MongoClientOptions smaller = target.mongoClientOptions(mongoPoolMetrics, virtualThreadProperties, properties);
+        properties.setWaitQueueMultiplier(500);
+        final MongoClientOptions bigger = target.mongoClientOptions(mongoPoolMetrics, virtualThreadProperties, properties);
+
+        // THEN neither setting should shrink the wait queue of the other
+        Assertions.assertThat(smaller.getThreadsAllowedToBlockForConnectionMultiplier()).isEqualTo(100);
+        Assertions.assertThat(bigger.getThreadsAllowedToBlockForConnectionMultiplier()).isEqualTo(500);
+    }
+
+    @Test
+    public void listReadPreferenceShouldHaveTheMaxStaleness() {
+        // GIVEN the lists read from the secondaries up to 2 minutes behind
+        properties.setListReadPreference("secondaryPreferred");
+        properties.setListMaxStaleness(Duration.ofMinutes(2));
+
+        // WHEN the read preference of the lists is built
+        final ReadPreference result = MongoClientConfig.listReadPreference(properties);
+
+        // THEN the secondaries too far behind should be skipped
+        Assertions.assertThat(result).isEqualTo(ReadPreference.secondaryPreferred(120, TimeUnit.SECONDS));
+        Assertions.assertThat(((TaggableReadPreference) result).getMaxStaleness(TimeUnit.SECONDS)).isEqualTo(120);
+    }
+
+    @Test
+    public void primaryListReadPreferenceShouldIgnoreTheMaxStaleness() {
+        // GIVEN a max staleness without secondaries
+        properties.setListMaxStaleness(Duration.ofMinutes(2));
+
+        // WHEN the read preference of the lists is built
+        final ReadPreference result = MongoClientConfig.listReadPreference(properties);
+
+        // THEN the lists should be read from the primary
+        Assertions.assertThat(result).isEqualTo(ReadPreference.primary());
+    }
+}
@@ -0,0 +1,50 @@
+package io.jcervelin.ideas.offer.configs.threads;
+
+import org.assertj.core.api.Assertions;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class VirtualThreadConfigTest {
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    @AfterClass
+    public static void tearDown() {
+        EXECUTOR.shutdownNow();
+    }
+
+    @Test
+    public void newVirtualThreadPerTaskExecutorShouldUseTheFactoryOfTheJdk() {
+        // GIVEN a Java which has the factory of the virtual threads
+
+        // WHEN the executor is looked up
+        final ExecutorService result = VirtualThreadConfig.newVirtualThreadPerTaskExecutor(Java21Executors.class);
+
+        // THEN the executor of the factory should be used
+        Assertions.assertThat(result).isSameAs(EXECUTOR);
+    }
+
+    @Test
+    public void newVirtualThreadPerTaskExecutorShouldNotStartOnAnOlderJava() {
+        // GIVEN a Java without the factory of the virtual threads
+
+        // WHEN the executor is looked up
+        final Throwable result = Assertions.catchThrowable(() -> VirtualThreadConfig.newVirtualThreadPerTaskExecutor(Object.class));
+
+        // THEN the application should not start on platform threads without saying why
+        Assertions.assertThat(result)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageStartingWith("offer.virtual-threads.enabled needs Java 21 or later, running on ")
+                .hasCauseInstanceOf(NoSuchMethodException.class);
+    }
+
+    public static class Java21Executors {
+
+        public static ExecutorService newVirtualThreadPerTaskExecutor() {
+            return EXECUTOR;
+        }
+    }
+}
@@ -3,8 +3,15 @@ package io.jcervelin.ideas.offer.gateways.http;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.jcervelin.ideas.offer.OfferApplication;
+import io.jcervelin.ideas.offer.configs.json.SmileParser;
+import io.jcervelin.ideas.offer.models.BatchItemStatus;
+import io.jcervelin.ideas.offer.models.BatchReport;
+import io.jcervelin.ideas.offer.models.DiscountAnalytics;
 import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferPage;
+import io.jcervelin.ideas.offer.models.OfferSummary;
 import io.jcervelin.ideas.offer.models.exceptions.ErrorResponse;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
 import org.assertj.core.api.Assertions;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -12,23 +19,34 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static br.com.six2six.fixturefactory.Fixture.from;
 import static br.com.six2six.fixturefactory.loader.FixtureFactoryLoader.loadTemplates;
+import static io.jcervelin.ideas.offer.templates.OfferTemplate.IVORY_PIANO_FROM_100_TO_70_EXPIRED;
 import static io.jcervelin.ideas.offer.templates.OfferTemplate.IVORY_PIANO_FROM_100_TO_70_VALID;
 import static io.jcervelin.ideas.offer.templates.OfferTemplate.WOODEN_CABINET_FROM_60_TO_40;
+import static java.util.Arrays.asList;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -40,6 +58,7 @@ public class OfferControllerIT {
     private static String TEMPLATE_PACKAGE = "io.jcervelin.ideas.offer.templates";
     private static String ENDPOINT = "/api/offers";
     private static String ALL_OFFERS = ENDPOINT + "/all";
+    private static String SEARCH = ENDPOINT + "/search";
 
     @Autowired
     private WebApplicationContext webAppContext;
@@ -50,6 +69,12 @@ public class OfferControllerIT {
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    @Autowired
+    private OfferCollectionVersion collectionVersion;
+
+    @LocalServerPort
+    private int port;
+
     private MockMvc mockMvc;
 
 
@@ -88,6 +113,164 @@ public class OfferControllerIT {
         Assertions.assertThat(results).containsExactly(ivoryPiano);
     }
 
+    @Test
+    public void getValidOffersSummaryShouldReturnOnlyTheSummaryFields() throws Exception {
+        // GIVEN 1 valid offer saved
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        mongoTemplate.save(ivoryPiano);
+
+        // WHEN the summary view is requested
+        final MvcResult mvcResult = mockMvc.perform(get(ENDPOINT).param("view", "summary"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // THEN the dates and the description should not be returned
+        final String content = mvcResult.getResponse().getContentAsString();
+        final List<OfferSummary> results = objectMapper.readValue(content, new TypeReference<List<OfferSummary>>() {});
+        Assertions.assertThat(results).containsExactly(OfferSummary.of(ivoryPiano));
+        Assertions.assertThat(content).doesNotContain("description", "startOffer", "endOffer");
+    }
+
+    @Test
+    public void getDiscountAnalyticsShouldReturnTheDiscountsByCurrency() throws Exception {
+        // GIVEN a piano from 100 to 70 and a cabinet from 60 to 40 saved
+        mongoTemplate.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        mongoTemplate.save(from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40));
+
+        // WHEN the analytics are requested
+        final MvcResult mvcResult = mockMvc.perform(get(ENDPOINT + "/analytics"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // THEN the average discount and the ranking should be returned
+        final DiscountAnalytics analytics = objectMapper.readValue(
+                mvcResult.getResponse().getContentAsString(), DiscountAnalytics.class);
+        Assertions.assertThat(analytics.getCount()).isEqualTo(2);
+        Assertions.assertThat(analytics.getCurrencies().get("GBP").getAverageDiscount()).isEqualTo(25.0);
+        Assertions.assertThat(analytics.getTopDiscounts()).extracting("name")
+                .containsExactly("Ivory Piano from 100 to 70", "Wooden Cabinet from 60 to 40");
+    }
+
+    @Test
+    public void getValidOffersWithTheCurrentETagShouldReturnNotModified() throws Exception {
+        // GIVEN the ETag of the valid offers
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        final MvcResult saved = mockMvc.perform(post(ENDPOINT)
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(objectMapper.writeValueAsBytes(ivoryPiano)))
+                .andExpect(status().isOk())
+                .andReturn();
+        final String id = objectMapper.readValue(saved.getResponse().getContentAsByteArray(), Offer.class).getId();
+        final MvcResult first = mockMvc.perform(get(ENDPOINT))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn();
+        final String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        // WHEN the list is requested with the same ETag
+        // THEN a 304 without body should be returned
+        mockMvc.perform(get(ENDPOINT).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // AND after a write the ETag should not match anymore
+        mockMvc.perform(put(ENDPOINT + "/" + id)).andExpect(status().isOk());
+        mockMvc.perform(get(ENDPOINT).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void getValidOffersAsSmileShouldHaveAnotherETag() throws Exception {
+        // GIVEN the ETag of the valid offers as JSON
+        mongoTemplate.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        final String json = mockMvc.perform(get(ENDPOINT).accept(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // WHEN they are requested as Smile with that ETag
+        final MvcResult smile = mockMvc.perform(get(ENDPOINT).accept(SmileParser.APPLICATION_SMILE)
+                .header(HttpHeaders.IF_NONE_MATCH, json))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn();
+
+        // THEN the Smile list should be sent with its own ETag
+        Assertions.assertThat(smile.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(json);
+        Assertions.assertThat(smile.getResponse().getContentType()).startsWith(SmileParser.APPLICATION_SMILE_VALUE);
+    }
+
+    @Test
+    public void lastModifiedShouldOnlyBeSentOnceTheSecondOfTheLastWriteIsOver() throws Exception {
+        // GIVEN an offer just saved
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        final MvcResult saved = mockMvc.perform(post(ENDPOINT)
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(objectMapper.writeValueAsBytes(ivoryPiano)))
+                .andExpect(status().isOk())
+                .andReturn();
+        final String id = objectMapper.readValue(saved.getResponse().getContentAsByteArray(), Offer.class).getId();
+
+        // WHEN the list is requested once the second of the write is over
+        Thread.sleep(1_000);
+        final String lastModified = mockMvc.perform(get(ENDPOINT))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+
+        // THEN it should only be revalidated until the next write
+        mockMvc.perform(get(ENDPOINT).header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(put(ENDPOINT + "/" + id)).andExpect(status().isOk());
+        mockMvc.perform(get(ENDPOINT).header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void getValidOffersWhileDegradedShouldNotReturnNotModified() throws Exception {
+        // GIVEN the ETag of the valid offers and then a broken change stream
+        mongoTemplate.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        final String etag = mockMvc.perform(get(ENDPOINT)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        collectionVersion.setDegraded(true);
+        try {
+            // WHEN the list is requested with the same ETag
+            // THEN it should be sent again, without ETag nor Last-Modified
+            mockMvc.perform(get(ENDPOINT).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+                    .andExpect(header().doesNotExist(HttpHeaders.LAST_MODIFIED));
+        } finally {
+            collectionVersion.setDegraded(false);
+        }
+    }
+
+    @Test
+    public void getValidOffersOnADateShouldReturnTheOffersValidOnThatDate() throws Exception {
+        // GIVEN a cabinet valid until 10/12/2018
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        mongoTemplate.save(cabinet);
+
+        // WHEN the offers valid on its last day are requested
+        final MvcResult mvcResult = mockMvc.perform(get(ENDPOINT).param("validOn", "10/12/2018"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // THEN the cabinet should be returned, without a next page
+        final OfferPage page = objectMapper.readValue(mvcResult.getResponse().getContentAsByteArray(), OfferPage.class);
+        Assertions.assertThat(page.getOffers()).containsExactly(cabinet);
+        Assertions.assertThat(page.getNext()).isNull();
+
+        // AND nothing should be valid on the day after
+        mockMvc.perform(get(ENDPOINT).param("validOn", "11/12/2018"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void getValidOffersOnAnInvalidDateShouldReturnBadRequest() throws Exception {
+        // GIVEN a date out of the pattern dd/MM/yyyy
+        // WHEN the offers valid on it are requested
+        // THEN a status 400 should be returned
+        mockMvc.perform(get(ENDPOINT).param("validOn", "2018-12-10"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void getValidOffersShouldReturnOnlyValidOffers() throws Exception {
         // GIVEN 1 valid offer and 1 expired offer saved
@@ -316,4 +499,214 @@ public class OfferControllerIT {
         Assertions.assertThat(result.getStatus().getReasonPhrase()).isEqualTo("No Content");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void getOffersPageShouldReturnTheNextCursorUntilTheLastPage() throws Exception {
+        // GIVEN 2 offers saved
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        mongoTemplate.save(ivoryPiano);
+        final Offer cabinetExpired = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        mongoTemplate.save(cabinetExpired);
+
+        // WHEN the first page of one offer is requested
+        final MvcResult firstPage = mockMvc.perform(get(ALL_OFFERS).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andReturn();
+        final OfferPage first = objectMapper.readValue(firstPage.getResponse().getContentAsByteArray(), OfferPage.class);
+
+        // AND the next page is requested with the cursor returned
+        final MvcResult secondPage = mockMvc.perform(get(ALL_OFFERS).param("limit", "1").param("after", first.getNext()))
+                .andExpect(status().isOk())
+                .andReturn();
+        final OfferPage second = objectMapper.readValue(secondPage.getResponse().getContentAsByteArray(), OfferPage.class);
+
+        // THEN each page should have one offer in the insertion order and the last one no cursor
+        Assertions.assertThat(first.getOffers()).containsExactly(ivoryPiano);
+        Assertions.assertThat(second.getOffers()).containsExactly(cabinetExpired);
+        Assertions.assertThat(second.getNext()).isNull();
+    }
+
+    @Test
+    public void searchOffersShouldPageThroughTheOffersWithAllTheWords() throws Exception {
+        // GIVEN 2 pianos and a cabinet saved
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        mongoTemplate.save(ivoryPiano);
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        mongoTemplate.save(cabinet);
+        final Offer pianoExpired = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_EXPIRED);
+        mongoTemplate.save(pianoExpired);
+
+        // WHEN the first page of one offer with the words is requested
+        final MvcResult firstPage = mockMvc.perform(get(SEARCH).param("q", "fancy PIANO").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andReturn();
+        final OfferPage first = objectMapper.readValue(firstPage.getResponse().getContentAsByteArray(), OfferPage.class);
+
+        // AND the next page is requested with the cursor returned
+        final MvcResult secondPage = mockMvc.perform(get(SEARCH).param("q", "fancy PIANO").param("limit", "1").param("after", first.getNext()))
+                .andExpect(status().isOk())
+                .andReturn();
+        final OfferPage second = objectMapper.readValue(secondPage.getResponse().getContentAsByteArray(), OfferPage.class);
+
+        // THEN only the pianos should be found, including the expired one, and the last page should have no cursor
+        Assertions.assertThat(first.getOffers()).containsExactly(ivoryPiano);
+        Assertions.assertThat(second.getOffers()).containsExactly(pianoExpired);
+        Assertions.assertThat(second.getNext()).isNull();
+    }
+
+    @Test
+    public void offersOfATenantShouldBeKeptApartFromTheOthers() throws Exception {
+        // GIVEN 1 valid offer of the default tenant
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        mongoTemplate.save(ivoryPiano);
+
+        // WHEN the tenant acme saves another one
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        cabinet.setEndOffer(LocalDate.now().plusDays(1));
+        final MvcResult saved = mockMvc.perform(post(ENDPOINT).header("X-Tenant", "acme")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsBytes(cabinet)))
+                .andExpect(status().isOk())
+                .andReturn();
+        final Offer cabinetSaved = objectMapper.readValue(saved.getResponse().getContentAsByteArray(), Offer.class);
+
+        // THEN each tenant should only list its own offers, stored in its own collection
+        final MvcResult acme = mockMvc.perform(get(ENDPOINT).header("X-Tenant", "acme"))
+                .andExpect(status().isOk())
+                .andReturn();
+        final MvcResult standard = mockMvc.perform(get(ENDPOINT))
+                .andExpect(status().isOk())
+                .andReturn();
+        final List<Offer> acmeOffers = objectMapper.readValue(acme.getResponse().getContentAsByteArray(), new TypeReference<List<Offer>>() {});
+        final List<Offer> defaultOffers = objectMapper.readValue(standard.getResponse().getContentAsByteArray(), new TypeReference<List<Offer>>() {});
+        Assertions.assertThat(acmeOffers).containsExactly(cabinetSaved);
+        Assertions.assertThat(defaultOffers).containsExactly(ivoryPiano);
+        Assertions.assertThat(mongoTemplate.findAll(Offer.class, "offers.acme")).containsExactly(cabinetSaved);
+    }
+
+    @Test
+    public void unknownTenantShouldReturnBadRequest() throws Exception {
+        // WHEN a tenant not configured lists the offers
+        final MvcResult mvcResult = mockMvc.perform(get(ENDPOINT).header("X-Tenant", "unknown"))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+
+        // THEN no collection should be read and the tenant should be reported
+        final ErrorResponse result = objectMapper.readValue(mvcResult.getResponse().getContentAsByteArray(), ErrorResponse.class);
+        Assertions.assertThat(result.getMessage()).isEqualTo("Unknown tenant. [unknown]");
+    }
+
+    @Test
+    public void saveBatchShouldSaveTheValidOffersSentAsNdjson() throws Exception {
+        // GIVEN a valid offer and another one without name, one per line
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        cabinet.setName(null);
+        final String body = objectMapper.writeValueAsString(ivoryPiano) + "\n" + objectMapper.writeValueAsString(cabinet) + "\n";
+
+        // WHEN the batch endpoint is called
+        final MvcResult mvcResult = mockMvc.perform(post(ENDPOINT + "/batch")
+                .contentType("application/x-ndjson")
+                .content(body.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // THEN the report should have the result of each offer
+        final BatchReport result = objectMapper.readValue(mvcResult.getResponse().getContentAsByteArray(), BatchReport.class);
+        Assertions.assertThat(result.getSaved()).isEqualTo(1);
+        Assertions.assertThat(result.getItems())
+                .extracting("status")
+                .containsExactly(BatchItemStatus.SAVED, BatchItemStatus.INVALID);
+
+        // AND only the valid offer should be in the database
+        final List<Offer> offers = mongoTemplate.findAll(Offer.class);
+        Assertions.assertThat(offers).hasSize(1);
+        Assertions.assertThat(offers.get(0).getId()).isEqualTo(result.getItems().get(0).getId());
+    }
+
+    @Test
+    public void getValidOffersAsSmileShouldWriteTheDatesAsEpochDays() throws Exception {
+        // GIVEN 1 valid offer saved
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        mongoTemplate.save(ivoryPiano);
+
+        // WHEN the offers are requested as Smile
+        final MvcResult mvcResult = mockMvc.perform(get(ENDPOINT).accept(SmileParser.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(SmileParser.APPLICATION_SMILE))
+                .andReturn();
+
+        // THEN the offer should be read back with the epoch days of its dates
+        final ObjectMapper smileMapper = SmileParser.smileObjectMapper();
+        final byte[] content = mvcResult.getResponse().getContentAsByteArray();
+        final List<Offer> results = smileMapper.readValue(content, new TypeReference<List<Offer>>() {});
+        Assertions.assertThat(results).containsExactly(ivoryPiano);
+        Assertions.assertThat(smileMapper.readTree(content).get(0).get("startOffer").asLong())
+                .isEqualTo(ivoryPiano.getStartOffer().toEpochDay());
+    }
+
+    @Test
+    public void saveBatchShouldSaveTheOffersSentAsSmile() throws Exception {
+        // GIVEN a valid piano and a valid cabinet encoded as Smile
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        final ObjectMapper smileMapper = SmileParser.smileObjectMapper();
+
+        // WHEN the batch endpoint is called accepting Smile
+        final MvcResult mvcResult = mockMvc.perform(post(ENDPOINT + "/batch")
+                .contentType(SmileParser.APPLICATION_SMILE)
+                .accept(SmileParser.APPLICATION_SMILE)
+                .content(smileMapper.writeValueAsBytes(asList(ivoryPiano, cabinet))))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // THEN both offers should be saved with their dates
+        final BatchReport result = smileMapper.readValue(mvcResult.getResponse().getContentAsByteArray(), BatchReport.class);
+        Assertions.assertThat(result.getSaved()).isEqualTo(2);
+        Assertions.assertThat(mongoTemplate.findAll(Offer.class)).extracting("startOffer")
+                .containsExactlyInAnyOrder(ivoryPiano.getStartOffer(), cabinet.getStartOffer());
+    }
+
+    @Test
+    public void getOffersShouldBeCompressedWhenTheClientAcceptsGzip() throws Exception {
+        // GIVEN 50 offers saved
+        mongoTemplate.insertAll(from(Offer.class).gimme(50, WOODEN_CABINET_FROM_60_TO_40));
+
+        // WHEN all the offers are requested with and without gzip
+        final HttpURLConnection plain = request(ALL_OFFERS, "identity");
+        final HttpURLConnection gzip = request(ALL_OFFERS, "gzip");
+
+        // THEN only the response to the client which accepts gzip should be compressed
+        Assertions.assertThat(plain.getHeaderField(HttpHeaders.CONTENT_ENCODING)).isNull();
+        Assertions.assertThat(gzip.getHeaderField(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        try (final InputStream body = new GZIPInputStream(gzip.getInputStream())) {
+            final List<Offer> results = objectMapper.readValue(body, new TypeReference<List<Offer>>() {});
+            Assertions.assertThat(results).hasSize(50);
+        }
+        plain.getInputStream().close();
+    }
+
+    private HttpURLConnection request(final String path, final String acceptEncoding) throws Exception {
+        final HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        Assertions.assertThat(connection.getResponseCode()).isEqualTo(200);
+        return connection;
+    }
+
+    @Test
+    public void prometheusShouldPublishTheMetricsOfTheUseCases() throws Exception {
+        // GIVEN a request to the valid offers of an empty database
+        mockMvc.perform(get(ENDPOINT)).andExpect(status().isNoContent());
+
+        // WHEN the prometheus endpoint is called
+        final MvcResult mvcResult = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // THEN the use case timer should be tagged with the exception and the error counted
+        final String content = mvcResult.getResponse().getContentAsString();
+        Assertions.assertThat(content)
+                .contains("offer_usecase_seconds_count{class=\"OfferManagement\",method=\"getValidOffers\",outcome=\"OfferNotFoundException\",}")
+                .contains("offer_errors_total{exception=\"OfferNotFoundException\",status=\"204\",}");
+    }
+
+}
@@ -0,0 +1,157 @@
+package io.jcervelin.ideas.offer.gateways.http;
+
+import io.jcervelin.ideas.offer.models.OfferEvent;
+import io.jcervelin.ideas.offer.models.OfferEventType;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidRequestException;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class OfferEventControllerTest {
+
+    private final OfferEventController target = new OfferEventController(Executors.newCachedThreadPool());
+
+    @After
+    public void tearDown() {
+        target.stop();
+    }
+
+    @Test
+    public void publishShouldSendTheEventToEverySubscriber() throws InterruptedException {
+        // GIVEN 2 subscribers
+        final RecordingEmitter first = new RecordingEmitter(false);
+        final RecordingEmitter second = new RecordingEmitter(false);
+        target.subscribe(first);
+        target.subscribe(second);
+
+        // WHEN an offer is saved
+        target.publish(new OfferEvent("1", OfferEventType.SAVED, null));
+
+        // THEN both should receive it
+        Assertions.assertThat(first.await(1)).isTrue();
+        Assertions.assertThat(second.await(1)).isTrue();
+    }
+
+    @Test
+    public void publishShouldOnlySendTheEventToTheSubscribersOfItsTenant() throws InterruptedException {
+        // GIVEN a subscriber of another tenant and one of the default tenant
+        final RecordingEmitter acme = new RecordingEmitter(false);
+        OfferTenant.run("acme", () -> target.subscribe(acme));
+        final RecordingEmitter subscriber = new RecordingEmitter(false);
+        target.subscribe(subscriber);
+
+        // WHEN an offer of the default tenant is saved
+        target.publish(new OfferEvent("1", OfferEventType.SAVED, null));
+
+        // THEN only the subscriber of the default tenant should receive it
+        Assertions.assertThat(subscriber.await(1)).isTrue();
+        Assertions.assertThat(acme.events).isEmpty();
+    }
+
+    @Test
+    public void streamShouldRefuseTheOtherTenants() {
+        // GIVEN a request of another tenant
+        // WHEN it subscribes
+        // THEN it should be refused
+        Assertions.assertThatThrownBy(() -> OfferTenant.run("acme", target::stream))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessage("The changes are only streamed for the default tenant. [acme]");
+        Assertions.assertThat(target.subscribers()).isZero();
+    }
+
+    @Test
+    public void subscriberGoneShouldBeRemoved() throws InterruptedException {
+        // GIVEN a subscriber which closed the connection
+        final RecordingEmitter broken = new RecordingEmitter(true);
+        target.subscribe(broken);
+        final RecordingEmitter alive = new RecordingEmitter(false);
+        target.subscribe(alive);
+
+        // WHEN an offer is deleted
+        target.publish(new OfferEvent("1", OfferEventType.DELETED, null));
+
+        // THEN only the other one should be kept
+        Assertions.assertThat(alive.await(1)).isTrue();
+        Assertions.assertThat(broken.completed.await(1, TimeUnit.SECONDS)).isTrue();
+        Assertions.assertThat(target.subscribers()).isEqualTo(1);
+    }
+
+    @Test
+    public void slowSubscriberShouldNotHoldThePublisher() throws InterruptedException {
+        // GIVEN a subscriber which doesn't read its events and another which does
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingEmitter slow = new RecordingEmitter(false) {
+            @Override
+            public void send(final SseEventBuilder builder) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.send(builder);
+            }
+        };
+        target.subscribe(slow);
+        final RecordingEmitter fast = new RecordingEmitter(false);
+        target.subscribe(fast);
+
+        // WHEN more events than a subscriber can wait for are published, at a pace the other one keeps up with
+        final int events = OfferEventController.MAX_PENDING_EVENTS + 2;
+        for (int i = 0; i < events; i++) {
+            target.publish(new OfferEvent(Integer.toString(i), OfferEventType.SAVED, null));
+            if ((i + 1) % 100 == 0)
+                fast.await(i + 1);
+        }
+
+        // THEN the publisher should not wait, the slow one should be disconnected and the other get them all
+        Assertions.assertThat(target.subscribers()).isEqualTo(1);
+        Assertions.assertThat(fast.await(events)).isTrue();
+        release.countDown();
+        Assertions.assertThat(slow.completed.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final boolean broken;
+        private final List<Set<DataWithMediaType>> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        RecordingEmitter(final boolean broken) {
+            this.broken = broken;
+        }
+
+        @Override
+        public void send(final SseEventBuilder builder) throws IOException {
+            if (broken)
+                throw new IOException("Broken pipe");
+            events.add(builder.build());
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+        }
+
+        @Override
+        public synchronized void completeWithError(final Throwable ex) {
+            completed.countDown();
+        }
+
+        boolean await(final int count) throws InterruptedException {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (events.size() < count && System.nanoTime() < deadline)
+                Thread.sleep(1);
+            return events.size() == count;
+        }
+    }
+}
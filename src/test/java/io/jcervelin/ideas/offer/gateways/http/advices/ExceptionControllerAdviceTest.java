@@ -1,6 +1,7 @@
 package io.jcervelin.ideas.offer.gateways.http.advices;
 
 import io.jcervelin.ideas.offer.models.exceptions.ErrorResponse;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidRequestException;
 import io.jcervelin.ideas.offer.models.exceptions.OfferErrorException;
 import io.jcervelin.ideas.offer.models.exceptions.OfferNotFoundException;
 import org.assertj.core.api.Assertions;
@@ -9,6 +10,9 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+
+import java.time.LocalDate;
 
 import static org.junit.Assert.*;
 
@@ -49,4 +53,17 @@ public class ExceptionControllerAdviceTest {
         Assertions.assertThat(errorResponseResponseEntity.getStatusCodeValue()).isEqualTo(422);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void invalidRequestException() {
+        ResponseEntity<ErrorResponse> errorResponseResponseEntity = target.invalidRequestException(new InvalidRequestException("Invalid cursor."));
+        Assertions.assertThat(errorResponseResponseEntity.getStatusCodeValue()).isEqualTo(400);
+    }
+
+    @Test
+    public void argumentTypeMismatchException() {
+        ResponseEntity<ErrorResponse> errorResponseResponseEntity = target.argumentTypeMismatchException(
+                new MethodArgumentTypeMismatchException("32/01/2019", LocalDate.class, "validOn", null, null));
+        Assertions.assertThat(errorResponseResponseEntity.getStatusCodeValue()).isEqualTo(400);
+    }
+}
@@ -0,0 +1,188 @@
+package io.jcervelin.ideas.offer.gateways.http.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jcervelin.ideas.offer.OfferApplication;
+import io.jcervelin.ideas.offer.gateways.http.streams.OfferStreamWriter;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.exceptions.ErrorResponse;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static br.com.six2six.fixturefactory.Fixture.from;
+import static br.com.six2six.fixturefactory.loader.FixtureFactoryLoader.loadTemplates;
+import static io.jcervelin.ideas.offer.templates.OfferTemplate.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = {OfferApplication.class}, webEnvironment = RANDOM_PORT)
+@ActiveProfiles("reactive")
+public class OfferRouterIT {
+
+    private static String TEMPLATE_PACKAGE = "io.jcervelin.ideas.offer.templates";
+    private static String ENDPOINT = "/api/offers";
+    private static String ALL_OFFERS = ENDPOINT + "/all";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeClass
+    public static void setup() {
+        loadTemplates(TEMPLATE_PACKAGE);
+    }
+
+    @Before
+    public void setUp() {
+        mongoTemplate
+                .getCollectionNames()
+                .forEach(mongoTemplate::dropCollection);
+    }
+
+    @Test
+    public void getValidOffersShouldReturn1Offer() {
+        // GIVEN 1 valid offer and 1 expired offer saved
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        mongoTemplate.save(ivoryPiano);
+        mongoTemplate.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_EXPIRED));
+
+        // WHEN the endpoint is called
+        final List<Offer> results = webTestClient.get().uri(ENDPOINT)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBodyList(Offer.class)
+                .returnResult()
+                .getResponseBody();
+
+        // THEN only the valid offer should be returned
+        Assertions.assertThat(results).containsExactly(ivoryPiano);
+    }
+
+    @Test
+    public void getValidOffersShouldReturnNoContent() {
+        // GIVEN an empty database
+        // WHEN the endpoint is called
+        // THEN a status 204 should be returned
+        webTestClient.get().uri(ENDPOINT)
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    public void getOffersShouldStreamNdjson() {
+        // GIVEN 2 offers saved
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        mongoTemplate.save(ivoryPiano);
+        mongoTemplate.save(cabinet);
+
+        // WHEN the offers are requested as NDJSON
+        final Flux<String> lines = webTestClient.get().uri(ALL_OFFERS)
+                .accept(OfferStreamWriter.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(OfferStreamWriter.APPLICATION_NDJSON)
+                .returnResult(String.class)
+                .getResponseBody();
+
+        // THEN each offer should be written in its own line
+        StepVerifier.create(lines.map(this::readOffer))
+                .expectNext(ivoryPiano, cabinet)
+                .verifyComplete();
+    }
+
+    @Test
+    public void saveOfferShouldReturnTheOfferWithId() {
+        // GIVEN a valid offer
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+
+        // WHEN the offer is posted
+        final Offer result = webTestClient.post().uri(ENDPOINT)
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .syncBody(ivoryPiano)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Offer.class)
+                .returnResult()
+                .getResponseBody();
+
+        // THEN it should be saved
+        Assertions.assertThat(result.getId()).isNotNull();
+        Assertions.assertThat(mongoTemplate.findById(result.getId(), Offer.class)).isEqualTo(result);
+    }
+
+    @Test
+    public void saveOfferWithoutNameShouldReturnUnprocessableEntity() {
+        // GIVEN an offer without name
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        ivoryPiano.setName(null);
+
+        // WHEN the offer is posted
+        final ErrorResponse result = webTestClient.post().uri(ENDPOINT)
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .syncBody(ivoryPiano)
+                .exchange()
+                .expectStatus().isEqualTo(422)
+                .expectBody(ErrorResponse.class)
+                .returnResult()
+                .getResponseBody();
+
+        // THEN the message of the validation should be returned
+        Assertions.assertThat(result.getMessage()).isEqualTo("The name is required");
+    }
+
+    @Test
+    public void cancelOfferShouldExpireTheOffer() {
+        // GIVEN a valid offer saved
+        final Offer ivoryPiano = mongoTemplate.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+
+        // WHEN the offer is cancelled
+        final Offer result = webTestClient.put().uri(ENDPOINT + "/{id}", ivoryPiano.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Offer.class)
+                .returnResult()
+                .getResponseBody();
+
+        // THEN its endOffer should be yesterday
+        Assertions.assertThat(result.getEndOffer()).isEqualTo(LocalDate.now().minusDays(1));
+    }
+
+    @Test
+    public void cancelOfferShouldReturnNoContent() {
+        // GIVEN an id which doesn't exist
+        // WHEN the offer is cancelled
+        // THEN a status 204 should be returned
+        webTestClient.put().uri(ENDPOINT + "/{id}", "5c2606d62be9ac82d9a1c119")
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    private Offer readOffer(final String line) {
+        try {
+            return objectMapper.readValue(line, Offer.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
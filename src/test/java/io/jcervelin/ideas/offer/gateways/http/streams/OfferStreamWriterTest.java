@@ -0,0 +1,86 @@
+package io.jcervelin.ideas.offer.gateways.http.streams;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jcervelin.ideas.offer.configs.json.JacksonParser;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidRequestException;
+import org.assertj.core.api.Assertions;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static br.com.six2six.fixturefactory.Fixture.from;
+import static br.com.six2six.fixturefactory.loader.FixtureFactoryLoader.loadTemplates;
+import static io.jcervelin.ideas.offer.templates.OfferTemplate.IVORY_PIANO_FROM_100_TO_70_VALID;
+import static io.jcervelin.ideas.offer.templates.OfferTemplate.WOODEN_CABINET_FROM_60_TO_40;
+
+public class OfferStreamWriterTest {
+
+    private static String TEMPLATE_PACKAGE = "io.jcervelin.ideas.offer.templates";
+
+    private final JacksonParser jacksonParser = new JacksonParser();
+    private final ObjectMapper objectMapper = jacksonParser.jsonObjectMapper(jacksonParser.javaTimeModule());
+    private final OfferStreamWriter target = new OfferStreamWriter(objectMapper);
+
+    @BeforeClass
+    public static void setup() {
+        loadTemplates(TEMPLATE_PACKAGE);
+    }
+
+    @Test
+    public void writeShouldProduceAJsonArrayAndCloseTheStream() throws Exception {
+        // GIVEN 2 offers
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        final AtomicBoolean closed = new AtomicBoolean();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // WHEN they are written as json
+        target.write(Stream.of(ivoryPiano, cabinet).onClose(() -> closed.set(true)), "json")
+                .writeTo(outputStream);
+
+        // THEN the content should be a regular list of offers
+        final List<Offer> result = objectMapper.readValue(outputStream.toByteArray(), new TypeReference<List<Offer>>() {});
+        Assertions.assertThat(result).containsExactly(ivoryPiano, cabinet);
+        Assertions.assertThat(closed).isTrue();
+        Assertions.assertThat(target.contentType("json").toString()).startsWith("application/json");
+    }
+
+    @Test
+    public void writeShouldProduceOneOfferPerLine() throws Exception {
+        // GIVEN 2 offers
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // WHEN they are written as ndjson
+        target.write(Stream.of(ivoryPiano, cabinet), "ndjson").writeTo(outputStream);
+
+        // THEN each line should be an offer
+        final String[] lines = new String(outputStream.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        Assertions.assertThat(lines).hasSize(2);
+        Assertions.assertThat(objectMapper.readValue(lines[0], Offer.class)).isEqualTo(ivoryPiano);
+        Assertions.assertThat(objectMapper.readValue(lines[1], Offer.class)).isEqualTo(cabinet);
+        Assertions.assertThat(target.contentType("ndjson")).isEqualTo(OfferStreamWriter.APPLICATION_NDJSON);
+    }
+
+    @Test
+    public void unknownFormatShouldBeAnInvalidRequest() {
+        // GIVEN a format which is neither json nor ndjson
+        final String format = "xml";
+
+        // WHEN its content type is asked
+        // THEN the request should be rejected instead of served as json
+        Assertions.assertThatThrownBy(() -> target.contentType(format))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessage("The stream must be json or ndjson. [xml]");
+        Assertions.assertThatThrownBy(() -> target.write(Stream.empty(), format))
+                .isInstanceOf(InvalidRequestException.class);
+    }
+}
@@ -0,0 +1,224 @@
+package io.jcervelin.ideas.offer.gateways.journal;
+
+import io.jcervelin.ideas.offer.models.Offer;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static br.com.six2six.fixturefactory.Fixture.from;
+import static br.com.six2six.fixturefactory.loader.FixtureFactoryLoader.loadTemplates;
+import static io.jcervelin.ideas.offer.templates.OfferTemplate.IVORY_PIANO_FROM_100_TO_70;
+import static io.jcervelin.ideas.offer.templates.OfferTemplate.WOODEN_CABINET_FROM_60_TO_40;
+
+public class OfferJournalTest {
+
+    private static final int SIZE = 4096;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path path;
+
+    private OfferJournal target;
+
+    @BeforeClass
+    public static void setup() {
+        loadTemplates("io.jcervelin.ideas.offer.templates");
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        path = folder.getRoot().toPath().resolve("offers.journal");
+        target = OfferJournal.open(path, SIZE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        target.close();
+    }
+
+    @Test
+    public void takeShouldReturnTheOffersInTheOrderTheyWereAppended() throws Exception {
+        // GIVEN 2 offers appended
+        final Offer ivoryPiano = offer(IVORY_PIANO_FROM_100_TO_70, "1");
+        final Offer cabinet = offer(WOODEN_CABINET_FROM_60_TO_40, "2");
+        target.sync(target.append(ivoryPiano));
+        target.sync(target.append(cabinet));
+
+        // WHEN they are taken one by one
+        final List<OfferJournal.Entry> first = target.take(1, Duration.ZERO);
+        final List<OfferJournal.Entry> second = target.take(10, Duration.ZERO);
+
+        // THEN each one should be returned once, in order
+        Assertions.assertThat(offers(first)).containsExactly(ivoryPiano);
+        Assertions.assertThat(offers(second)).containsExactly(cabinet);
+        Assertions.assertThat(target.take(10, Duration.ZERO)).isEmpty();
+    }
+
+    @Test
+    public void openShouldRecoverTheOffersNotCommitted() throws Exception {
+        // GIVEN 3 offers appended and the first one written to Mongo
+        target.append(offer(IVORY_PIANO_FROM_100_TO_70, "1"));
+        final Offer second = offer(IVORY_PIANO_FROM_100_TO_70, "2");
+        final Offer third = offer(WOODEN_CABINET_FROM_60_TO_40, "3");
+        target.append(second);
+        target.sync(target.append(third));
+        target.commit(target.take(1, Duration.ZERO).get(0));
+
+        // WHEN the journal is opened again
+        target.close();
+        target = OfferJournal.open(path, SIZE);
+
+        // THEN only the others should be returned, with their ids and dates
+        Assertions.assertThat(target.pending()).isEqualTo(2);
+        Assertions.assertThat(offers(target.take(10, Duration.ZERO))).containsExactly(second, third);
+    }
+
+    @Test
+    public void commitOfTheLastOfferShouldStartTheJournalAgain() throws Exception {
+        // GIVEN all the offers appended written to Mongo
+        target.append(offer(IVORY_PIANO_FROM_100_TO_70, "1"));
+        target.append(offer(WOODEN_CABINET_FROM_60_TO_40, "2"));
+        final List<OfferJournal.Entry> entries = target.take(10, Duration.ZERO);
+        target.commit(entries.get(1));
+
+        // WHEN another offer is appended and the journal is opened again
+        final Offer cabinet = offer(WOODEN_CABINET_FROM_60_TO_40, "3");
+        final OfferJournal.Entry entry = target.append(cabinet);
+        target.sync(entry);
+        target.close();
+        target = OfferJournal.open(path, SIZE);
+
+        // THEN it should be written from the beginning of the file and be the only one recovered
+        Assertions.assertThat(entry.getEnd()).isLessThan(entries.get(1).getEnd());
+        Assertions.assertThat(offers(target.take(10, Duration.ZERO))).containsExactly(cabinet);
+    }
+
+    @Test
+    public void appendShouldReturnNullWhenTheJournalIsFull() {
+        // GIVEN a journal filled with offers
+        int appended = 0;
+        while (target.append(offer(IVORY_PIANO_FROM_100_TO_70, String.valueOf(appended))) != null)
+            appended++;
+
+        // WHEN another offer is appended
+        final OfferJournal.Entry result = target.append(offer(IVORY_PIANO_FROM_100_TO_70, "last"));
+
+        // THEN it should not be accepted
+        Assertions.assertThat(result).isNull();
+        Assertions.assertThat(target.pending()).isEqualTo(appended);
+    }
+
+    @Test
+    public void appendShouldReuseTheSpaceOfTheOffersCommitted() throws Exception {
+        // GIVEN a full journal and its first half written to Mongo
+        final List<Offer> appended = new ArrayList<>();
+        for (Offer offer = offer(IVORY_PIANO_FROM_100_TO_70, "0"); target.append(offer) != null;
+             offer = offer(IVORY_PIANO_FROM_100_TO_70, String.valueOf(appended.size())))
+            appended.add(offer);
+        final List<OfferJournal.Entry> entries = target.take(appended.size(), Duration.ZERO);
+        target.commit(entries.get(appended.size() / 2 - 1));
+
+        // WHEN more offers are appended and the journal is opened again
+        final Offer piano = offer(IVORY_PIANO_FROM_100_TO_70, "piano");
+        final Offer cabinet = offer(WOODEN_CABINET_FROM_60_TO_40, "cabinet");
+        final OfferJournal.Entry wrapped = target.append(piano);
+        target.sync(target.append(cabinet));
+        target.close();
+        target = OfferJournal.open(path, SIZE);
+
+        // THEN they should be written at the beginning of the file and recovered after the others
+        Assertions.assertThat(wrapped.getEnd()).isLessThan(entries.get(appended.size() / 2 - 1).getEnd());
+        final List<Offer> expected = new ArrayList<>(appended.subList(appended.size() / 2, appended.size()));
+        expected.add(piano);
+        expected.add(cabinet);
+        Assertions.assertThat(offers(target.take(SIZE, Duration.ZERO))).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void appendShouldNotFillTheJournalWhileTheWriterCommits() throws Exception {
+        // GIVEN a writer which commits the offers as they come
+        final int total = 2_000;
+        final List<Offer> written = Collections.synchronizedList(new ArrayList<>());
+        final Thread writer = new Thread(() -> {
+            try {
+                while (written.size() < total) {
+                    final List<OfferJournal.Entry> batch = target.take(10, Duration.ofMillis(10));
+                    if (batch.isEmpty())
+                        continue;
+                    written.addAll(offers(batch));
+                    target.commit(batch.get(batch.size() - 1));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        writer.start();
+
+        // WHEN many times the size of the journal is appended, waiting for room when it's full
+        final List<Offer> appended = new ArrayList<>();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (appended.size() < total && System.nanoTime() < deadline) {
+            final Offer offer = offer(appended.size() % 2 == 0 ? IVORY_PIANO_FROM_100_TO_70 : WOODEN_CABINET_FROM_60_TO_40,
+                    String.valueOf(appended.size()));
+            if (target.append(offer) != null)
+                appended.add(offer);
+            else
+                Thread.yield();
+        }
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+
+        // THEN every offer should be written once, in order, and the journal left empty
+        Assertions.assertThat(appended).hasSize(total);
+        Assertions.assertThat(written).containsExactlyElementsOf(appended);
+        Assertions.assertThat(target.pending()).isZero();
+        target.close();
+        target = OfferJournal.open(path, SIZE);
+        Assertions.assertThat(target.pending()).isZero();
+    }
+
+    @Test
+    public void openShouldStopAtATornRecord() throws Exception {
+        // GIVEN 2 offers appended and the last one torn by a crash
+        final Offer ivoryPiano = offer(IVORY_PIANO_FROM_100_TO_70, "1");
+        target.append(ivoryPiano);
+        final OfferJournal.Entry torn = target.append(offer(WOODEN_CABINET_FROM_60_TO_40, "2"));
+        target.close();
+        try (final RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(torn.getEnd() - 1);
+            final int last = file.read();
+            file.seek(torn.getEnd() - 1);
+            file.write(last ^ 0xFF);
+        }
+
+        // WHEN the journal is opened again
+        target = OfferJournal.open(path, SIZE);
+
+        // THEN only the complete offer should be recovered
+        Assertions.assertThat(offers(target.take(10, Duration.ZERO))).containsExactly(ivoryPiano);
+    }
+
+    private static Offer offer(final String template, final String id) {
+        final Offer offer = from(Offer.class).gimme(template);
+        offer.setId(id);
+        return offer;
+    }
+
+    private static List<Offer> offers(final List<OfferJournal.Entry> entries) {
+        return entries.stream().map(OfferJournal.Entry::getOffer).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,253 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import io.jcervelin.ideas.offer.configs.cache.OfferCacheProperties;
+import io.jcervelin.ideas.offer.gateways.repositories.OfferRepository;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferSummary;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static br.com.six2six.fixturefactory.Fixture.from;
+import static br.com.six2six.fixturefactory.loader.FixtureFactoryLoader.loadTemplates;
+import static io.jcervelin.ideas.offer.templates.OfferTemplate.*;
+import static java.util.Arrays.asList;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachedOfferRepositoryTest {
+
+    private static String TEMPLATE_PACKAGE = "io.jcervelin.ideas.offer.templates";
+
+    @BeforeClass
+    public static void setup() {
+        loadTemplates(TEMPLATE_PACKAGE);
+    }
+
+    @Mock
+    private OfferRepository delegate;
+
+    private OfferCacheProperties properties;
+
+    private OfferCollectionVersion collectionVersion;
+
+    private CachedOfferRepository target;
+
+    private final LocalDate today = LocalDate.now();
+
+    @Before
+    public void setUp() {
+        properties = new OfferCacheProperties();
+        collectionVersion = new OfferCollectionVersion();
+        target = new CachedOfferRepository(delegate, properties, collectionVersion);
+    }
+
+    @Test
+    public void findValidOffersShouldHitTheDatabaseOnlyOnce() {
+        // GIVEN a valid offer in the database
+        final Offer ivoryPiano = offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "1");
+        doReturn(Collections.singletonList(ivoryPiano)).when(delegate).findValidOffers(today);
+
+        // WHEN the valid offers are requested twice
+        target.findValidOffers(today);
+        final List<Offer> result = target.findValidOffers(today);
+
+        // THEN the second call should be served by the snapshot
+        Assertions.assertThat(result).containsExactly(ivoryPiano);
+        verify(delegate, times(1)).findValidOffers(today);
+        Assertions.assertThat(target.statistics().getHits()).isEqualTo(1);
+        Assertions.assertThat(target.statistics().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void findValidOffersShouldSkipTheSnapshotsWhileDegraded() {
+        // GIVEN a snapshot of the valid offers and then a broken change stream
+        final Offer ivoryPiano = offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "1");
+        doReturn(Collections.singletonList(ivoryPiano)).when(delegate).findValidOffers(today);
+        target.findValidOffers(today);
+        collectionVersion.setDegraded(true);
+
+        // WHEN the valid offers and their summaries are requested
+        target.findValidOffers(today);
+        target.findValidOfferSummaries(today);
+
+        // THEN they should be read from the database and not kept
+        verify(delegate, times(2)).findValidOffers(today);
+        verify(delegate).findValidOfferSummaries(today);
+        Assertions.assertThat(target.statistics().getHits()).isZero();
+        Assertions.assertThat(target.statistics().getMisses()).isEqualTo(3);
+    }
+
+    @Test
+    public void summariesShouldBeMappedFromTheSnapshot() {
+        // GIVEN a snapshot with one valid offer
+        final Offer ivoryPiano = offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "1");
+        doReturn(Collections.singletonList(ivoryPiano)).when(delegate).findValidOffers(today);
+        target.findValidOffers(today);
+
+        // WHEN the summaries are requested
+        final List<OfferSummary> result = target.findValidOfferSummaries(today);
+
+        // THEN they should not be read from the database
+        Assertions.assertThat(result).containsExactly(OfferSummary.of(ivoryPiano));
+        verify(delegate, never()).findValidOfferSummaries(any(LocalDate.class));
+    }
+
+    @Test
+    public void summariesWithoutSnapshotShouldBeProjectedByTheDatabase() {
+        // GIVEN no snapshot
+        final OfferSummary ivoryPiano = OfferSummary.of(offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "1"));
+        doReturn(Collections.singletonList(ivoryPiano)).when(delegate).findValidOfferSummaries(today);
+
+        // WHEN the summaries are requested
+        final List<OfferSummary> result = target.findValidOfferSummaries(today);
+
+        // THEN they should be read with the projection and no snapshot should be made
+        Assertions.assertThat(result).containsExactly(ivoryPiano);
+        verify(delegate, never()).findValidOffers(any(LocalDate.class));
+        Assertions.assertThat(target.statistics().getBuckets()).isZero();
+    }
+
+    @Test
+    public void eachTenantShouldHaveItsOwnSnapshots() {
+        // GIVEN a valid offer of the default tenant and another of the tenant acme
+        final Offer ivoryPiano = offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "1");
+        final Offer cabinet = offerWithId(WOODEN_CABINET_FROM_60_TO_40, "2");
+        doAnswer(invocation -> Collections.singletonList(OfferTenant.isDefault() ? ivoryPiano : cabinet))
+                .when(delegate).findValidOffers(today);
+        target.findValidOffers(today);
+        OfferTenant.run("acme", () -> target.findValidOffers(today));
+
+        // WHEN the tenant acme inserts a batch
+        OfferTenant.run("acme", () -> target.insertAll(Collections.singletonList(cabinet)));
+
+        // THEN only the snapshots of acme should be dropped
+        Assertions.assertThat(target.findValidOffers(today)).containsExactly(ivoryPiano);
+        Assertions.assertThat(OfferTenant.call("acme", () -> target.findValidOffers(today))).containsExactly(cabinet);
+        verify(delegate, times(3)).findValidOffers(today);
+        Assertions.assertThat(target.statistics().getBuckets()).isEqualTo(2);
+    }
+
+    @Test
+    public void saveShouldPatchTheSnapshot() {
+        // GIVEN a snapshot with one valid offer
+        final Offer ivoryPiano = offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "1");
+        doReturn(Collections.singletonList(ivoryPiano)).when(delegate).findValidOffers(today);
+        target.findValidOffers(today);
+
+        // WHEN a new valid offer and an expired one are saved
+        final Offer newPiano = offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "2");
+        final Offer expiredPiano = offerWithId(IVORY_PIANO_FROM_100_TO_70_EXPIRED, "3");
+        doReturn(newPiano).when(delegate).save(newPiano);
+        doReturn(expiredPiano).when(delegate).save(expiredPiano);
+        target.save(newPiano);
+        target.save(expiredPiano);
+
+        // THEN only the valid one should be added to the snapshot without going to the database
+        Assertions.assertThat(target.findValidOffers(today)).containsExactly(ivoryPiano, newPiano);
+        verify(delegate, times(1)).findValidOffers(today);
+    }
+
+    @Test
+    public void cancelShouldRemoveTheOfferFromTheSnapshot() {
+        // GIVEN a snapshot with two valid offers
+        final Offer ivoryPiano = offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "1");
+        final Offer cabinet = offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "2");
+        doReturn(asList(ivoryPiano, cabinet)).when(delegate).findValidOffers(today);
+        target.findValidOffers(today);
+
+        // WHEN one of them is cancelled
+        final Offer ivoryPianoCancelled = offerWithId(IVORY_PIANO_FROM_100_TO_70_EXPIRED, "1");
+        doReturn(Optional.of(ivoryPianoCancelled)).when(delegate).cancelOfferById("1");
+        target.cancelOfferById("1");
+
+        // THEN the snapshot should not contain it anymore
+        Assertions.assertThat(target.findValidOffers(today)).containsExactly(cabinet);
+        verify(delegate, times(1)).findValidOffers(today);
+    }
+
+    @Test
+    public void batchOfChangesShouldPatchTheSnapshotOnce() {
+        // GIVEN a snapshot with two valid offers
+        final Offer ivoryPiano = offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "1");
+        final Offer cabinet = offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "2");
+        doReturn(asList(ivoryPiano, cabinet)).when(delegate).findValidOffers(today);
+        target.findValidOffers(today);
+
+        // WHEN a batch saves a new offer and removes one of them
+        final Offer newPiano = offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "3");
+        target.patch(Collections.singletonList(newPiano), Collections.singleton("1"));
+
+        // THEN the snapshot should have the changes without going to the database
+        Assertions.assertThat(target.findValidOffers(today)).containsExactly(cabinet, newPiano);
+        verify(delegate, times(1)).findValidOffers(today);
+    }
+
+    @Test
+    public void expiredSnapshotShouldBeReloaded() {
+        // GIVEN a cache without time to live
+        properties.setTimeToLive(Duration.ZERO);
+        doReturn(Collections.emptyList()).when(delegate).findValidOffers(today);
+
+        // WHEN the valid offers are requested twice
+        target.findValidOffers(today);
+        target.findValidOffers(today);
+
+        // THEN both calls should go to the database
+        verify(delegate, times(2)).findValidOffers(today);
+        Assertions.assertThat(target.statistics().getEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    public void snapshotBiggerThanTheBudgetShouldNotBeKept() {
+        // GIVEN a budget of one offer
+        properties.setMaxOffers(1);
+        final Offer ivoryPiano = offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "1");
+        final Offer cabinet = offerWithId(IVORY_PIANO_FROM_100_TO_70_VALID, "2");
+        doReturn(asList(ivoryPiano, cabinet)).when(delegate).findValidOffers(today);
+
+        // WHEN the valid offers are requested twice
+        target.findValidOffers(today);
+        target.findValidOffers(today);
+
+        // THEN nothing should be cached
+        verify(delegate, times(2)).findValidOffers(today);
+        Assertions.assertThat(target.statistics().getOffers()).isZero();
+    }
+
+    @Test
+    public void oldestBucketShouldBeEvictedWhenThereAreTooManyDates() {
+        // GIVEN a cache of one date
+        properties.setMaxBuckets(1);
+        final LocalDate tomorrow = today.plusDays(1);
+        doReturn(Collections.emptyList()).when(delegate).findValidOffers(any(LocalDate.class));
+
+        // WHEN two dates are requested
+        target.findValidOffers(today);
+        target.findValidOffers(tomorrow);
+        target.findValidOffers(tomorrow);
+
+        // THEN only the newest date should be kept
+        verify(delegate, times(1)).findValidOffers(tomorrow);
+        Assertions.assertThat(target.statistics().getBuckets()).isEqualTo(1);
+        Assertions.assertThat(target.statistics().getEvictions()).isEqualTo(1);
+    }
+
+    private Offer offerWithId(final String template, final String id) {
+        final Offer offer = from(Offer.class).gimme(template);
+        offer.setId(id);
+        return offer;
+    }
+}
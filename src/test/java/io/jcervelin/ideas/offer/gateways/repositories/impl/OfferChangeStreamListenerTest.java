@@ -0,0 +1,267 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.jcervelin.ideas.offer.configs.mongo.OfferChangeStreamProperties;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferEvent;
+import io.jcervelin.ideas.offer.models.OfferEventType;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static br.com.six2six.fixturefactory.Fixture.from;
+import static br.com.six2six.fixturefactory.loader.FixtureFactoryLoader.loadTemplates;
+import static io.jcervelin.ideas.offer.templates.OfferTemplate.IVORY_PIANO_FROM_100_TO_70_VALID;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OfferChangeStreamListenerTest {
+
+    private static String TEMPLATE_PACKAGE = "io.jcervelin.ideas.offer.templates";
+
+    @BeforeClass
+    public static void setup() {
+        loadTemplates(TEMPLATE_PACKAGE);
+    }
+
+    @Mock
+    private ObjectProvider<CachedOfferRepository> cachedOfferRepository;
+
+    @Mock
+    private CachedOfferRepository cache;
+
+    @Mock
+    private OfferValidityIndex validityIndex;
+
+    @Mock
+    private OfferSearchIndex searchIndex;
+
+    @Mock
+    private OfferCollectionVersion collectionVersion;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private OfferLocalWrites localWrites;
+
+    @Mock
+    private Message<ChangeStreamDocument<Document>, Offer> message;
+
+    @Mock
+    private MessageListenerContainer container;
+
+    @Mock
+    private Subscription subscription;
+
+    @Mock
+    private ChangeStreamRequest<Offer> request;
+
+    private OfferChangeStreamProperties properties;
+
+    private OfferChangeStreamListener target;
+
+    private final ObjectId id = new ObjectId();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        doAnswer(invocation -> {
+            ((Consumer<CachedOfferRepository>) invocation.getArgument(0)).accept(cache);
+            return null;
+        }).when(cachedOfferRepository).ifAvailable(any());
+        properties = new OfferChangeStreamProperties();
+        properties.setBatchSize(3);
+        target = new OfferChangeStreamListener(cachedOfferRepository, validityIndex, searchIndex, collectionVersion,
+                eventPublisher, localWrites, properties);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        target.stop();
+    }
+
+    @Test
+    public void updateShouldPatchTheCacheAndTheIndex() {
+        // GIVEN an update of an offer seen by the change stream
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        ivoryPiano.setId(id.toHexString());
+        doReturn(change(OperationType.UPDATE)).when(message).getRaw();
+        doReturn(ivoryPiano).when(message).getBody();
+        properties.setEnabled(true);
+        target.start();
+
+        // WHEN the message is received
+        target.onMessage(message);
+
+        // THEN the offer should replace its previous version and be published
+        verify(eventPublisher, timeout(1000)).publishEvent(new OfferEvent(id.toHexString(), OfferEventType.SAVED, ivoryPiano));
+        verify(cache).patch(singletonList(ivoryPiano), emptySet());
+        verify(validityIndex).put(ivoryPiano);
+        verify(searchIndex).put(ivoryPiano);
+        verify(collectionVersion).increment();
+    }
+
+    @Test
+    public void deleteShouldRemoveFromTheCacheAndTheIndex() {
+        // GIVEN a delete seen by the change stream
+        doReturn(change(OperationType.DELETE)).when(message).getRaw();
+        properties.setEnabled(true);
+        target.start();
+
+        // WHEN the message is received
+        target.onMessage(message);
+
+        // THEN the offer should be removed from the snapshots and the indexes
+        verify(eventPublisher, timeout(1000)).publishEvent(new OfferEvent(id.toHexString(), OfferEventType.DELETED, null));
+        verify(cache).patch(emptyList(), singleton(id.toHexString()));
+        verify(validityIndex).remove(id.toHexString());
+        verify(searchIndex).remove(id.toHexString());
+        verify(collectionVersion).increment();
+    }
+
+    @Test
+    public void batchShouldPatchTheCacheAndMoveTheVersionOnce() {
+        // GIVEN an offer saved twice and another removed
+        final Offer first = offer("1", "Piano");
+        final Offer second = offer("1", "Ivory Piano");
+
+        // WHEN the changes are applied together
+        target.apply(asList(new OfferEvent("1", OfferEventType.SAVED, first),
+                new OfferEvent("2", OfferEventType.DELETED, null)));
+        target.apply(asList(new OfferEvent("1", OfferEventType.SAVED, second)));
+
+        // THEN each batch should patch the snapshots and move the version once
+        verify(cache).patch(singletonList(first), singleton("2"));
+        verify(cache).patch(singletonList(second), emptySet());
+        verify(collectionVersion, times(2)).increment();
+        verify(eventPublisher, times(3)).publishEvent(any(OfferEvent.class));
+    }
+
+    @Test
+    public void fullBatchShouldInvalidateTheCache() {
+        // GIVEN a burst of changes as big as a batch
+        final List<OfferEvent> burst = asList(new OfferEvent("1", OfferEventType.SAVED, offer("1", "Piano")),
+                new OfferEvent("2", OfferEventType.SAVED, offer("2", "Cabinet")),
+                new OfferEvent("3", OfferEventType.DELETED, null));
+
+        // WHEN it's applied
+        target.apply(burst);
+
+        // THEN the snapshots should be dropped once instead of copied
+        verify(cache).invalidate();
+        verify(cache, never()).patch(any(), any());
+        verify(validityIndex, times(2)).put(any(Offer.class));
+        verify(collectionVersion).increment();
+    }
+
+    @Test
+    public void echoOfTheWritesOfThisInstanceShouldOnlyBePublished() {
+        // GIVEN a change which is the echo of a save of this instance
+        final OfferEvent echo = new OfferEvent("1", OfferEventType.SAVED, offer("1", "Piano"));
+        doReturn(true).when(localWrites).isEcho(echo);
+
+        // WHEN it's applied
+        target.apply(singletonList(echo));
+
+        // THEN nothing should be patched again nor the version moved
+        verifyZeroInteractions(cache, validityIndex, searchIndex, collectionVersion);
+        verify(eventPublisher).publishEvent(echo);
+    }
+
+    @Test
+    public void failedStreamShouldInvalidateTheCache() {
+        // GIVEN a broken change stream
+        // WHEN the error is received
+        target.onError(new RuntimeException("Mongo is outage."));
+
+        // THEN the snapshots should be dropped, the version degraded and nothing published
+        verify(cache).invalidate();
+        verify(collectionVersion).increment();
+        verify(collectionVersion).setDegraded(true);
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    public void failedStreamShouldBeResumedFromTheLastChangeSeen() throws InterruptedException {
+        // GIVEN an open stream which saw a change
+        final BsonDocument token = new BsonDocument("_data", new BsonString("8263"));
+        doReturn(change(token, OperationType.DELETE)).when(message).getRaw();
+        doReturn(subscription).when(container).register(any(), eq(Offer.class), any());
+        doReturn(true).when(subscription).await(any(Duration.class));
+        final List<BsonValue> resumeTokens = new CopyOnWriteArrayList<>();
+        properties.setEnabled(true);
+        properties.setRetryDelay(Duration.ofMillis(10));
+        target.start();
+        target.subscribe(container, resumeToken -> {
+            resumeTokens.add(resumeToken);
+            return request;
+        });
+        verify(collectionVersion, timeout(1000)).setDegraded(false);
+        target.onMessage(message);
+
+        // WHEN the stream fails
+        target.onError(new RuntimeException("Mongo is outage."));
+
+        // THEN it should be degraded until it's registered again after the last change seen
+        verify(container).remove(subscription);
+        verify(container, timeout(1000).times(2)).register(eq(request), eq(Offer.class), any());
+        verify(collectionVersion, timeout(1000).times(2)).setDegraded(false);
+        Assertions.assertThat(resumeTokens).containsExactly(null, token);
+        final InOrder inOrder = inOrder(collectionVersion);
+        inOrder.verify(collectionVersion).setDegraded(true);
+        inOrder.verify(collectionVersion).setDegraded(false);
+        inOrder.verify(collectionVersion).setDegraded(true);
+        inOrder.verify(collectionVersion).setDegraded(false);
+        verify(cache, times(3)).invalidate();
+    }
+
+    private Offer offer(final String id, final String name) {
+        final Offer offer = new Offer();
+        offer.setId(id);
+        offer.setName(name);
+        return offer;
+    }
+
+    private ChangeStreamDocument<Document> change(final OperationType operationType) {
+        return change(new BsonDocument(), operationType);
+    }
+
+    private ChangeStreamDocument<Document> change(final BsonDocument resumeToken, final OperationType operationType) {
+        return new ChangeStreamDocument<>(resumeToken, new MongoNamespace("dev", "offer"), null,
+                new BsonDocument("_id", new BsonObjectId(id)), operationType, null);
+    }
+}
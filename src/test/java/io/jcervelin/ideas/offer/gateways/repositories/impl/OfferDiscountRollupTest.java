@@ -0,0 +1,95 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import io.jcervelin.ideas.offer.configs.analytics.OfferAnalyticsProperties;
+import io.jcervelin.ideas.offer.models.DiscountAnalytics;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.ignoreStubs;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OfferDiscountRollupTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private OfferDiscountRollup target;
+
+    @Before
+    public void setUp() {
+        target = new OfferDiscountRollup(mongoTemplate, new OfferAnalyticsProperties());
+    }
+
+    @Test
+    public void failedUpdateShouldMarkTheAnalyticsForRebuild() {
+        // GIVEN the analytics computed and a database which fails the update
+        when(mongoTemplate.findById(DiscountAnalytics.DISCOUNTS, DiscountAnalytics.class)).thenReturn(new DiscountAnalytics());
+        doThrow(new RuntimeException("Mongo is outage.")).when(mongoTemplate)
+                .findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(DiscountAnalytics.class));
+
+        // WHEN an offer is saved
+        target.replace(null, offer(100.0, 70.0));
+
+        // THEN the write should not fail, the document should be removed and not read until rebuilt
+        verify(mongoTemplate).remove(any(Query.class), eq(DiscountAnalytics.class));
+        Assertions.assertThat(target.find()).isEmpty();
+        Assertions.assertThat(OfferTenant.call("acme", target::find)).isPresent();
+    }
+
+    @Test
+    public void failedRemovalShouldStillRebuildTheAnalyticsOnThisInstance() {
+        // GIVEN a database which fails the update and the removal
+        doThrow(new RuntimeException("Mongo is outage.")).when(mongoTemplate)
+                .findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(DiscountAnalytics.class));
+        doThrow(new RuntimeException("Mongo is outage.")).when(mongoTemplate).remove(any(Query.class), eq(DiscountAnalytics.class));
+
+        // WHEN offers are inserted
+        target.add(Collections.singletonList(offer(100.0, 70.0)));
+
+        // THEN the document left behind should not be read by this instance
+        Assertions.assertThat(target.find()).isEmpty();
+        verifyZeroInteractions(ignoreStubs(mongoTemplate));
+    }
+
+    @Test
+    public void replaceWithTheSameDiscountShouldNotUpdateTheAnalytics() {
+        // GIVEN a version of the offer which only changes the description
+        final Offer previous = offer(100.0, 70.0);
+        final Offer current = offer(100.0, 70.0);
+        current.setDescription("Moved to the next week");
+
+        // WHEN it replaces the previous one
+        target.replace(previous, current);
+
+        // THEN the document should not be touched
+        verifyZeroInteractions(mongoTemplate);
+    }
+
+    private Offer offer(final double price, final double offerPrice) {
+        final Offer offer = new Offer();
+        offer.setId("1");
+        offer.setName("Ivory piano");
+        offer.setCurrency("GBP");
+        offer.setPrice(price);
+        offer.setOfferPrice(offerPrice);
+        return offer;
+    }
+}
@@ -0,0 +1,72 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import io.jcervelin.ideas.offer.configs.mongo.OfferChangeStreamProperties;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferEvent;
+import io.jcervelin.ideas.offer.models.OfferEventType;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Collections.singletonList;
+
+public class OfferLocalWritesTest {
+
+    private OfferChangeStreamProperties properties;
+
+    private OfferLocalWrites target;
+
+    @Before
+    public void setUp() {
+        properties = new OfferChangeStreamProperties();
+        properties.setEnabled(true);
+        target = new OfferLocalWrites(properties);
+    }
+
+    @Test
+    public void echoOfTheLastWriteShouldBeRecognisedOnce() {
+        // GIVEN an offer saved and another removed by this instance
+        target.saved(offer("1", "Piano"));
+        target.removed(singletonList("2"));
+
+        // WHEN their changes come back through the stream
+        // THEN they should be echoes only the first time
+        Assertions.assertThat(target.isEcho(new OfferEvent("1", OfferEventType.SAVED, offer("1", "Piano")))).isTrue();
+        Assertions.assertThat(target.isEcho(new OfferEvent("2", OfferEventType.DELETED, null))).isTrue();
+        Assertions.assertThat(target.isEcho(new OfferEvent("1", OfferEventType.SAVED, offer("1", "Piano")))).isFalse();
+    }
+
+    @Test
+    public void writeOfAnotherInstanceShouldNotBeAnEcho() {
+        // GIVEN an offer saved by this instance
+        target.saved(offer("1", "Piano"));
+
+        // WHEN another instance saves it with another name
+        final OfferEvent event = new OfferEvent("1", OfferEventType.SAVED, offer("1", "Ivory Piano"));
+
+        // THEN the change should be applied
+        Assertions.assertThat(target.isEcho(event)).isFalse();
+    }
+
+    @Test
+    public void writesShouldNotBeRememberedWithoutTheChangeStreamOrForOtherTenants() {
+        // GIVEN offers saved without the change stream and by the tenant acme
+        properties.setEnabled(false);
+        target.saved(offer("1", "Piano"));
+        properties.setEnabled(true);
+        OfferTenant.run("acme", () -> target.saved(offer("2", "Cabinet")));
+
+        // WHEN their changes are seen
+        // THEN none of them should be an echo
+        Assertions.assertThat(target.isEcho(new OfferEvent("1", OfferEventType.SAVED, offer("1", "Piano")))).isFalse();
+        Assertions.assertThat(target.isEcho(new OfferEvent("2", OfferEventType.SAVED, offer("2", "Cabinet")))).isFalse();
+    }
+
+    private Offer offer(final String id, final String name) {
+        final Offer offer = new Offer();
+        offer.setId(id);
+        offer.setName(name);
+        return offer;
+    }
+}
@@ -0,0 +1,102 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import io.jcervelin.ideas.offer.configs.mongo.OfferMongoProperties;
+import io.jcervelin.ideas.offer.gateways.repositories.OfferMongoRepository;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OfferRepositoryImplTest {
+
+    @Mock
+    private OfferMongoRepository repository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoTemplate listMongoTemplate;
+
+    @Mock
+    private OfferValidityIndex validityIndex;
+
+    @Mock
+    private OfferSearchIndex searchIndex;
+
+    @Mock
+    private OfferDiscountRollup discountRollup;
+
+    @Mock
+    private OfferLocalWrites localWrites;
+
+    @Mock
+    private OfferCollectionVersion collectionVersion;
+
+    private OfferMongoProperties properties;
+
+    private OfferRepositoryImpl target;
+
+    @Before
+    public void setUp() {
+        properties = new OfferMongoProperties();
+        properties.setListReadPreference("secondaryPreferred");
+        properties.setListMaxStaleness(Duration.ofSeconds(90));
+        target = new OfferRepositoryImpl(repository, mongoTemplate, validityIndex, searchIndex, discountRollup,
+                listMongoTemplate, localWrites, collectionVersion, properties);
+    }
+
+    @Test
+    public void validOffersShouldBeReadFromThePrimaryUntilTheSecondariesHaveTheLastWrite() {
+        // GIVEN a write a minute ago, within the max staleness
+        doReturn(System.currentTimeMillis() - 60_000).when(collectionVersion).lastModified();
+
+        // WHEN the valid offers are read
+        target.findValidOffers(LocalDate.now());
+
+        // THEN they should come from the primary
+        verify(mongoTemplate).find(any(Query.class), eq(Offer.class));
+        verifyZeroInteractions(listMongoTemplate);
+    }
+
+    @Test
+    public void validOffersShouldBeReadWithTheListTemplateOnceTheSecondariesHaveTheLastWrite() {
+        // GIVEN a write older than the max staleness and the heartbeat
+        doReturn(System.currentTimeMillis() - 101_000).when(collectionVersion).lastModified();
+
+        // WHEN the valid offers are read
+        target.findValidOffers(LocalDate.now());
+
+        // THEN they should come from the secondaries
+        verify(listMongoTemplate).find(any(Query.class), eq(Offer.class));
+        verifyZeroInteractions(mongoTemplate);
+    }
+
+    @Test
+    public void allOffersShouldBeReadFromThePrimaryWithoutMaxStaleness() {
+        // GIVEN secondaries which may be any time behind
+        properties.setListMaxStaleness(null);
+
+        // WHEN all offers are read
+        target.findAll();
+
+        // THEN they should come from the primary
+        verify(mongoTemplate).findAll(Offer.class);
+        verifyZeroInteractions(listMongoTemplate, collectionVersion);
+    }
+}
@@ -0,0 +1,204 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import io.jcervelin.ideas.offer.configs.search.OfferSearchIndexProperties;
+import io.jcervelin.ideas.offer.models.Offer;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.asList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OfferSearchIndexTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private OfferSearchIndexProperties properties;
+
+    private OfferSearchIndex target;
+
+    @Before
+    public void setUp() {
+        properties = new OfferSearchIndexProperties();
+        target = new OfferSearchIndex(mongoTemplate, properties);
+    }
+
+    @Test
+    public void searchShouldMatchTheBeginningOfTheWordsWithoutCaseAndAccents() {
+        // GIVEN offers with accents in the name and the description
+        target.load(Stream.of(
+                offer("1", "Piano Clássico", "Ivory keys."),
+                offer("2", "Cabinet", "Oak cabinet for a piano."),
+                offer("3", "Chair", "Classic chair.")));
+
+        // WHEN the beginning of the words is searched in another case and without accents
+        // THEN the offers with all of them should return
+        Assertions.assertThat(target.isReady()).isTrue();
+        Assertions.assertThat(target.search("CLASS", 0, 10)).containsExactlyInAnyOrder("1", "3");
+        Assertions.assertThat(target.search("piano classi", 0, 10)).containsExactly("1");
+        Assertions.assertThat(target.search("pia ivory", 0, 10)).containsExactly("1");
+        Assertions.assertThat(target.search("piano violin", 0, 10)).isEmpty();
+        Assertions.assertThat(target.search(" ,. ", 0, 10)).isEmpty();
+    }
+
+    @Test
+    public void searchShouldRankTheNameAndTheWholeWordsFirst() {
+        // GIVEN the word in the description of one offer, in the name of another
+        // and the beginning of a longer word in the name of the last one
+        target.load(Stream.of(
+                offer("1", "Cabinet", "Oak cabinet for a piano."),
+                offer("2", "Pianola", "Self playing."),
+                offer("3", "Ivory Piano", "Ivory keys.")));
+
+        // WHEN the word is searched
+        // THEN the name should rank before the description and the whole word before the longer one
+        Assertions.assertThat(target.search("piano", 0, 10)).containsExactly("3", "2", "1");
+        Assertions.assertThat(target.search("pian", 0, 10)).containsExactly("2", "3", "1");
+    }
+
+    @Test
+    public void searchShouldPageThroughTheRankedOffers() {
+        // GIVEN 5 offers with the same score
+        target.load(Stream.of("5", "3", "1", "4", "2").map(id -> offer(id, "Piano", null)));
+
+        // WHEN the pages are requested
+        // THEN the ties should be ranked by id
+        Assertions.assertThat(target.search("piano", 0, 2)).containsExactly("1", "2");
+        Assertions.assertThat(target.search("piano", 2, 2)).containsExactly("3", "4");
+        Assertions.assertThat(target.search("piano", 4, 2)).containsExactly("5");
+        Assertions.assertThat(target.search("piano", 6, 2)).isEmpty();
+    }
+
+    @Test
+    public void putShouldReplaceThePreviousVersion() {
+        // GIVEN an indexed piano
+        target.load(Stream.of(offer("1", "Piano", null)));
+
+        // WHEN it's saved as a cabinet
+        target.put(offer("1", "Cabinet", null));
+
+        // THEN it should be found only by the new name
+        Assertions.assertThat(target.search("piano", 0, 10)).isEmpty();
+        Assertions.assertThat(target.search("cabinet", 0, 10)).containsExactly("1");
+        Assertions.assertThat(target.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void removeShouldDropTheOffers() {
+        // GIVEN 3 pianos
+        target.load(Stream.of(offer("1", "Piano", null), offer("2", "Piano", null), offer("3", "Piano", null)));
+
+        // WHEN one of them and an unknown id are removed, then the archived ones
+        target.remove("1");
+        target.remove("9");
+        target.removeAll(asList("2", "8"));
+
+        // THEN only the last one should be found
+        Assertions.assertThat(target.search("piano", 0, 10)).containsExactly("3");
+        Assertions.assertThat(target.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void loadShouldNotReplaceOffersWrittenMeanwhile() {
+        // GIVEN an offer saved while the index is loaded
+        target.put(offer("1", "Cabinet", null));
+
+        // WHEN the cursor brings its older version
+        target.load(Stream.of(offer("1", "Piano", null)));
+
+        // THEN the saved version should be kept
+        Assertions.assertThat(target.search("cabinet", 0, 10)).containsExactly("1");
+        Assertions.assertThat(target.search("piano", 0, 10)).isEmpty();
+    }
+
+    @Test
+    public void loadShouldSkipTheOffersRemovedMeanwhile() {
+        // GIVEN the cursor bringing offers as they were before being removed or archived
+        final Offer first = offer("1", "Piano", "Ivory keys.");
+        final Stream<Offer> cursor = Stream.of(first, offer("2", "Piano", "Oak."), offer("3", "Piano", "Black."))
+                .peek(offer -> {
+                    if (offer == first) {
+                        target.remove("2");
+                        target.removeAll(asList("3"));
+                    }
+                });
+
+        // WHEN the index is loaded from it
+        target.load(cursor);
+
+        // THEN only the offer kept should be found, and a later put should not be skipped
+        Assertions.assertThat(target.search("piano", 0, 10)).containsExactly("1");
+        target.put(offer("2", "Piano", "Oak."));
+        Assertions.assertThat(target.search("piano", 0, 10)).containsExactlyInAnyOrder("1", "2");
+    }
+
+    @Test
+    public void offersOverTheBudgetShouldGoToMongo() {
+        // GIVEN a budget of 2 offers
+        properties.setMaxOffers(2);
+
+        // WHEN 3 offers are loaded and another one is saved
+        target.load(Stream.of(offer("1", "Piano", null), offer("2", "Cabinet", null), offer("3", "Chair", null)));
+        target.put(offer("4", "Violin", null));
+
+        // THEN the index should not keep them nor be used
+        Assertions.assertThat(target.isReady()).isFalse();
+        Assertions.assertThat(target.size()).isZero();
+    }
+
+    @Test
+    public void disabledIndexShouldNotKeepOffers() {
+        // GIVEN a disabled index
+        properties.setEnabled(false);
+
+        // WHEN an offer is saved
+        target.put(offer("1", "Piano", null));
+        target.load();
+
+        // THEN it should not be indexed and the index should not be ready
+        Assertions.assertThat(target.size()).isZero();
+        Assertions.assertThat(target.isReady()).isFalse();
+    }
+
+    @Test
+    public void failedLoadShouldLeaveTheIndexNotReady() {
+        // GIVEN a database outage
+        doThrow(new RuntimeException("Mongo is outage.")).when(mongoTemplate).stream(any(Query.class), eq(Offer.class));
+
+        // WHEN the index is loaded
+        target.load();
+
+        // THEN the searches should go to Mongo
+        Assertions.assertThat(target.isReady()).isFalse();
+    }
+
+    @Test
+    public void wordsShouldBeLetterAndDigitsInLowerCaseWithoutAccents() {
+        // GIVEN a text with punctuation, accents and numbers
+        // WHEN it's split
+        final List<String> result = OfferSearchIndex.words("Piano Clássico, 42-B!");
+
+        // THEN only the words should be kept
+        Assertions.assertThat(result).containsExactly("piano", "classico", "42", "b");
+    }
+
+    private Offer offer(final String id, final String name, final String description) {
+        final Offer offer = new Offer();
+        offer.setId(id);
+        offer.setName(name);
+        offer.setDescription(description);
+        return offer;
+    }
+}
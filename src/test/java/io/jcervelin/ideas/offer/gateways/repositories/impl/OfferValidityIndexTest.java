@@ -0,0 +1,286 @@
+package io.jcervelin.ideas.offer.gateways.repositories.impl;
+
+import io.jcervelin.ideas.offer.configs.cache.OfferValidityIndexProperties;
+import io.jcervelin.ideas.offer.configs.tenant.OfferTenantProperties;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferFilter;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.asList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OfferValidityIndexTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private OfferValidityIndexProperties properties;
+
+    private OfferValidityIndex target;
+
+    private final LocalDate day = LocalDate.of(2019, 1, 10);
+
+    @Before
+    public void setUp() {
+        properties = new OfferValidityIndexProperties();
+        target = new OfferValidityIndex(mongoTemplate, properties, new OfferTenantProperties());
+    }
+
+    @Test
+    public void findValidBetweenShouldFollowTheValidityRule() {
+        // GIVEN offers around the day
+        final Offer startsOnTheDay = offer("1", day, day.plusDays(5));
+        final Offer endsOnTheDay = offer("2", day.minusDays(5), day);
+        final Offer endedTheDayBefore = offer("3", day.minusDays(5), day.minusDays(1));
+        final Offer longOne = offer("4", day.minusYears(1), day.plusYears(1));
+        final Offer withoutEnd = offer("5", day.minusDays(5), null);
+        target.load(Stream.of(startsOnTheDay, endsOnTheDay, endedTheDayBefore, longOne, withoutEnd));
+
+        // WHEN the offers valid on the day are requested
+        // THEN only the ones started before and not ended yet should return
+        Assertions.assertThat(target.isReady()).isTrue();
+        Assertions.assertThat(findValidOn(day)).containsExactlyInAnyOrder(endsOnTheDay.getId(), longOne.getId());
+        Assertions.assertThat(target.size()).isEqualTo(5);
+    }
+
+    @Test
+    public void findValidBetweenShouldReturnTheOffersValidOnAnyDateOfThePeriod() {
+        // GIVEN an offer before, one inside and one after the period
+        final Offer before = offer("1", day.minusDays(10), day.minusDays(5));
+        final Offer inside = offer("2", day.plusDays(1), day.plusDays(2));
+        final Offer after = offer("3", day.plusDays(10), day.plusDays(20));
+        target.load(Stream.of(before, inside, after));
+
+        // WHEN the offers valid in the period are requested
+        // THEN only the one inside should return
+        Assertions.assertThat(target.findValidBetween(day, day.plusDays(10), null, 10)).containsExactly(inside.getId());
+    }
+
+    @Test
+    public void findValidBetweenShouldReturnAPageSortedById() {
+        // GIVEN 5 offers valid on the day, in several partitions
+        target.load(Stream.of(offer("5", day.minusDays(1), day), offer("3", day.minusDays(2), day.plusDays(1)),
+                offer("1", day.minusDays(3), day.plusDays(2)), offer("4", day.minusDays(1), day.plusDays(3)),
+                offer("2", day.minusDays(1), day)));
+
+        // WHEN they are requested 2 by 2
+        // THEN each page should only hold the lowest ids after the previous one
+        Assertions.assertThat(target.findValidBetween(day, day, null, 2)).containsExactly("1", "2");
+        Assertions.assertThat(target.findValidBetween(day, day, "2", 2)).containsExactly("3", "4");
+        Assertions.assertThat(target.findValidBetween(day, day, "4", 2)).containsExactly("5");
+    }
+
+    @Test
+    public void putShouldReplaceThePreviousVersion() {
+        // GIVEN an offer valid on the day
+        target.load(Stream.of(offer("1", day.minusDays(1), day.plusDays(1))));
+
+        // WHEN it's saved with another period
+        final Offer moved = offer("1", day.plusDays(1), day.plusDays(2));
+        target.put(moved);
+
+        // THEN it should be found only in the new period
+        Assertions.assertThat(findValidOn(day)).isEmpty();
+        Assertions.assertThat(findValidOn(day.plusDays(2))).containsExactly(moved.getId());
+        Assertions.assertThat(target.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void removeShouldDropTheOffer() {
+        // GIVEN 2 offers valid on the day
+        final Offer piano = offer("1", day.minusDays(1), day.plusDays(1));
+        final Offer cabinet = offer("2", day.minusDays(1), day.plusDays(1));
+        target.load(Stream.of(piano, cabinet));
+
+        // WHEN one of them and an unknown id are removed
+        target.remove("1");
+        target.remove("9");
+
+        // THEN only the other should be kept
+        Assertions.assertThat(findValidOn(day)).containsExactly(cabinet.getId());
+        Assertions.assertThat(target.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void removeExpiredShouldKeepTheOffersMadeValidAgain() {
+        // GIVEN an offer archived and another saved with a new end after being selected
+        final Offer archived = offer("1", day.minusDays(20), day.minusDays(10));
+        final Offer extended = offer("2", day.minusDays(20), day.plusDays(10));
+        target.load(Stream.of(archived, extended));
+
+        // WHEN both are removed as expired before the day
+        target.removeExpired(asList("1", "2"), day);
+
+        // THEN only the archived one should be removed
+        Assertions.assertThat(target.size()).isEqualTo(1);
+        Assertions.assertThat(findValidOn(day)).containsExactly(extended.getId());
+    }
+
+    @Test
+    public void loadShouldNotReplaceOffersWrittenMeanwhile() {
+        // GIVEN an offer saved while the index is loaded
+        final Offer saved = offer("1", day.minusDays(1), day.plusDays(1));
+        target.put(saved);
+
+        // WHEN the cursor brings its older version
+        target.load(Stream.of(offer("1", day.minusDays(10), day.minusDays(5))));
+
+        // THEN the saved version should be kept
+        Assertions.assertThat(findValidOn(day)).containsExactly(saved.getId());
+    }
+
+    @Test
+    public void loadShouldSkipTheOffersRemovedOrCancelledMeanwhile() {
+        // GIVEN the cursor bringing offers as they were before being removed, cancelled or archived
+        final Offer first = offer("1", day.minusDays(2), day.plusDays(1));
+        final Offer removed = offer("2", day.minusDays(2), day.plusDays(1));
+        final Offer cancelled = offer("3", day.minusDays(2), day.plusDays(1));
+        final Offer archived = offer("4", day.minusDays(20), day.minusDays(10));
+        final Offer extended = offer("5", day.minusDays(20), day.plusDays(10));
+        final Stream<Offer> cursor = Stream.of(first, removed, cancelled, archived, extended).peek(offer -> {
+            if (offer == first) {
+                target.remove("2");
+                target.cancel(new OfferFilter(asList("3"), null, null), day, day.minusDays(1));
+                target.removeExpired(asList("4", "5"), day);
+            }
+        });
+
+        // WHEN the index is loaded from it
+        target.load(cursor);
+
+        // THEN the removed and archived offers should not be indexed and the cancelled one should be ended
+        Assertions.assertThat(findValidOn(day)).containsExactlyInAnyOrder("1", "5");
+        Assertions.assertThat(findValidOn(day.minusDays(1))).containsExactlyInAnyOrder("1", "3", "5");
+        Assertions.assertThat(target.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void tenantOverTheBudgetShouldGoToMongo() {
+        // GIVEN a budget of 2 offers
+        properties.setMaxOffers(2);
+
+        // WHEN 3 offers are loaded
+        target.load(Stream.of(offer("1", day.minusDays(1), day.plusDays(1)),
+                offer("2", day.minusDays(1), day.plusDays(1)),
+                offer("3", day.minusDays(1), day.plusDays(1))));
+        target.put(offer("4", day.minusDays(1), day.plusDays(1)));
+
+        // THEN the index should not keep them nor be used
+        Assertions.assertThat(target.isReady()).isFalse();
+        Assertions.assertThat(target.size()).isZero();
+        Assertions.assertThat(OfferTenant.call("acme", () -> {
+            target.load(Stream.of(offer("1", day.minusDays(1), day.plusDays(1))));
+            return target.isReady();
+        })).isTrue();
+    }
+
+    @Test
+    public void cancelShouldEndTheNonExpiredOffersOfTheFilter() {
+        // GIVEN 2 valid offers in BRL, 1 in USD and 1 expired in BRL
+        final Offer piano = offer("1", day.minusDays(2), day.plusDays(1));
+        piano.setCurrency("BRL");
+        final Offer cabinet = offer("2", day.minusDays(2), day.plusDays(1));
+        cabinet.setCurrency("BRL");
+        final Offer chair = offer("3", day.minusDays(2), day.plusDays(1));
+        chair.setCurrency("USD");
+        final Offer expired = offer("4", day.minusDays(10), day.minusDays(5));
+        expired.setCurrency("BRL");
+        target.load(Stream.of(piano, cabinet, chair, expired));
+
+        // WHEN the offers in BRL are cancelled
+        target.cancel(new OfferFilter(null, "BRL", null), day, day.minusDays(1));
+
+        // THEN only the USD offer should be valid, the expired one should keep its end
+        Assertions.assertThat(findValidOn(day)).containsExactly(chair.getId());
+        Assertions.assertThat(findValidOn(day.minusDays(1))).hasSize(3);
+        Assertions.assertThat(findValidOn(day.minusDays(5))).containsExactly(expired.getId());
+        Assertions.assertThat(piano.getEndOffer()).isEqualTo(day.plusDays(1));
+    }
+
+    @Test
+    public void cancelByIdsShouldOnlyEndTheOffersOfTheIds() {
+        // GIVEN 2 valid offers
+        final Offer piano = offer("1", day.minusDays(1), day.plusDays(1));
+        final Offer cabinet = offer("2", day.minusDays(1), day.plusDays(1));
+        target.load(Stream.of(piano, cabinet));
+
+        // WHEN one of them and an unknown id are cancelled
+        target.cancel(new OfferFilter(asList("1", "9"), null, null), day, day.minusDays(1));
+
+        // THEN the other should still be valid
+        Assertions.assertThat(findValidOn(day)).containsExactly(cabinet.getId());
+    }
+
+    @Test
+    public void eachTenantShouldOnlySeeItsOwnOffers() {
+        // GIVEN an offer of the default tenant and another of the tenant acme
+        final Offer piano = offer("1", day.minusDays(1), day.plusDays(1));
+        final Offer cabinet = offer("2", day.minusDays(1), day.plusDays(1));
+        target.load(Stream.of(piano));
+        OfferTenant.run("acme", () -> target.load(Stream.of(cabinet)));
+
+        // WHEN the tenant acme cancels all its offers
+        OfferTenant.run("acme", () -> target.cancel(new OfferFilter(null, null, null), day, day.minusDays(1)));
+
+        // THEN the offers of the default tenant should not change
+        Assertions.assertThat(findValidOn(day)).containsExactly(piano.getId());
+        Assertions.assertThat(OfferTenant.call("acme", () -> findValidOn(day))).isEmpty();
+        Assertions.assertThat(OfferTenant.call("other", target::isReady)).isFalse();
+    }
+
+    @Test
+    public void disabledIndexShouldNotKeepOffers() {
+        // GIVEN a disabled index
+        properties.setEnabled(false);
+
+        // WHEN an offer is saved
+        target.put(offer("1", day.minusDays(1), day.plusDays(1)));
+        target.load();
+
+        // THEN it should not be indexed and the index should not be ready
+        Assertions.assertThat(target.size()).isZero();
+        Assertions.assertThat(target.isReady()).isFalse();
+    }
+
+    @Test
+    public void failedLoadShouldLeaveTheIndexNotReady() {
+        // GIVEN a database outage
+        doThrow(new RuntimeException("Mongo is outage.")).when(mongoTemplate).stream(any(Query.class), eq(Offer.class));
+
+        // WHEN the index is loaded
+        target.load();
+
+        // THEN the queries should go to Mongo
+        Assertions.assertThat(target.isReady()).isFalse();
+        Assertions.assertThat(findValidOn(day)).isEqualTo(Collections.emptyList());
+    }
+
+    private List<String> findValidOn(final LocalDate date) {
+        return target.findValidBetween(date, date, null, Integer.MAX_VALUE);
+    }
+
+    private Offer offer(final String id, final LocalDate startOffer, final LocalDate endOffer) {
+        final Offer offer = new Offer();
+        offer.setId(id);
+        offer.setName("Offer " + id);
+        offer.setStartOffer(startOffer);
+        offer.setEndOffer(endOffer);
+        return offer;
+    }
+}
@@ -1,8 +1,16 @@
 package io.jcervelin.ideas.offer.repositories;
 
 import io.jcervelin.ideas.offer.OfferApplication;
+import io.jcervelin.ideas.offer.configs.mongo.OfferIndexBootstrapper;
 import io.jcervelin.ideas.offer.gateways.repositories.OfferRepository;
+import io.jcervelin.ideas.offer.gateways.repositories.impl.OfferRepositoryImpl;
+import io.jcervelin.ideas.offer.gateways.repositories.impl.OfferValidityIndex;
+import io.jcervelin.ideas.offer.models.ArchiveReport;
+import io.jcervelin.ideas.offer.models.DiscountAnalytics;
 import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferDeadLetter;
+import io.jcervelin.ideas.offer.models.OfferFilter;
+import io.jcervelin.ideas.offer.models.OfferSummary;
 import io.jcervelin.ideas.offer.models.exceptions.OfferNotFoundException;
 import org.assertj.core.api.Assertions;
 import org.junit.Before;
@@ -13,21 +21,28 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static br.com.six2six.fixturefactory.Fixture.from;
 import static br.com.six2six.fixturefactory.loader.FixtureFactoryLoader.loadTemplates;
 import static io.jcervelin.ideas.offer.templates.OfferTemplate.*;
 import static java.time.LocalDate.now;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @SpringBootTest(classes = {OfferApplication.class}, webEnvironment = RANDOM_PORT)
 @ComponentScan(basePackages = {"io.jcervelin.ideas.offer"})
+@TestPropertySource(properties = "offer.validity-index.enabled=true")
 public class OfferRepositoryIT {
     public static final String MOCK_ID = "5c2606d62be9ac82d9a1c119";
 
@@ -44,6 +59,12 @@ public class OfferRepositoryIT {
     @Autowired
     private MongoTemplate mongoTemplate;
 
+    @Autowired
+    private OfferIndexBootstrapper indexBootstrapper;
+
+    @Autowired
+    private OfferValidityIndex validityIndex;
+
     @Before
     public void setUp() {
         mongoTemplate
@@ -86,6 +107,77 @@ public class OfferRepositoryIT {
 
     }
 
+    @Test
+    public void findValidOfferSummariesShouldProjectOnlyTheSummaryFields() {
+        // GIVEN 2 pianos, one expired and another valid, saved in the database
+        final Offer ivoryPianoValid = target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_EXPIRED));
+
+        // WHEN the summaries of the valid offers are requested
+        final List<OfferSummary> result = target.findValidOfferSummaries(now());
+
+        // THEN only the summary of the valid offer should return
+        Assertions.assertThat(result).containsExactly(OfferSummary.of(ivoryPianoValid));
+    }
+
+    @Test
+    public void findValidOffersBetweenShouldReturnTheOffersValidInThePeriod() {
+        // GIVEN 2 pianos, one expired and another valid, saved in the database
+        final Offer ivoryPianoValid = target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        final Offer ivoryPianoExpired = target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_EXPIRED));
+
+        // WHEN the offers valid from the end of the expired one until today are requested
+        final List<Offer> result = target.findValidOffersBetween(ivoryPianoExpired.getEndOffer(), now(), null, 10);
+
+        // THEN both should return
+        Assertions.assertThat(result).containsExactlyInAnyOrder(ivoryPianoValid, ivoryPianoExpired);
+
+        // AND only the valid one on the day after
+        Assertions.assertThat(target.findValidOffersBetween(ivoryPianoExpired.getEndOffer().plusDays(1), now(), null, 10))
+                .containsExactly(ivoryPianoValid);
+    }
+
+    @Test
+    public void findValidOffersBetweenShouldPageByIdAndSkipTheOffersChangedMeanwhile() {
+        // GIVEN 3 valid pianos indexed by validity, the first one then expired behind the index
+        final Offer first = target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        final Offer second = target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        final Offer third = target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        first.setEndOffer(now().minusDays(1));
+        mongoTemplate.save(first);
+
+        // WHEN the valid offers are requested 2 by 2
+        final List<Offer> page = target.findValidOffersBetween(now(), now(), null, 2);
+
+        // THEN the first page should be filled with the next ids, and the second one hold nothing
+        Assertions.assertThat(validityIndex.isReady()).isTrue();
+        Assertions.assertThat(page).containsExactly(second, third);
+        Assertions.assertThat(target.findValidOffersBetween(now(), now(), third.getId(), 2)).isEmpty();
+    }
+
+    @Test
+    public void findValidOffersBetweenShouldNotReturnTheOffersCancelledOrArchived() {
+        // GIVEN a valid piano, a valid cabinet and a piano expired two days ago, indexed by validity
+        final Offer ivoryPianoValid = target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        cabinet.setStartOffer(now().minusDays(5));
+        cabinet.setEndOffer(now().plusDays(1));
+        target.save(cabinet);
+        target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_80_EXPIRED_TWO_DAYS));
+
+        // WHEN the cabinet is cancelled and the expired piano archived
+        target.cancelOffers(new OfferFilter(null, null, "Wooden"));
+        target.archiveExpiredOffers(now().minusDays(1), 10);
+
+        // THEN the index should select the valid piano today and the cancelled cabinet yesterday, read in full from Mongo
+        Assertions.assertThat(validityIndex.isReady()).isTrue();
+        Assertions.assertThat(target.findValidOffersBetween(now(), now(), null, 10)).containsExactly(ivoryPianoValid);
+        Assertions.assertThat(target.findValidOffersBetween(now().minusDays(2), now(), null, 10))
+                .extracting("name", "description")
+                .containsExactlyInAnyOrder(tuple(ivoryPianoValid.getName(), ivoryPianoValid.getDescription()),
+                        tuple(cabinet.getName(), cabinet.getDescription()));
+    }
+
     @Test
     public void getValidOffersShouldReturnEmptyWhenAllOffersAreExpired() {
         // GIVEN 2 pianos, one expired and another valid, saved in the database
@@ -148,6 +240,132 @@ public class OfferRepositoryIT {
         // the return should be empty
     }
 
+    @Test
+    public void cancelOffersShouldCancelOnlyTheValidOffersOfThePrefix() {
+        // GIVEN a valid and an expired piano and a valid cabinet
+        final Offer ivoryPianoValid = target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        final Offer ivoryPianoExpired = target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_80_EXPIRED_TWO_DAYS));
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        cabinet.setEndOffer(now().plusDays(1));
+        target.save(cabinet);
+
+        // WHEN the offers with the prefix Ivory are cancelled
+        final long cancelled = target.cancelOffers(new OfferFilter(null, "GBP", "Ivory"));
+
+        // THEN only the valid piano should be cancelled and the expired one keeps its end date
+        Assertions.assertThat(cancelled).isEqualTo(1);
+        Assertions.assertThat(mongoTemplate.findById(ivoryPianoValid.getId(), Offer.class).getEndOffer()).isEqualTo(now().minusDays(1));
+        Assertions.assertThat(mongoTemplate.findById(ivoryPianoExpired.getId(), Offer.class).getEndOffer()).isEqualTo(now().minusDays(2));
+        Assertions.assertThat(target.findValidOffers(now())).extracting("name").containsExactly(cabinet.getName());
+    }
+
+    @Test
+    public void insertAllShouldReportTheOffersWhichFailed() {
+        // GIVEN an offer already saved
+        final Offer ivoryPiano = target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+
+        // WHEN it's inserted again with a new one
+        final Map<Integer, String> errors = target.insertAll(asList(cabinet, ivoryPiano));
+
+        // THEN only the repeated one should fail
+        Assertions.assertThat(errors).containsOnlyKeys(1);
+        Assertions.assertThat(target.findAll()).hasSize(2);
+    }
+
+    @Test
+    public void parkShouldKeepEachRefusedOfferOnce() {
+        // GIVEN an offer refused by the offers collection
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        ivoryPiano.setId(MOCK_ID);
+
+        // WHEN it's parked twice, as after a restart
+        target.park(asList(OfferDeadLetter.of(ivoryPiano, "Document too large")));
+        target.park(asList(OfferDeadLetter.of(ivoryPiano, "Document too large")));
+
+        // THEN it should be kept once, with its error, out of the offers collection
+        final List<OfferDeadLetter> parked = mongoTemplate.findAll(OfferDeadLetter.class);
+        Assertions.assertThat(parked).extracting("id", "error").containsExactly(tuple(MOCK_ID, "Document too large"));
+        Assertions.assertThat(parked.get(0).getOffer().getName()).isEqualTo(ivoryPiano.getName());
+        Assertions.assertThat(mongoTemplate.findAll(Offer.class)).isEmpty();
+    }
+
+    @Test
+    public void archiveExpiredOffersShouldMoveOnlyTheOffersEndedBeforeTheDate() {
+        // GIVEN a valid piano, a piano expired yesterday and a cabinet expired in 2018
+        final Offer ivoryPianoValid = target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        final Offer ivoryPianoExpired = target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_EXPIRED));
+        final Offer cabinet = target.save(from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40));
+
+        // WHEN the offers ended before last week are archived
+        final ArchiveReport report = target.archiveExpiredOffers(now().minusWeeks(1), 10);
+
+        // THEN only the cabinet should be moved to the archive
+        Assertions.assertThat(report).isEqualTo(new ArchiveReport(1, 1));
+        Assertions.assertThat(target.findAll()).extracting("id")
+                .containsExactlyInAnyOrder(ivoryPianoValid.getId(), ivoryPianoExpired.getId());
+        Assertions.assertThat(mongoTemplate.findAll(Offer.class, OfferRepositoryImpl.ARCHIVE_COLLECTION))
+                .containsExactly(cabinet);
+    }
+
+    @Test
+    public void archiveExpiredOffersShouldCompleteABatchAlreadyCopied() {
+        // GIVEN an expired cabinet copied to the archive by a batch interrupted before the remove
+        final Offer cabinet = target.save(from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40));
+        mongoTemplate.insert(cabinet, OfferRepositoryImpl.ARCHIVE_COLLECTION);
+
+        // WHEN the offers are archived again
+        final ArchiveReport report = target.archiveExpiredOffers(now().minusWeeks(1), 10);
+
+        // THEN it should be removed and kept once in the archive
+        Assertions.assertThat(report.getArchived()).isEqualTo(1);
+        Assertions.assertThat(target.findAll()).isEmpty();
+        Assertions.assertThat(mongoTemplate.findAll(Offer.class, OfferRepositoryImpl.ARCHIVE_COLLECTION))
+                .containsExactly(cabinet);
+    }
+
+    @Test
+    public void findDiscountAnalyticsShouldAggregateTheOffersWhenTheyWereNotComputed() {
+        // GIVEN a piano from 100 to 70 and a cabinet from 60 to 40 written straight to the database
+        final Offer ivoryPiano = mongoTemplate.insert(from(Offer.class).<Offer>gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        final Offer cabinet = mongoTemplate.insert(from(Offer.class).<Offer>gimme(WOODEN_CABINET_FROM_60_TO_40));
+
+        // WHEN the analytics are read
+        final DiscountAnalytics analytics = target.findDiscountAnalytics();
+
+        // THEN they should be computed from the offers, the biggest discount first
+        Assertions.assertThat(analytics.getCount()).isEqualTo(2);
+        Assertions.assertThat(analytics.getAverageDiscount()).isEqualTo(25.0);
+        Assertions.assertThat(analytics.getCurrencies().get("GBP").getCount()).isEqualTo(2);
+        Assertions.assertThat(analytics.getTopDiscounts()).extracting("offerId", "discount")
+                .containsExactly(tuple(ivoryPiano.getId(), 30.0), tuple(cabinet.getId(), 20.0));
+    }
+
+    @Test
+    public void findDiscountAnalyticsShouldFollowTheWrites() {
+        // GIVEN the analytics computed before any offer
+        Assertions.assertThat(target.findDiscountAnalytics().getCount()).isZero();
+
+        // WHEN a piano is saved, a cabinet is inserted, the piano discount is reduced and the cabinet is archived
+        final Offer ivoryPiano = target.save(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID));
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        target.insertAll(asList(cabinet));
+        final DiscountAnalytics afterInsert = target.findDiscountAnalytics();
+        ivoryPiano.setOfferPrice(90.0);
+        target.save(ivoryPiano);
+        target.archiveExpiredOffers(now().minusWeeks(1), 10);
+
+        // THEN the analytics should count each version once
+        Assertions.assertThat(afterInsert.getCount()).isEqualTo(2);
+        Assertions.assertThat(afterInsert.getTopDiscounts()).extracting("offerId")
+                .containsExactly(ivoryPiano.getId(), cabinet.getId());
+        final DiscountAnalytics analytics = target.findDiscountAnalytics();
+        Assertions.assertThat(analytics.getCount()).isEqualTo(1);
+        Assertions.assertThat(analytics.getAverageDiscount()).isEqualTo(10.0);
+        Assertions.assertThat(analytics.getTopDiscounts()).extracting("offerId", "discount")
+                .containsExactly(tuple(ivoryPiano.getId(), 10.0));
+    }
+
     @Test
     public void getOffersShouldReturnAllOffers() {
         // GIVEN 2 pianos, one expired and another valid, saved in the database
@@ -177,7 +395,22 @@ public class OfferRepositoryIT {
         Assertions.assertThat(result.size()).isEqualTo(0);
     }
 
+    @Test
+    public void ensureIndexesShouldCreateTheIndexesUsedByTheValidityQuery() {
+        // GIVEN a collection without indexes
+        mongoTemplate.createCollection(Offer.class);
+
+        // WHEN the indexes are provisioned
+        indexBootstrapper.ensureIndexes();
 
+        // THEN the compound and the partial indexes should exist
+        final List<String> indexes = mongoTemplate.indexOps(Offer.class).getIndexInfo().stream()
+                .map(IndexInfo::getName)
+                .collect(Collectors.toList());
+        Assertions.assertThat(indexes).contains("validity_idx", OfferIndexBootstrapper.CURRENCY_NAME_INDEX);
 
+        // AND the validity query should use the compound index
+        Assertions.assertThat(indexBootstrapper.explainValidityQuery(now())).contains("IXSCAN(validity_idx)");
+    }
 
-}
\ No newline at end of file
+}
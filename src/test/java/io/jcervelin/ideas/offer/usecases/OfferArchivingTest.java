@@ -0,0 +1,144 @@
+package io.jcervelin.ideas.offer.usecases;
+
+import io.jcervelin.ideas.offer.configs.archive.OfferArchiveProperties;
+import io.jcervelin.ideas.offer.configs.tenant.OfferTenantProperties;
+import io.jcervelin.ideas.offer.gateways.repositories.OfferRepository;
+import io.jcervelin.ideas.offer.models.ArchiveReport;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
+import io.jcervelin.ideas.offer.utils.OfferTenant;
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OfferArchivingTest {
+
+    @Mock
+    private OfferRepository repository;
+
+    @Mock
+    private OfferCollectionVersion collectionVersion;
+
+    private OfferArchiveProperties properties;
+
+    private OfferTenantProperties tenantProperties;
+
+    private OfferArchiving target;
+
+    private final LocalDate endBefore = LocalDate.of(2019, 1, 10);
+
+    @Before
+    public void setUp() {
+        properties = new OfferArchiveProperties();
+        properties.setBatchSize(2);
+        properties.setPause(Duration.ZERO);
+        tenantProperties = new OfferTenantProperties();
+        target = new OfferArchiving(repository, properties, collectionVersion, tenantProperties);
+    }
+
+    @Test
+    public void archiveShouldMoveBatchesUntilTheLastIsNotFull() {
+        // GIVEN 5 expired offers
+        doReturn(report(2, 2), report(2, 2), report(1, 1)).when(repository).archiveExpiredOffers(endBefore, 2);
+
+        // WHEN they are archived
+        final long result = target.archive(endBefore);
+
+        // THEN 3 batches should be moved and the version of the collection should change for each one
+        Assertions.assertThat(result).isEqualTo(5);
+        verify(repository, times(3)).archiveExpiredOffers(endBefore, 2);
+        verify(collectionVersion, times(3)).increment();
+    }
+
+    @Test
+    public void archiveShouldGoOnAfterABatchWithOffersExtendedMeanwhile() {
+        // GIVEN a full batch where an offer was extended before it was removed
+        doReturn(report(2, 1), report(2, 2), report(0, 0)).when(repository).archiveExpiredOffers(endBefore, 2);
+
+        // WHEN they are archived
+        final long result = target.archive(endBefore);
+
+        // THEN the next batches should still be moved until none is selected
+        Assertions.assertThat(result).isEqualTo(3);
+        verify(repository, times(3)).archiveExpiredOffers(endBefore, 2);
+        verify(collectionVersion, times(2)).increment();
+    }
+
+    @Test
+    public void archiveShouldStopAtTheMaxBatches() {
+        // GIVEN more expired offers than a run can move
+        properties.setMaxBatches(2);
+        doReturn(report(2, 2)).when(repository).archiveExpiredOffers(endBefore, 2);
+
+        // WHEN they are archived
+        final long result = target.archive(endBefore);
+
+        // THEN the others should be left to the next run
+        Assertions.assertThat(result).isEqualTo(4);
+        verify(repository, times(2)).archiveExpiredOffers(endBefore, 2);
+    }
+
+    @Test
+    public void archiveWithoutExpiredOffersShouldNotChangeTheVersion() {
+        // GIVEN no expired offers
+        doReturn(report(0, 0)).when(repository).archiveExpiredOffers(endBefore, 2);
+
+        // WHEN they are archived
+        final long result = target.archive(endBefore);
+
+        // THEN nothing should change
+        Assertions.assertThat(result).isZero();
+        verify(collectionVersion, never()).increment();
+    }
+
+    @Test
+    public void failedBatchShouldStopTheRunAndReleaseIt() {
+        // GIVEN a database outage in the second batch
+        doReturn(report(2, 2)).doThrow(new RuntimeException("Mongo is outage."))
+                .when(repository).archiveExpiredOffers(endBefore, 2);
+
+        // WHEN they are archived twice
+        final long first = target.archive(endBefore);
+        doReturn(report(1, 1)).when(repository).archiveExpiredOffers(endBefore, 2);
+        final long second = target.archive(endBefore);
+
+        // THEN the first run should count the batch moved and the next one should resume
+        Assertions.assertThat(first).isEqualTo(2);
+        Assertions.assertThat(second).isEqualTo(1);
+    }
+
+    @Test
+    public void archiveExpiredOffersShouldArchiveEveryTenant() {
+        // GIVEN the tenant acme besides the default one
+        tenantProperties.setTenants(Collections.singletonList("acme"));
+        final List<String> tenants = new ArrayList<>();
+        doAnswer(invocation -> {
+            tenants.add(OfferTenant.current());
+            return report(0, 0);
+        }).when(repository).archiveExpiredOffers(any(LocalDate.class), anyInt());
+
+        // WHEN the scheduled archival runs
+        target.archiveExpiredOffers();
+
+        // THEN the offers of both tenants should be archived, one after the other
+        Assertions.assertThat(tenants).containsExactly(OfferTenant.DEFAULT, "acme");
+        Assertions.assertThat(OfferTenant.isDefault()).isTrue();
+    }
+
+    private static ArchiveReport report(final int selected, final int archived) {
+        return new ArchiveReport(selected, archived);
+    }
+}
@@ -1,10 +1,20 @@
 package io.jcervelin.ideas.offer.usecases;
 
+import io.jcervelin.ideas.offer.configs.batch.OfferBatchProperties;
 import io.jcervelin.ideas.offer.gateways.repositories.OfferRepository;
+import io.jcervelin.ideas.offer.models.BatchItemStatus;
+import io.jcervelin.ideas.offer.models.BatchReport;
 import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.OfferFilter;
+import io.jcervelin.ideas.offer.models.OfferPage;
+import io.jcervelin.ideas.offer.models.OfferSummary;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidOfferException;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidRequestException;
 import io.jcervelin.ideas.offer.models.exceptions.OfferErrorException;
 import io.jcervelin.ideas.offer.models.exceptions.OfferNotFoundException;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
 import io.jcervelin.ideas.offer.utils.OfferValidator;
+import io.jcervelin.ideas.offer.utils.PageCursor;
 import org.assertj.core.api.Assertions;
 import org.junit.BeforeClass;
 import org.junit.Rule;
@@ -15,6 +25,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.time.LocalDate;
@@ -22,6 +33,12 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static br.com.six2six.fixturefactory.Fixture.from;
 import static br.com.six2six.fixturefactory.loader.FixtureFactoryLoader.loadTemplates;
@@ -48,6 +65,15 @@ public class OfferManagementTest {
     @Mock
     private OfferValidator offerValidator;
 
+    @Mock
+    private OfferWriteBehind writeBehind;
+
+    @Spy
+    private OfferBatchProperties batchProperties = new OfferBatchProperties();
+
+    @Spy
+    private OfferCollectionVersion collectionVersion = new OfferCollectionVersion();
+
     @Captor
     private ArgumentCaptor<String> objectIdCaptor;
 
@@ -82,6 +108,42 @@ public class OfferManagementTest {
         // THEN it should the saved offer with an id
         Assertions.assertThat(result).isEqualToIgnoringGivenFields(ivoryPiano,"id");
         Assertions.assertThat(result.getId()).isNotNull();
+
+        // AND the version of the collection should change
+        verify(collectionVersion).increment();
+    }
+
+    @Test
+    public void saveWrittenBehindShouldReturnTheOfferOnceItsInTheJournal() {
+        // GIVEN the write-behind enabled
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        doReturn(true).when(writeBehind).enqueue(ivoryPiano);
+
+        // WHEN the method is called
+        final Offer result = target.save(ivoryPiano);
+
+        // THEN the offer should be returned without writing it to Mongo, the writer moves the version
+        Assertions.assertThat(result).isSameAs(ivoryPiano);
+        verify(offerRepository, never()).save(any(Offer.class));
+        verify(collectionVersion, never()).increment();
+    }
+
+    @Test
+    public void saveInvalidOfferShouldNotChangeTheVersion() {
+        // GIVEN an invalid offer
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        doThrow(new InvalidOfferException("The name is required")).when(offerValidator).validate(ivoryPiano);
+
+        thrown.expect(InvalidOfferException.class);
+
+        try {
+            // WHEN the method is called
+            target.save(ivoryPiano);
+        } finally {
+            // THEN nothing should be written and the version should be the same
+            verify(offerRepository, never()).save(any(Offer.class));
+            verify(collectionVersion, never()).increment();
+        }
     }
 
     @Test
@@ -112,6 +174,35 @@ public class OfferManagementTest {
         // THEN it should return NoDataFoundException
     }
 
+    @Test
+    public void concurrentGetValidOffersShouldShareOneRead() throws Exception {
+        // GIVEN a slow read of the valid offers in flight
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(1, TimeUnit.SECONDS);
+            return Collections.singletonList(ivoryPiano);
+        }).when(offerRepository).findValidOffers(any(LocalDate.class));
+        final CompletableFuture<List<Offer>> first = CompletableFuture.supplyAsync(target::getValidOffers);
+        started.await(1, TimeUnit.SECONDS);
+
+        // WHEN another request lists the valid offers meanwhile
+        final CompletableFuture<List<Offer>> second = new CompletableFuture<>();
+        final Thread waiting = new Thread(() -> second.complete(target.getValidOffers()));
+        waiting.start();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (waiting.getState() != Thread.State.WAITING && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        release.countDown();
+
+        // THEN both should get the offers of one read
+        Assertions.assertThat(first.get(1, TimeUnit.SECONDS)).containsExactly(ivoryPiano);
+        Assertions.assertThat(second.get(1, TimeUnit.SECONDS)).containsExactly(ivoryPiano);
+        verify(offerRepository, times(1)).findValidOffers(any(LocalDate.class));
+    }
+
     @Test
     public void getValidOffersShouldNotAlterContentAndReturnWhateverDatabaseBrings() {
         // GIVEN two offer. One expired and the other valid
@@ -146,6 +237,9 @@ public class OfferManagementTest {
 
         // AND the expired date should not be altered by this method.
         Assertions.assertThat(result.getEndOffer()).isEqualTo(ivoryPianoExpired.getEndOffer());
+
+        // AND the version of the collection should change
+        verify(collectionVersion).increment();
     }
 
     @Test
@@ -195,6 +289,20 @@ public class OfferManagementTest {
         // THEN it should return OfferErrorException
     }
 
+    @Test
+    public void getDiscountAnalyticsShouldReturnOfferErrorException() {
+        // GIVEN a problem in the database
+        doThrow(new RuntimeException("Mongo is outage.")).when(offerRepository).findDiscountAnalytics();
+
+        thrown.expect(OfferErrorException.class);
+        thrown.expectMessage("The discount analytics could not be read. [Mongo is outage.]");
+
+        // WHEN the method is called
+        target.getDiscountAnalytics();
+
+        // THEN it should return OfferErrorException
+    }
+
     @Test
     public void getOffersShouldReturnNoDataFoundException() {
         // GIVEN an empty database
@@ -225,4 +333,419 @@ public class OfferManagementTest {
         Assertions.assertThat(result).containsExactlyInAnyOrder(ivoryPiano,cabinet);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void getValidOffersOfAPeriodShouldReturnWhateverDatabaseBrings() {
+        // GIVEN a valid offer in the period
+        final LocalDate from = LocalDate.of(2019, 1, 1);
+        final LocalDate to = LocalDate.of(2019, 1, 31);
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        doReturn(Collections.singletonList(ivoryPiano)).when(offerRepository).findValidOffersBetween(from, to, null, 11);
+
+        // WHEN the first page is requested
+        final OfferPage result = target.getValidOffers(from, to, null, 10);
+
+        // THEN it should return the offer and no next page
+        Assertions.assertThat(result.getOffers()).containsExactly(ivoryPiano);
+        Assertions.assertThat(result.getNext()).isNull();
+    }
+
+    @Test
+    public void getValidOffersOfAPeriodShouldReturnInvalidRequestExceptionWhenItEndsBeforeItStarts() {
+        // GIVEN a period which ends before it starts
+        thrown.expect(InvalidRequestException.class);
+        thrown.expectMessage("The period must have a start date before or equals its end date.");
+
+        // WHEN the method is called
+        target.getValidOffers(LocalDate.of(2019, 1, 31), LocalDate.of(2019, 1, 1), null, 10);
+
+        // THEN it should return InvalidRequestException
+    }
+
+    @Test
+    public void getValidOfferSummariesShouldReturnNoDataFoundException() {
+        // GIVEN an empty database
+        doReturn(Collections.emptyList()).when(offerRepository).findValidOfferSummaries(any(LocalDate.class));
+
+        thrown.expect(OfferNotFoundException.class);
+        thrown.expectMessage("No data found.");
+
+        // WHEN the method is called
+        target.getValidOfferSummaries();
+
+        // THEN it should return NoDataFoundException
+    }
+
+    @Test
+    public void getOfferSummariesShouldReturnOfferErrorException() {
+        // GIVEN a problem in the database
+        doThrow(new RuntimeException("Mongo is outage.")).when(offerRepository).findAllSummaries();
+
+        thrown.expect(OfferErrorException.class);
+        thrown.expectMessage("The offer could not be found. [Mongo is outage.]");
+
+        // WHEN the method is called
+        target.getOfferSummaries();
+
+        // THEN it should return OfferErrorException
+    }
+
+    @Test
+    public void getOfferSummariesShouldReturnWhateverDatabaseBrings() {
+        // GIVEN the summary of two offers
+        final OfferSummary ivoryPiano = OfferSummary.of(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_EXPIRED));
+        final OfferSummary cabinet = OfferSummary.of(from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40));
+        doReturn(Arrays.asList(ivoryPiano, cabinet)).when(offerRepository).findAllSummaries();
+
+        // WHEN the method is called
+        final List<OfferSummary> result = target.getOfferSummaries();
+
+        // THEN it should return both summaries
+        Assertions.assertThat(result).containsExactly(ivoryPiano, cabinet);
+    }
+
+    @Test
+    public void getValidOffersPageShouldReturnTheCursorOfTheNextPage() {
+        // GIVEN one offer more than the limit in the database
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        ivoryPiano.setId(MOCK_ID);
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+
+        doReturn(Arrays.asList(ivoryPiano,cabinet)).when(offerRepository).findValidOffers(any(LocalDate.class), isNull(), eq(2));
+
+        // WHEN a page of one offer is requested
+        final OfferPage result = target.getValidOffers(null, 1);
+
+        // THEN it should return only the first offer and the cursor pointing to it
+        Assertions.assertThat(result.getOffers()).containsExactly(ivoryPiano);
+        Assertions.assertThat(PageCursor.decode(result.getNext())).isEqualTo(MOCK_ID);
+    }
+
+    @Test
+    public void getOffersPageShouldNotReturnCursorOnTheLastPage() {
+        // GIVEN a cursor and only one offer after it
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+
+        doReturn(Collections.singletonList(cabinet)).when(offerRepository).findAll(MOCK_ID, 11);
+
+        // WHEN the page is requested
+        final OfferPage result = target.getOffers(PageCursor.encode(MOCK_ID), 10);
+
+        // THEN there should be no next page
+        Assertions.assertThat(result.getOffers()).containsExactly(cabinet);
+        Assertions.assertThat(result.getNext()).isNull();
+    }
+
+    @Test
+    public void getOffersPageShouldReturnNoDataFoundException() {
+        // GIVEN an empty database
+        doReturn(Collections.emptyList()).when(offerRepository).findAll(null, 11);
+
+        thrown.expect(OfferNotFoundException.class);
+        thrown.expectMessage("No data found.");
+
+        // WHEN the page is requested
+        target.getOffers(null, 10);
+
+        // THEN it should return NoDataFoundException
+    }
+
+    @Test
+    public void getOffersPageShouldReturnOfferErrorException() {
+        // GIVEN a problem in the database
+        doThrow(new RuntimeException("Mongo is outage.")).when(offerRepository).findValidOffers(any(LocalDate.class), isNull(), anyInt());
+
+        thrown.expect(OfferErrorException.class);
+        thrown.expectMessage("The offer could not be found. [Mongo is outage.]");
+
+        // WHEN the page is requested
+        target.getValidOffers(null, 10);
+
+        // THEN it should return OfferErrorException
+    }
+
+    @Test
+    public void getOffersPageShouldReturnInvalidRequestExceptionWhenLimitIsTooBig() {
+        thrown.expect(InvalidRequestException.class);
+        thrown.expectMessage("The limit must be between 1 and 1000.");
+
+        // WHEN a page bigger than the max is requested
+        target.getOffers(null, 1001);
+
+        // THEN it should return InvalidRequestException
+        verifyZeroInteractions(offerRepository);
+    }
+
+    @Test
+    public void getOffersPageShouldReturnInvalidRequestExceptionWhenCursorIsInvalid() {
+        thrown.expect(InvalidRequestException.class);
+        thrown.expectMessage("Invalid cursor. [not a cursor]");
+
+        // WHEN a page is requested with an invalid cursor
+        target.getValidOffers("not a cursor", 10);
+
+        // THEN it should return InvalidRequestException
+    }
+
+    @Test
+    public void streamOffersShouldReturnEveryOfferAndCloseTheCursor() {
+        // GIVEN two offers in the database
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_EXPIRED);
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        final AtomicBoolean closed = new AtomicBoolean();
+
+        doReturn(Stream.of(ivoryPiano, cabinet).onClose(() -> closed.set(true))).when(offerRepository).streamAll();
+
+        // WHEN the offers are streamed
+        final List<Offer> result;
+        try (Stream<Offer> offers = target.streamOffers()) {
+            result = offers.collect(Collectors.toList());
+        }
+
+        // THEN every offer should be returned and the cursor closed
+        Assertions.assertThat(result).containsExactly(ivoryPiano, cabinet);
+        Assertions.assertThat(closed).isTrue();
+    }
+
+    @Test
+    public void streamOffersShouldReturnNoDataFoundExceptionAndCloseTheCursor() {
+        // GIVEN an empty database
+        final AtomicBoolean closed = new AtomicBoolean();
+        doReturn(Stream.empty().onClose(() -> closed.set(true))).when(offerRepository).streamAll();
+
+        // WHEN the offers are streamed
+        try {
+            target.streamOffers();
+            Assertions.fail("OfferNotFoundException expected");
+        } catch (OfferNotFoundException e) {
+            // THEN it should return NoDataFoundException without leaking the cursor
+            Assertions.assertThat(e.getMessage()).isEqualTo("No data found.");
+            Assertions.assertThat(closed).isTrue();
+        }
+    }
+
+    @Test
+    public void streamOffersShouldReturnOfferErrorException() {
+        // GIVEN a problem in the database
+        doThrow(new RuntimeException("Mongo is outage.")).when(offerRepository).streamAll();
+
+        thrown.expect(OfferErrorException.class);
+        thrown.expectMessage("The offer could not be found. [Mongo is outage.]");
+
+        // WHEN the offers are streamed
+        target.streamOffers();
+
+        // THEN it should return OfferErrorException
+    }
+
+    @Test
+    public void saveAllShouldReportTheResultOfEachOffer() {
+        // GIVEN a batch with a valid offer, an invalid one and one which fails in the database
+        batchProperties.setChunkSize(2);
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        final Offer invalid = new Offer();
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        doThrow(new InvalidOfferException("The name is required")).when(offerValidator).validate(invalid);
+        doReturn(Collections.singletonMap(1, "duplicate key")).when(offerRepository).insertAll(anyList());
+
+        // WHEN the batch is saved
+        final BatchReport result = target.saveAll(Arrays.asList(ivoryPiano, invalid, cabinet));
+
+        // THEN the valid offers should be inserted in one chunk with their ids assigned
+        verify(offerRepository, times(1)).insertAll(Arrays.asList(ivoryPiano, cabinet));
+        Assertions.assertThat(ivoryPiano.getId()).isNotNull();
+
+        // AND each offer should have its own result
+        Assertions.assertThat(result.getReceived()).isEqualTo(3);
+        Assertions.assertThat(result.getSaved()).isEqualTo(1);
+        Assertions.assertThat(result.getFailed()).isEqualTo(2);
+        Assertions.assertThat(result.getItems())
+                .extracting("status")
+                .containsExactly(BatchItemStatus.SAVED, BatchItemStatus.INVALID, BatchItemStatus.FAILED);
+        Assertions.assertThat(result.getItems().get(0).getId()).isEqualTo(ivoryPiano.getId());
+        Assertions.assertThat(result.getItems().get(1).getMessage()).isEqualTo("The name is required");
+        Assertions.assertThat(result.getItems().get(2).getMessage()).isEqualTo("The offer could not be saved. [duplicate key]");
+    }
+
+    @Test
+    public void saveAllShouldWriteInChunksAndFailOnlyTheChunkInOutage() {
+        // GIVEN chunks of one offer and a database which fails the second chunk
+        batchProperties.setChunkSize(1);
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        doReturn(Collections.emptyMap())
+                .doThrow(new RuntimeException("Mongo is outage."))
+                .when(offerRepository).insertAll(anyList());
+
+        // WHEN the batch is saved
+        final BatchReport result = target.saveAll(Arrays.asList(ivoryPiano, cabinet));
+
+        // THEN only the offer of the second chunk should fail
+        verify(offerRepository, times(2)).insertAll(anyList());
+        Assertions.assertThat(result.getItems())
+                .extracting("status")
+                .containsExactly(BatchItemStatus.SAVED, BatchItemStatus.FAILED);
+        Assertions.assertThat(result.getItems().get(1).getMessage()).isEqualTo("The offer could not be saved. [Mongo is outage.]");
+    }
+
+    @Test
+    public void saveAllShouldReturnInvalidRequestExceptionWhenBatchIsEmpty() {
+        thrown.expect(InvalidRequestException.class);
+        thrown.expectMessage("No offers were sent.");
+
+        // WHEN an empty batch is saved
+        target.saveAll(Collections.emptyList());
+
+        // THEN it should return InvalidRequestException
+    }
+
+    @Test
+    public void cancelOffersShouldReturnTheNumberOfOffersCancelled() {
+        // GIVEN 3 offers of the currency
+        final OfferFilter filter = new OfferFilter(null, "GBP", null);
+        doReturn(3L).when(offerRepository).cancelOffers(filter);
+
+        // WHEN the offers are cancelled
+        final long result = target.cancelOffers(filter).getCancelled();
+
+        // THEN it should return the number of offers cancelled
+        Assertions.assertThat(result).isEqualTo(3);
+    }
+
+    @Test
+    public void cancelOffersShouldReturnOfferNotFoundWhenNothingIsCancelled() {
+        // GIVEN no offer with the prefix
+        final OfferFilter filter = new OfferFilter(null, null, "Ivory");
+        doReturn(0L).when(offerRepository).cancelOffers(filter);
+
+        thrown.expect(OfferNotFoundException.class);
+        thrown.expectMessage("No data found.");
+
+        // WHEN the offers are cancelled
+        target.cancelOffers(filter);
+
+        // THEN it should return OfferNotFoundException
+    }
+
+    @Test
+    public void cancelOffersShouldReturnOfferErrorExceptionWhenMongoIsOutage() {
+        // GIVEN a problem in the database
+        final OfferFilter filter = new OfferFilter(Collections.singletonList(MOCK_ID), null, null);
+        doThrow(new RuntimeException("Mongo is outage.")).when(offerRepository).cancelOffers(filter);
+
+        thrown.expect(OfferErrorException.class);
+        thrown.expectMessage("The offers could not be cancelled. [Mongo is outage.]");
+
+        // WHEN the offers are cancelled
+        target.cancelOffers(filter);
+
+        // THEN it should return OfferErrorException
+    }
+
+    @Test
+    public void cancelOffersShouldReturnInvalidRequestExceptionWhenFilterIsEmpty() {
+        thrown.expect(InvalidRequestException.class);
+        thrown.expectMessage("The ids, currency or namePrefix of the offers to cancel are required.");
+
+        // WHEN the offers are cancelled without filter
+        target.cancelOffers(new OfferFilter());
+
+        // THEN it should return InvalidRequestException without touching the database
+        verifyZeroInteractions(offerRepository);
+    }
+
+    @Test
+    public void searchShouldReturnTheOffsetOfTheNextPage() {
+        // GIVEN one offer more than the limit found after the first page
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+
+        doReturn(Arrays.asList(ivoryPiano, cabinet)).when(offerRepository).search("ivory", 10, 2);
+
+        // WHEN the second page of one offer is requested
+        final OfferPage result = target.search("ivory", PageCursor.encode("10"), 1);
+
+        // THEN it should return only the first offer and the cursor of the third page
+        Assertions.assertThat(result.getOffers()).containsExactly(ivoryPiano);
+        Assertions.assertThat(PageCursor.decode(result.getNext())).isEqualTo("11");
+    }
+
+    @Test
+    public void searchShouldNotReturnCursorOnTheLastPage() {
+        // GIVEN only one offer found
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+
+        doReturn(Collections.singletonList(ivoryPiano)).when(offerRepository).search("ivory", 0, 21);
+
+        // WHEN the first page is requested
+        final OfferPage result = target.search("ivory", null, 20);
+
+        // THEN there should be no next page
+        Assertions.assertThat(result.getOffers()).containsExactly(ivoryPiano);
+        Assertions.assertThat(result.getNext()).isNull();
+    }
+
+    @Test
+    public void searchShouldReturnNoDataFoundException() {
+        // GIVEN no offer with the words
+        doReturn(Collections.emptyList()).when(offerRepository).search("violin", 0, 21);
+
+        thrown.expect(OfferNotFoundException.class);
+        thrown.expectMessage("No data found.");
+
+        // WHEN they are searched
+        target.search("violin", null, 20);
+
+        // THEN it should return NoDataFoundException
+    }
+
+    @Test
+    public void searchShouldReturnOfferErrorException() {
+        // GIVEN a problem in the database
+        doThrow(new RuntimeException("Mongo is outage.")).when(offerRepository).search(anyString(), anyInt(), anyInt());
+
+        thrown.expect(OfferErrorException.class);
+        thrown.expectMessage("The offers could not be searched. [Mongo is outage.]");
+
+        // WHEN the offers are searched
+        target.search("ivory", null, 20);
+
+        // THEN it should return OfferErrorException
+    }
+
+    @Test
+    public void searchShouldReturnInvalidRequestExceptionWhenTextIsBlank() {
+        thrown.expect(InvalidRequestException.class);
+        thrown.expectMessage("The text to search is required.");
+
+        // WHEN the offers are searched without text
+        target.search(" ", null, 20);
+
+        // THEN it should return InvalidRequestException without touching the database
+        verifyZeroInteractions(offerRepository);
+    }
+
+    @Test
+    public void searchShouldReturnInvalidRequestExceptionWhenCursorIsNotAnOffset() {
+        final String cursor = PageCursor.encode(MOCK_ID);
+        thrown.expect(InvalidRequestException.class);
+        thrown.expectMessage(String.format("Invalid cursor. [%s]", cursor));
+
+        // WHEN the offers are searched with the cursor of another list
+        target.search("ivory", cursor, 20);
+
+        // THEN it should return InvalidRequestException
+    }
+
+    @Test
+    public void searchShouldReturnInvalidRequestExceptionWhenCursorIsTooDeep() {
+        final String cursor = PageCursor.encode("10001");
+        thrown.expect(InvalidRequestException.class);
+        thrown.expectMessage(String.format("Invalid cursor. [%s]", cursor));
+
+        // WHEN a page after the max offset is requested
+        target.search("ivory", cursor, 20);
+
+        // THEN it should return InvalidRequestException
+    }
+
+}
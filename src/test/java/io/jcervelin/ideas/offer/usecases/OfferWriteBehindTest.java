@@ -0,0 +1,206 @@
+package io.jcervelin.ideas.offer.usecases;
+
+import io.jcervelin.ideas.offer.configs.writebehind.OfferWriteBehindProperties;
+import io.jcervelin.ideas.offer.gateways.repositories.OfferRepository;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.utils.OfferCollectionVersion;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static br.com.six2six.fixturefactory.Fixture.from;
+import static br.com.six2six.fixturefactory.loader.FixtureFactoryLoader.loadTemplates;
+import static io.jcervelin.ideas.offer.templates.OfferTemplate.IVORY_PIANO_FROM_100_TO_70;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OfferWriteBehindTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private OfferRepository repository;
+
+    @Mock
+    private OfferCollectionVersion collectionVersion;
+
+    private OfferWriteBehindProperties properties;
+
+    private OfferWriteBehind target;
+
+    @BeforeClass
+    public static void setup() {
+        loadTemplates("io.jcervelin.ideas.offer.templates");
+    }
+
+    @Before
+    public void setUp() {
+        properties = new OfferWriteBehindProperties();
+        properties.setEnabled(true);
+        properties.setJournal(folder.getRoot().toPath().resolve("offers.journal").toString());
+        properties.setFlushInterval(Duration.ofMillis(5));
+        properties.setRetryPause(Duration.ofMillis(5));
+        properties.setShutdownTimeout(Duration.ofSeconds(1));
+        target = new OfferWriteBehind(repository, properties, collectionVersion);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        target.stop();
+    }
+
+    @Test
+    public void enqueueShouldAssignTheIdAndWriteTheOfferInBackground() {
+        // GIVEN the writer started
+        doReturn(Collections.emptyMap()).when(repository).insertAll(anyList());
+        target.start();
+
+        // WHEN a new offer is enqueued
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        final boolean result = target.enqueue(ivoryPiano);
+
+        // THEN it should get an id and be inserted, then the version of the collection should change
+        Assertions.assertThat(result).isTrue();
+        Assertions.assertThat(ivoryPiano.getId()).isNotNull();
+        verify(repository, timeout(1000)).insertAll(Collections.singletonList(ivoryPiano));
+        verify(collectionVersion, timeout(1000)).increment();
+    }
+
+    @Test
+    public void failedBatchShouldBeRetried() {
+        // GIVEN a database outage in the first write
+        doThrow(new RuntimeException("Mongo is outage.")).doReturn(Collections.emptyMap())
+                .when(repository).insertAll(anyList());
+        target.start();
+
+        // WHEN a new offer is enqueued
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        target.enqueue(ivoryPiano);
+
+        // THEN it should be written again after the pause
+        verify(repository, timeout(1000).times(2)).insertAll(Collections.singletonList(ivoryPiano));
+        verify(collectionVersion, timeout(1000)).increment();
+    }
+
+    @Test
+    public void refusedOfferShouldBeParkedAsADeadLetter() {
+        // GIVEN a database which refuses an offer with a duplicated id and another one with another error
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        final Offer tooLarge = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        doAnswer(invocation -> {
+            final List<Offer> offers = invocation.getArgument(0);
+            final Map<Integer, String> errors = new HashMap<>();
+            for (int position = 0; position < offers.size(); position++)
+                errors.put(position, offers.get(position) == tooLarge ? "Document too large" : "E11000 duplicate key error");
+            return errors;
+        }).when(repository).insertAll(anyList());
+        target.start();
+
+        // WHEN both are enqueued
+        target.enqueue(ivoryPiano);
+        target.enqueue(tooLarge);
+
+        // THEN only the second one should be parked, with its error
+        verify(repository, timeout(1000)).park(argThat(deadLetters -> deadLetters.size() == 1
+                && deadLetters.get(0).getOffer() == tooLarge && deadLetters.get(0).getError().equals("Document too large")));
+        verify(collectionVersion, timeout(1000).atLeastOnce()).increment();
+    }
+
+    @Test
+    public void batchShouldBeRetriedUntilTheRefusedOffersAreParked() {
+        // GIVEN a database which refuses the offer and can't park it the first time
+        doReturn(Collections.singletonMap(0, "Document too large")).when(repository).insertAll(anyList());
+        doThrow(new RuntimeException("Mongo is outage.")).doNothing().when(repository).park(anyList());
+        target.start();
+
+        // WHEN a new offer is enqueued
+        target.enqueue(from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70));
+
+        // THEN the batch should be written again and committed once the offer is parked
+        verify(repository, timeout(1000).times(2)).park(anyList());
+        verify(repository, timeout(1000).times(2)).insertAll(anyList());
+        verify(collectionVersion, timeout(1000)).increment();
+    }
+
+    @Test
+    public void startShouldWriteTheOffersLeftInTheJournal() throws Exception {
+        // GIVEN an offer enqueued while Mongo was down and the application stopped
+        doThrow(new RuntimeException("Mongo is outage.")).when(repository).insertAll(anyList());
+        target.start();
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        target.enqueue(ivoryPiano);
+        verify(repository, timeout(1000).atLeastOnce()).insertAll(anyList());
+        target.stop();
+
+        // WHEN it starts again with Mongo back
+        reset(repository);
+        doReturn(Collections.emptyMap()).when(repository).insertAll(anyList());
+        target = new OfferWriteBehind(repository, properties, collectionVersion);
+        target.start();
+
+        // THEN the offer should be written with the id it was acknowledged with
+        verify(repository, timeout(1000)).insertAll(Collections.singletonList(ivoryPiano));
+    }
+
+    @Test
+    public void offerWithIdShouldBeSavedSynchronously() {
+        // GIVEN the writer started
+        target.start();
+
+        // WHEN an offer which may replace another one is enqueued
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        ivoryPiano.setId("5c1ba2a4e8a4d2c1f0f1e111");
+        final boolean result = target.enqueue(ivoryPiano);
+
+        // THEN it should not be accepted
+        Assertions.assertThat(result).isFalse();
+    }
+
+    @Test
+    public void disabledWriteBehindShouldNotAcceptOffers() {
+        // GIVEN the write-behind disabled
+        properties.setEnabled(false);
+        target.start();
+
+        // WHEN a new offer is enqueued
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        final boolean result = target.enqueue(ivoryPiano);
+
+        // THEN it should be saved synchronously, without id
+        Assertions.assertThat(result).isFalse();
+        Assertions.assertThat(ivoryPiano.getId()).isNull();
+        verifyZeroInteractions(repository);
+    }
+
+    @Test
+    public void fullJournalShouldSaveSynchronously() {
+        // GIVEN a journal too small for an offer
+        properties.setJournalSize(DataSize.ofBytes(16));
+        target.start();
+
+        // WHEN a new offer is enqueued
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        final boolean result = target.enqueue(ivoryPiano);
+
+        // THEN it should be saved synchronously, without id
+        Assertions.assertThat(result).isFalse();
+        Assertions.assertThat(ivoryPiano.getId()).isNull();
+    }
+}
@@ -0,0 +1,170 @@
+package io.jcervelin.ideas.offer.usecases;
+
+import io.jcervelin.ideas.offer.gateways.repositories.ReactiveOfferRepository;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidOfferException;
+import io.jcervelin.ideas.offer.models.exceptions.OfferErrorException;
+import io.jcervelin.ideas.offer.models.exceptions.OfferNotFoundException;
+import io.jcervelin.ideas.offer.utils.OfferValidator;
+import org.assertj.core.api.Assertions;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static br.com.six2six.fixturefactory.Fixture.from;
+import static br.com.six2six.fixturefactory.loader.FixtureFactoryLoader.loadTemplates;
+import static io.jcervelin.ideas.offer.templates.OfferTemplate.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReactiveOfferManagementTest {
+
+    private static String TEMPLATE_PACKAGE = "io.jcervelin.ideas.offer.templates";
+
+    public static final String MOCK_ID = "5c2606d62be9ac82d9a1c119";
+
+    @BeforeClass
+    public static void setup() {
+        loadTemplates(TEMPLATE_PACKAGE);
+    }
+
+    @InjectMocks
+    private ReactiveOfferManagement target;
+
+    @Mock
+    private ReactiveOfferRepository offerRepository;
+
+    @Mock
+    private OfferValidator offerValidator;
+
+    @Test
+    public void saveShouldSignalOfferErrorException() {
+        // GIVEN a database outage
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        doReturn(Mono.error(new RuntimeException("Mongo is outage."))).when(offerRepository).save(ivoryPiano);
+
+        // WHEN the offer is saved
+        // THEN the error should be wrapped
+        StepVerifier.create(target.save(ivoryPiano))
+                .expectErrorSatisfies(e -> Assertions.assertThat(e)
+                        .isInstanceOf(OfferErrorException.class)
+                        .hasMessage("The offer could not be saved. [Mongo is outage.]"))
+                .verify();
+    }
+
+    @Test
+    public void saveShouldSignalInvalidOfferExceptionWithoutCallingTheDatabase() {
+        // GIVEN an invalid offer
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        doThrow(new InvalidOfferException("The name is required")).when(offerValidator).validate(ivoryPiano);
+
+        // WHEN the offer is saved
+        // THEN the validation error should be signaled as it is
+        StepVerifier.create(target.save(ivoryPiano))
+                .expectError(InvalidOfferException.class)
+                .verify();
+        verify(offerRepository, never()).save(any(Offer.class));
+    }
+
+    @Test
+    public void getValidOffersShouldEmitTheOffersOfToday() {
+        // GIVEN 2 valid offers
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        doReturn(Flux.just(ivoryPiano, cabinet)).when(offerRepository).findValidOffers(LocalDate.now());
+
+        // WHEN the valid offers are requested
+        // THEN both should be emitted
+        StepVerifier.create(target.getValidOffers())
+                .expectNext(ivoryPiano, cabinet)
+                .verifyComplete();
+    }
+
+    @Test
+    public void getValidOffersShouldNotQueryBeforeTheSubscription() {
+        // GIVEN the valid offers assembled
+        target.getValidOffers();
+
+        // THEN the database should not be called yet
+        verifyZeroInteractions(offerRepository);
+    }
+
+    @Test
+    public void getOffersShouldSignalOfferNotFoundException() {
+        // GIVEN an empty database
+        doReturn(Flux.empty()).when(offerRepository).findAll();
+
+        // WHEN all offers are requested
+        // THEN not found should be signaled
+        StepVerifier.create(target.getOffers())
+                .expectError(OfferNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    public void getOffersShouldSignalOfferErrorException() {
+        // GIVEN a database outage in the middle of the cursor
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        doReturn(Flux.concat(Flux.just(ivoryPiano), Flux.error(new RuntimeException("Mongo is outage."))))
+                .when(offerRepository).findAll();
+
+        // WHEN all offers are requested
+        // THEN the offers read should be emitted before the error
+        StepVerifier.create(target.getOffers())
+                .expectNext(ivoryPiano)
+                .expectErrorMessage("The offer could not be found. [Mongo is outage.]")
+                .verify();
+    }
+
+    @Test
+    public void getOffersShouldOnlyReadWhatIsRequested() {
+        // GIVEN 3 offers in the database
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_VALID);
+        final Offer cabinet = from(Offer.class).gimme(WOODEN_CABINET_FROM_60_TO_40);
+        final Offer expiredPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_EXPIRED);
+        doReturn(Flux.just(ivoryPiano, cabinet, expiredPiano)).when(offerRepository).findAll();
+
+        // WHEN only 1 offer is requested
+        // THEN only 1 offer should be emitted until more are requested
+        StepVerifier.create(target.getOffers(), 1)
+                .expectNext(ivoryPiano)
+                .expectNoEvent(Duration.ofMillis(50))
+                .thenRequest(2)
+                .expectNext(cabinet, expiredPiano)
+                .verifyComplete();
+    }
+
+    @Test
+    public void cancelOfferShouldSignalOfferNotFoundException() {
+        // GIVEN an id which doesn't exist
+        doReturn(Mono.empty()).when(offerRepository).cancelOfferById(MOCK_ID);
+
+        // WHEN the offer is cancelled
+        // THEN not found should be signaled
+        StepVerifier.create(target.cancelOffer(MOCK_ID))
+                .expectError(OfferNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    public void cancelOfferShouldEmitTheOfferCancelled() {
+        // GIVEN a valid offer
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70_EXPIRED);
+        doReturn(Mono.just(ivoryPiano)).when(offerRepository).cancelOfferById(MOCK_ID);
+
+        // WHEN the offer is cancelled
+        // THEN it should be emitted
+        StepVerifier.create(target.cancelOffer(MOCK_ID))
+                .expectNext(ivoryPiano)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,56 @@
+package io.jcervelin.ideas.offer.utils;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+public class OfferCollectionVersionTest {
+
+    private final OfferCollectionVersion target = new OfferCollectionVersion();
+
+    @Test
+    public void etagShouldChangeOnEveryWrite() {
+        // GIVEN the ETag of the current version
+        final String etag = target.etag("all");
+
+        // WHEN a write happens
+        target.increment();
+
+        // THEN the ETag should be different
+        Assertions.assertThat(target.etag("all")).isNotEqualTo(etag);
+    }
+
+    @Test
+    public void etagShouldBeDifferentForEachView() {
+        Assertions.assertThat(target.etag("all")).isNotEqualTo(target.etag("all-summary"));
+    }
+
+    @Test
+    public void lastModifiedShouldNotGoPastTheClock() {
+        // GIVEN the ETag of the current version
+        final String etag = target.etag("all");
+
+        // WHEN a burst of writes happens
+        for (int i = 0; i < 1000; i++)
+            target.increment();
+
+        // THEN the last modification should not be in the future, the ETag tells the writes apart
+        Assertions.assertThat(target.lastModified()).isLessThanOrEqualTo(System.currentTimeMillis());
+        Assertions.assertThat(target.etag("all")).isNotEqualTo(etag);
+    }
+
+    @Test
+    public void lastModifiedOfTheValidOffersShouldNotBeBeforeTheDate() {
+        // GIVEN a date in the future
+        final LocalDate tomorrow = LocalDate.now().plusDays(1);
+
+        // WHEN the last modification of its valid offers is requested
+        final long lastModified = target.lastModified(tomorrow);
+
+        // THEN it should be the start of the date
+        Assertions.assertThat(lastModified)
+                .isEqualTo(tomorrow.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+}
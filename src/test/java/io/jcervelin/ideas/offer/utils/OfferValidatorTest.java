@@ -0,0 +1,110 @@
+package io.jcervelin.ideas.offer.utils;
+
+import io.jcervelin.ideas.offer.configs.validation.OfferValidationProperties;
+import io.jcervelin.ideas.offer.models.Offer;
+import io.jcervelin.ideas.offer.models.exceptions.InvalidOfferException;
+import org.assertj.core.api.Assertions;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.time.LocalDate;
+
+import static br.com.six2six.fixturefactory.Fixture.from;
+import static br.com.six2six.fixturefactory.loader.FixtureFactoryLoader.loadTemplates;
+import static io.jcervelin.ideas.offer.templates.OfferTemplate.IVORY_PIANO_FROM_100_TO_70;
+
+public class OfferValidatorTest {
+
+    private static Validator beanValidator;
+
+    private final OfferValidator target = validator(true);
+
+    @BeforeClass
+    public static void setup() {
+        loadTemplates("io.jcervelin.ideas.offer.templates");
+        beanValidator = Validation.buildDefaultValidatorFactory().getValidator();
+    }
+
+    @Test
+    public void validOfferShouldBeAccepted() {
+        // GIVEN a valid offer, another without end and another without currency
+        final Offer ivoryPiano = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        final Offer withoutEnd = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        withoutEnd.setEndOffer(null);
+        final Offer withoutCurrency = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        withoutCurrency.setCurrency(null);
+
+        // WHEN they are validated
+        target.validate(ivoryPiano);
+        target.validate(withoutEnd);
+        target.validate(withoutCurrency);
+
+        // THEN no exception should be thrown
+    }
+
+    @Test
+    public void offerWithoutNameAndStartOfferShouldReturnBothMessages() {
+        // GIVEN an offer without name and startOffer
+        final Offer offer = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        offer.setName("");
+        offer.setStartOffer(null);
+
+        // WHEN it's validated
+        // THEN both messages should be returned in the order of the fields
+        Assertions.assertThatThrownBy(() -> target.validate(offer))
+                .isInstanceOf(InvalidOfferException.class)
+                .hasMessage("The name is required - The startOffer is required");
+    }
+
+    @Test
+    public void offerBreakingTheBusinessRulesShouldReturnEachMessage() {
+        // GIVEN an offer more expensive than its price, ending before its start and in an unknown currency
+        final Offer offer = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        offer.setOfferPrice(120.0);
+        offer.setEndOffer(offer.getStartOffer().minusDays(1));
+        offer.setCurrency("XYZ");
+
+        // WHEN it's validated
+        // THEN every rule broken should be returned
+        Assertions.assertThatThrownBy(() -> target.validate(offer))
+                .isInstanceOf(InvalidOfferException.class)
+                .hasMessage("The offerPrice must not be greater than the price - "
+                        + "The endOffer must not be before the startOffer - "
+                        + "The currency must be an ISO 4217 code");
+    }
+
+    @Test
+    public void offerEndingOnItsStartShouldBeAccepted() {
+        // GIVEN an offer of one day and without discount
+        final Offer offer = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        offer.setEndOffer(LocalDate.of(2018, 12, 1));
+        offer.setOfferPrice(offer.getPrice());
+
+        // WHEN it's validated
+        target.validate(offer);
+
+        // THEN no exception should be thrown
+    }
+
+    @Test
+    public void reflectiveValidationShouldReturnTheSameMessages() {
+        // GIVEN an offer without name, ending before its start
+        final Offer offer = from(Offer.class).gimme(IVORY_PIANO_FROM_100_TO_70);
+        offer.setName(null);
+        offer.setEndOffer(offer.getStartOffer().minusDays(1));
+
+        // WHEN it's validated by the Bean Validation validator
+        // THEN the annotations and the business rules should be checked
+        Assertions.assertThatThrownBy(() -> validator(false).validate(offer))
+                .isInstanceOf(InvalidOfferException.class)
+                .hasMessage("The name is required - The endOffer must not be before the startOffer");
+    }
+
+    private static OfferValidator validator(final boolean compiled) {
+        final OfferValidationProperties properties = new OfferValidationProperties();
+        properties.setCompiled(compiled);
+        return new OfferValidator(beanValidator, properties);
+    }
+}
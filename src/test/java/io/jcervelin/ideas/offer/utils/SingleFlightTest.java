@@ -0,0 +1,111 @@
+package io.jcervelin.ideas.offer.utils;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest {
+
+    private final SingleFlight<String, String> target = new SingleFlight<>();
+
+    @Test
+    public void concurrentCallsOfTheSameKeyShouldShareOneCall() throws Exception {
+        // GIVEN a call of the key in flight
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> target.call("today", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "offers";
+        }));
+        started.await(1, TimeUnit.SECONDS);
+
+        // WHEN another call of the same key arrives meanwhile
+        final CompletableFuture<String> second = new CompletableFuture<>();
+        final Thread waiting = new Thread(() -> second.complete(target.call("today", () -> {
+            calls.incrementAndGet();
+            return "other offers";
+        })));
+        waiting.start();
+        awaitWaiting(waiting);
+        release.countDown();
+
+        // THEN both should get the result of the first call, which ran once
+        Assertions.assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("offers");
+        Assertions.assertThat(second.get(1, TimeUnit.SECONDS)).isEqualTo("offers");
+        Assertions.assertThat(calls.get()).isEqualTo(1);
+        Assertions.assertThat(target.inFlight()).isZero();
+    }
+
+    @Test
+    public void concurrentCallsShouldShareTheException() throws Exception {
+        // GIVEN a call in flight which fails
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> target.call("today", () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("Mongo is outage.");
+        }));
+        started.await(1, TimeUnit.SECONDS);
+
+        // WHEN another call of the same key arrives meanwhile
+        final CompletableFuture<String> second = new CompletableFuture<>();
+        final Thread waiting = new Thread(() -> {
+            try {
+                second.complete(target.call("today", () -> "offers"));
+            } catch (RuntimeException e) {
+                second.completeExceptionally(e);
+            }
+        });
+        waiting.start();
+        awaitWaiting(waiting);
+        release.countDown();
+
+        // THEN both should fail with the exception of the call
+        Assertions.assertThatThrownBy(() -> first.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class).hasRootCauseInstanceOf(IllegalStateException.class);
+        Assertions.assertThatThrownBy(() -> second.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class).hasRootCauseInstanceOf(IllegalStateException.class);
+        Assertions.assertThat(target.inFlight()).isZero();
+    }
+
+    @Test
+    public void callsOfOtherKeysOrAfterTheFlightShouldRunAgain() {
+        // GIVEN a call already done
+        final AtomicInteger calls = new AtomicInteger();
+        target.call("today", () -> "offers " + calls.incrementAndGet());
+
+        // WHEN the same key and another one are called
+        final String again = target.call("today", () -> "offers " + calls.incrementAndGet());
+        final String other = target.call("tomorrow", () -> "offers " + calls.incrementAndGet());
+
+        // THEN nothing should be cached
+        Assertions.assertThat(again).isEqualTo("offers 2");
+        Assertions.assertThat(other).isEqualTo("offers 3");
+    }
+
+    /**
+     * A call which waits for the one in flight is parked.
+     */
+    private static void awaitWaiting(final Thread thread) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline)
+            Thread.sleep(1);
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}